@@ -0,0 +1,3 @@
+#! /bin/bash
+rm -rf bin/*.class
+javac -cp "../java/lib/postgresql-42.1.4.jar" -sourcepath ../java/src src/*.java -d bin/
@@ -0,0 +1,21 @@
+#! /bin/bash
+BENCH=$1
+DBNAME=$2
+PORT=$3
+USER=$4
+
+# Example: source ./run.sh IdAllocatorBench flightDB 5432 user
+# Example: source ./run.sh QueryResultBench flightDB 5432 user
+# Example: source ./run.sh MechanicShopBench flightDB 5432 user
+#          (writes mechanicshop-bench.json; -Dbench.scales=1,10 limits the data sizes)
+# Example: source ./run.sh BackendBench flightDB 5432 user
+#          (report latency of Postgres and of the in-memory backend at scales 1 and 100)
+# Example: java -cp ../java/lib/*:bin/ CsvParseBench
+#          (MB/s of the parallel CSV parser by thread count; needs no database)
+# Example: java -Dbench.scale=10 -cp ../java/lib/*:bin/ DataGenerator /tmp/shop-x10 flightDB 5432 user
+#          (writes a synthetic data set and an operation trace, loads them and replays the trace;
+#          leave out the database to only write the files, -Dbench.memory=true replays in memory)
+# Example: java -cp ../java/lib/*:bin/ HttpLoadTest http://localhost:8080
+#          (load test of a running MechanicShop ... --serve 8080; takes a URL, not the database)
+#          (start the server with -Dmechanicshop.groupCommit=true to commit concurrent inserts together)
+java $JAVA_OPTS -cp ../java/lib/*:bin/ $BENCH $DBNAME $PORT $USER
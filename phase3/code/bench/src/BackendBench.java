@@ -0,0 +1,121 @@
+/*
+ * Report latency of the database and the in-memory backend
+ * ========================================================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * This class compares the latency of the five reports answered by Postgres
+ * and by MemoryBackend over the same data: the shipped data set and scaled
+ * copies of it.  The database side runs the report queries directly, so
+ * neither the report cache nor the top car ranking answers them.  Each
+ * report is run bench.warmup times, then timed bench.runs times; the median
+ * and the fastest run are printed.
+ *
+ * Settings (system properties): bench.scales (1,100), bench.warmup (3),
+ * bench.runs (10), bench.data (../data).
+ *
+ * WARNING: the benchmark truncates and reloads the shop tables.
+ *
+ */
+
+public class BackendBench{
+	/**
+	 * One timed report.
+	 */
+	interface Report {
+		Object run() throws Exception;
+	}
+
+	static final int WARMUP = Integer.getInteger("bench.warmup", 3);
+	static final int RUNS = Integer.getInteger("bench.runs", 10);
+
+	public static void main (String[] args) throws Exception {
+		if (args.length < 3) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + BackendBench.class.getName () +
+					" <dbname> <port> <user>");
+			return;
+		}//end if
+		File data = new File(System.getProperty("bench.data", "../data"));
+		String[] scales = System.getProperty("bench.scales", "1,100").split(",");
+
+		Class.forName("org.postgresql.Driver");
+		MechanicShop esql = new MechanicShop (args[0], args[1], args[2], "");
+		try{
+			for (String s : scales){
+				int scale = Integer.parseInt(s.trim());
+				File dir = new File(System.getProperty("java.io.tmpdir"), "mechanicshop-bench-x" + scale);
+				new DataScaler(data).write(dir, scale);
+
+				long start = System.nanoTime();
+				esql.executeUpdate("TRUNCATE Closed_Request, Service_Request, Owns, Car, Mechanic, Customer");
+				new BulkLoader(esql, dir).load();
+				esql.executeUpdate("ANALYZE");
+				System.out.println(String.format(Locale.ROOT, "x%-3d postgres load %10.1f ms", scale, (System.nanoTime() - start) / 1e6));
+				start = System.nanoTime();
+				MemoryBackend memory = MemoryBackend.fromCsv(dir);
+				System.out.println(String.format(Locale.ROOT, "x%-3d memory load   %10.1f ms  %s", scale,
+					(System.nanoTime() - start) / 1e6, memory.stats()));
+
+				Map<String, Report[]> reports = new LinkedHashMap<String, Report[]>();
+				reports.put("ListCustomersWithBillLessThan100", new Report[]{
+					() -> esql.executeQueryAndReturnResult(MechanicShop.REPORT_BILL_LESS_THAN_100),
+					() -> memory.customersWithBillLessThan100() });
+				reports.put("ListCustomersWithMoreThan20Cars", new Report[]{
+					() -> esql.executeQueryAndReturnResult(MechanicShop.REPORT_MORE_THAN_20_CARS),
+					() -> memory.customersWithMoreThan20Cars() });
+				reports.put("ListCarsBefore1995With50000Milles", new Report[]{
+					() -> esql.executeQueryAndReturnResult(MechanicShop.REPORT_CARS_BEFORE_1995),
+					() -> memory.carsBefore1995With50000Miles() });
+				reports.put("ListKCarsWithTheMostServices", new Report[]{
+					() -> esql.executeQueryAndReturnResult(MechanicShop.REPORT_K_MOST_SERVICED, 10),
+					() -> memory.mostServicedCars(10) });
+				reports.put("ListCustomersInDescendingOrderOfTheirTotalBill", new Report[]{
+					() -> esql.executeQueryAndReturnResult(MechanicShop.REPORT_TOTAL_BILL),
+					() -> memory.customersByTotalBill() });
+
+				System.out.println(String.format(Locale.ROOT, "%-48s %-4s %12s %12s %12s %12s %8s",
+					"report", "x", "pg p50 ms", "pg min ms", "mem p50 ms", "mem min ms", "speedup"));
+				for (Map.Entry<String, Report[]> e : reports.entrySet()){
+					double[] pg = time(e.getValue()[0]);
+					double[] mem = time(e.getValue()[1]);
+					System.out.println(String.format(Locale.ROOT, "%-48s x%-3d %12.3f %12.3f %12.3f %12.3f %7.1fx",
+						e.getKey(), scale, pg[0], pg[1], mem[0], mem[1], pg[0] / mem[0]));
+				}
+			}
+		}finally{
+			esql.cleanup();
+		}
+	}
+
+	/**
+	 * @return the median and the fastest run, in milliseconds
+	 */
+	private static double[] time(Report report) throws Exception {
+		for (int i = 0; i < WARMUP; ++i){
+			report.run();
+		}
+		double[] ms = new double[RUNS];
+		for (int i = 0; i < RUNS; ++i){
+			long start = System.nanoTime();
+			report.run();
+			ms[i] = (System.nanoTime() - start) / 1e6;
+		}
+		Arrays.sort(ms);
+		return new double[]{ ms[RUNS / 2], ms[0] };
+	}
+}//end BackendBench
@@ -0,0 +1,136 @@
+/*
+ * Parallel CSV parsing benchmark
+ * ==============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This class measures how MappedCsvParser scales with the number of cores.
+ * service_request.csv and closed_request.csv of a scaled copy of the shipped
+ * data set are parsed on fork-join pools of 1, 2, 4, ... threads up to the
+ * number of cores, once into parsed values (every int and date field is
+ * parsed, text fields are only measured) and once into the COPY text that
+ * BulkLoader sends.  The best of bench.runs runs is reported in MB/s with
+ * the speedup over one thread.  No database is needed.
+ *
+ * Settings (system properties): bench.scale (100), bench.runs (5),
+ * bench.chunkBytes (8 MB), bench.data (../data).
+ *
+ */
+
+public class CsvParseBench{
+	static final int RUNS = Integer.getInteger("bench.runs", 5);
+	static final int CHUNK_BYTES = Integer.getInteger("bench.chunkBytes", 8 << 20);
+
+	/**
+	 * Parses every int and date field of a row and adds them up, so the
+	 * work cannot be left out.
+	 */
+	static final class ParseSink implements MappedCsvParser.Sink<Long> {
+		private final int _dateField;
+		private final boolean[] _ints;
+		private long _sum = 0;
+
+		ParseSink(int fields, int dateField, int... intFields){
+			this._dateField = dateField;
+			this._ints = new boolean[fields];
+			for (int f : intFields){
+				this._ints[f] = true;
+			}
+		}
+
+		public void row(MappedCsvParser.Row row){
+			for (int f = 0; f < this._ints.length; ++f){
+				if (f == this._dateField){
+					this._sum += row.getEpochDay(f);
+				}else if (this._ints[f]){
+					this._sum += row.getInt(f);
+				}else{
+					this._sum += row.length(f);
+				}
+			}
+		}
+
+		public Long finish(){
+			return this._sum;
+		}
+	}
+
+	public static void main (String[] args) throws Exception {
+		int scale = Integer.getInteger("bench.scale", 100);
+		File data = new File(System.getProperty("bench.data", "../data"));
+		File dir = new File(System.getProperty("java.io.tmpdir"), "mechanicshop-bench-x" + scale);
+		new DataScaler(data).write(dir, scale);
+		File[] files = { new File(dir, "service_request.csv"), new File(dir, "closed_request.csv") };
+		long bytes = 0;
+		for (File f : files){
+			bytes += f.length();
+		}
+		System.out.println(String.format(Locale.ROOT, "x%d: %.1f MB in %s and %s, chunks of %d KB",
+			scale, bytes / 1e6, files[0].getName(), files[1].getName(), CHUNK_BYTES >> 10));
+
+		List<Integer> threads = new ArrayList<Integer>();
+		int cores = Runtime.getRuntime().availableProcessors();
+		for (int t = 1; t < cores; t *= 2){
+			threads.add(t);
+		}
+		threads.add(cores);
+
+		System.out.println(String.format(Locale.ROOT, "%8s %14s %8s %14s %8s", "threads", "values MB/s", "speedup", "copy MB/s", "speedup"));
+		double valuesBase = 0, copyBase = 0;
+		for (int t : threads){
+			ForkJoinPool pool = new ForkJoinPool(t);
+			try{
+				MappedCsvParser parser = new MappedCsvParser(pool, CHUNK_BYTES);
+				double values = best(bytes, () -> {
+					// rid, customer_id, odometer and wid, rid, mid, bill
+					parser.parse(files[0], 6, () -> new ParseSink(6, 3, 0, 1, 4), sum -> {});
+					parser.parse(files[1], 6, () -> new ParseSink(6, 3, 0, 1, 2, 5), sum -> {});
+				});
+				double copy = best(bytes, () -> {
+					parser.parse(files[0], 6, () -> new BulkLoader.CopySink(3), out -> {});
+					parser.parse(files[1], 6, () -> new BulkLoader.CopySink(3), out -> {});
+				});
+				if (t == 1){
+					valuesBase = values;
+					copyBase = copy;
+				}
+				System.out.println(String.format(Locale.ROOT, "%8d %14.1f %7.2fx %14.1f %7.2fx",
+					t, values, values / valuesBase, copy, copy / copyBase));
+			}finally{
+				pool.shutdown();
+			}
+		}
+	}
+
+	interface Run {
+		void run() throws Exception;
+	}
+
+	/**
+	 * @return the MB/s of the fastest of a warmup run and RUNS timed runs
+	 */
+	private static double best(long bytes, Run run) throws Exception {
+		run.run();
+		long fastest = Long.MAX_VALUE;
+		for (int i = 0; i < RUNS; ++i){
+			long start = System.nanoTime();
+			run.run();
+			fastest = Math.min(fastest, System.nanoTime() - start);
+		}
+		return bytes / 1e6 / (fastest / 1e9);
+	}
+}//end CsvParseBench
@@ -0,0 +1,530 @@
+/*
+ * Synthetic data and workload generator
+ * =====================================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class writes a synthetic data set in the format of the shipped CSV
+ * files, at any scale factor: scale 1 has as many rows per table as the
+ * shipped data, scale 0.1 a tenth of them and scale 1000 a thousand times
+ * as many.  Every foreign key refers to a generated row, every service
+ * request is made by the owner of its car and every closed request closes
+ * an existing request at or after its date.
+ *
+ * The ownership is skewed: bench.fleetOwners of the customers own
+ * bench.fleetCars cars each, which feeds ListCustomersWithMoreThan20Cars,
+ * and the other cars go to the other customers at random.  Service
+ * requests pick their car from a Zipf distribution with exponent
+ * bench.requestSkew (0 is uniform), which feeds
+ * ListKCarsWithTheMostServices.  Each value depends only on the seed, the
+ * table and the row, since every row draws from its own random generator,
+ * so the tables are generated in chunks on all cores and streamed to disk
+ * in order; the same settings give the same files whatever bench.chunkRows
+ * and the number of cores.
+ *
+ * Next to the data a trace.txt of bench.traceOps operations is written in
+ * the command format of BatchRunner, so it can also be run through
+ * MechanicShop --batch.  Given a database the data is loaded and the trace
+ * is replayed through the shop operations by bench.threads threads, and
+ * the throughput and the latency per operation are printed; with
+ * -Dbench.memory=true it is replayed against MemoryBackend instead.
+ *
+ * Settings (system properties): bench.scale (1), bench.seed (1),
+ * bench.fleetOwners (0.02), bench.fleetCars (40), bench.requestSkew (0.8),
+ * bench.closedFraction (0.9), bench.traceOps (100000), bench.readRatio
+ * (0.2), bench.threads (8), bench.chunkRows (65536), bench.memory (false).
+ *
+ * WARNING: replaying against a database truncates and reloads the shop
+ * tables.
+ *
+ */
+
+public class DataGenerator{
+	static final int CUSTOMERS = 500;
+	static final int MECHANICS = 250;
+	static final int CARS = 5000;
+	static final int REQUESTS = 30000;
+	static final long FIRST_DAY = LocalDate.of(2010, 1, 1).toEpochDay();
+	static final int DAYS = (int) (LocalDate.of(2020, 1, 1).toEpochDay() - FIRST_DAY);
+
+	//streams of the pure per-row values
+	static final int OWNER = 1;
+	static final int REQUEST_DAY = 2;
+	static final int VIN = 3;
+
+	static final String[] FIRST_NAMES = { "Armand", "Alberto", "Wyatt", "Alexandria", "Rory", "Blythe", "Maria", "James",
+		"Linda", "Robert", "Patricia", "Michael", "Jennifer", "David", "Elizabeth", "Thomas", "Susan", "Daniel",
+		"Karen", "Mark", "Nancy", "Steven", "Lisa", "Andrew", "Betty", "Kevin", "Sandra", "Brian", "Ashley", "Jason" };
+	static final String[] LAST_NAMES = { "Enderle", "Scarlett", "Ruoff", "Cuyler", "Berner", "Santacruz", "Smith",
+		"Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Rodriguez", "Martinez", "Hernandez",
+		"Lopez", "Gonzalez", "Wilson", "Anderson", "Taylor", "Moore", "Jackson", "Martin", "Lee", "Perez", "Thompson" };
+	static final String[] STREETS = { "Chapel Drive", "Bald Hill Street", "Campfire Ave.", "Oak Street", "Maple Lane",
+		"Pine Road", "Cedar Court", "Elm Avenue", "Lake View Drive", "Hillside Road", "Sunset Blvd.", "Mill Street" };
+	static final String[] CITIES = { "Melbourne", "Baton Rouge", "Cockeysville", "Riverside", "Fresno", "Tucson",
+		"Albany", "Dayton", "Boise", "Eugene", "Madison", "Reno", "Salem", "Tampa", "Austin", "Denver" };
+	static final String[][] MAKES = {
+		{ "Toyota", "Prius", "Camry", "Corolla" }, { "Ford", "Focus", "Sunny", "Mustang" },
+		{ "Honda", "Civic", "Accord", "Fit" }, { "Lamborghini", "M1", "Diablo", "Gallardo" },
+		{ "Chevrolet", "Malibu", "Impala", "Spark" }, { "Nissan", "Altima", "Leaf", "Sentra" },
+		{ "BMW", "M3", "X5", "i3" }, { "Volkswagen", "Golf", "Jetta", "Beetle" } };
+	static final String[] COMPLAINTS = { "Add rockets", "Burns too much gas", "Change oil", "I cannot hear the horn",
+		"I cannot hear the radio", "It is not fast enough", "It smells funny", "Needs new parachute", "No brakes",
+		"Replace windows", "The wheel does not turn right", "The wings do not work" };
+	static final String[] COMMENTS = { "Breaks are ok", "Buy a new Car", "Change Roof", "Changed Oil", "Fixed!!!",
+		"Good Luck", "I do not know", "Made it faster", "Needs new Tires", "This is a bicycle",
+		"We changed the color", "We lost your car", "You are missing an engine" };
+	static final String[] REPORTS = { "ListCustomersWithBillLessThan100", "ListCustomersWithMoreThan20Cars",
+		"ListCarsBefore1995With50000Milles", "ListKCarsWithTheMostServices,10",
+		"ListCustomersInDescendingOrderOfTheirTotalBill" };
+
+	/**
+	 * Writes one row of a table, drawing its values from random.
+	 */
+	interface Rows {
+		void write(long row, SplittableRandom random, StringBuilder out);
+	}
+
+	private final long _seed;
+	private final int _customers;
+	private final int _mechanics;
+	private final int _cars;
+	private final int _requests;
+	private final int _closed;
+	private final int _fleetOwners;
+	private final int _fleetCars;
+	private final double _skew;
+	private final ForkJoinPool _pool;
+	private final int _chunkRows;
+
+	/**
+	 * @param scale the size relative to the shipped data set
+	 * @param seed the seed of every random value
+	 * @param fleetOwners the fraction of the customers that own a fleet
+	 * @param fleetCars the number of cars of a fleet owner
+	 * @param skew the Zipf exponent of the cars picked by service requests
+	 * @param closedFraction the fraction of the service requests that are closed
+	 */
+	public DataGenerator(double scale, long seed, double fleetOwners, int fleetCars, double skew, double closedFraction,
+		ForkJoinPool pool, int chunkRows){
+		if (!(scale > 0) || (long) Math.ceil(scale * REQUESTS) > Integer.MAX_VALUE){
+			throw new IllegalArgumentException("the scale must be above 0 and below " + (Integer.MAX_VALUE / REQUESTS));
+		}
+		this._seed = seed;
+		this._customers = (int) Math.max(1, Math.round(scale * CUSTOMERS));
+		this._mechanics = (int) Math.max(1, Math.round(scale * MECHANICS));
+		this._cars = (int) Math.max(1, Math.round(scale * CARS));
+		this._requests = (int) Math.max(1, Math.round(scale * REQUESTS));
+		this._closed = (int) Math.round(this._requests * Math.min(1.0, Math.max(0.0, closedFraction)));
+		this._fleetCars = Math.max(1, fleetCars);
+		// every customer but one may own a fleet, as long as there are cars for it
+		this._fleetOwners = (int) Math.min(Math.min(Math.round(this._customers * Math.max(0.0, fleetOwners)), this._customers - 1),
+			this._cars / this._fleetCars);
+		this._skew = Math.max(0.0, skew);
+		this._pool = pool;
+		this._chunkRows = Math.max(1, chunkRows);
+	}
+
+	public static void main (String[] args) throws Exception {
+		if (args.length != 1 && args.length != 4) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + DataGenerator.class.getName () +
+					" <target dir> [<dbname> <port> <user>]");
+			return;
+		}//end if
+		DataGenerator generator = new DataGenerator(
+			Double.parseDouble(System.getProperty("bench.scale", "1")),
+			Long.getLong("bench.seed", 1L),
+			Double.parseDouble(System.getProperty("bench.fleetOwners", "0.02")),
+			Integer.getInteger("bench.fleetCars", 40),
+			Double.parseDouble(System.getProperty("bench.requestSkew", "0.8")),
+			Double.parseDouble(System.getProperty("bench.closedFraction", "0.9")),
+			ForkJoinPool.commonPool(),
+			Integer.getInteger("bench.chunkRows", 65536));
+		File dir = new File(args[0]);
+		long start = System.nanoTime();
+		long bytes = generator.write(dir);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format(Locale.ROOT, "%s: %.1f MB in %.2f s (%.1f MB/s)  %s",
+			dir, bytes / 1e6, seconds, bytes / 1e6 / seconds, generator));
+
+		int ops = Integer.getInteger("bench.traceOps", 100000);
+		if (ops <= 0) return;
+		File trace = new File(dir, "trace.txt");
+		generator.writeTrace(trace, ops, Double.parseDouble(System.getProperty("bench.readRatio", "0.2")));
+		System.out.println(String.format(Locale.ROOT, "%s: %d operations", trace, ops));
+
+		int threads = Integer.getInteger("bench.threads", 8);
+		if (Boolean.getBoolean("bench.memory")){
+			start = System.nanoTime();
+			MemoryBackend memory = MemoryBackend.fromCsv(dir);
+			System.out.println(String.format(Locale.ROOT, "memory load %.1f ms  %s", (System.nanoTime() - start) / 1e6, memory.stats()));
+			replay(memory, trace, threads);
+		}else if (args.length == 4){
+			Class.forName("org.postgresql.Driver");
+			MechanicShop esql = new MechanicShop (args[1], args[2], args[3], "");
+			try{
+				start = System.nanoTime();
+				esql.executeUpdate("TRUNCATE Closed_Request, Service_Request, Owns, Car, Mechanic, Customer");
+				new BulkLoader(esql, dir).load();
+				esql.executeUpdate("ANALYZE");
+				System.out.println(String.format(Locale.ROOT, "postgres load %.1f ms", (System.nanoTime() - start) / 1e6));
+				replay(esql.getBackend(), trace, threads);
+			}finally{
+				esql.cleanup();
+			}
+		}
+	}
+
+	/**
+	 * Writes the six CSV files into dir.
+	 *
+	 * @return the number of bytes written
+	 */
+	public long write(File dir) throws IOException {
+		if (!dir.isDirectory() && !dir.mkdirs()){
+			throw new IOException("cannot create " + dir);
+		}
+		long bytes = 0;
+		bytes += table(new File(dir, "customer.csv"), this._customers, 11, (i, random, out) -> {
+			out.append(i).append(',').append(pick(random, FIRST_NAMES)).append(',').append(pick(random, LAST_NAMES))
+				.append(",(").append(100 + random.nextInt(900)).append(')').append(100 + random.nextInt(900))
+				.append('-').append(1000 + random.nextInt(9000))
+				.append(',').append(1 + random.nextInt(9999)).append(' ').append(pick(random, STREETS))
+				.append(' ').append(pick(random, CITIES)).append('\n');
+		});
+		bytes += table(new File(dir, "mechanic.csv"), this._mechanics, 12, (i, random, out) -> {
+			out.append(i).append(',').append(pick(random, FIRST_NAMES)).append(',').append(pick(random, LAST_NAMES))
+				.append(',').append(random.nextInt(40)).append('\n');
+		});
+		bytes += table(new File(dir, "car.csv"), this._cars, 13, (i, random, out) -> {
+			String[] make = MAKES[random.nextInt(MAKES.length)];
+			appendVin(out, i);
+			out.append(',').append(make[0]).append(',').append(make[1 + random.nextInt(make.length - 1)])
+				.append(',').append(1970 + random.nextInt(51)).append('\n');
+		});
+		bytes += table(new File(dir, "owns.csv"), this._cars, 14, (i, random, out) -> {
+			out.append(i).append(',').append(owner((int) i)).append(',');
+			appendVin(out, i);
+			out.append('\n');
+		});
+		bytes += table(new File(dir, "service_request.csv"), this._requests, 15, (i, random, out) -> {
+			int car = car(random.nextDouble());
+			out.append(i).append(',').append(owner(car)).append(',');
+			appendVin(out, car);
+			out.append(',');
+			appendDate(out, requestDay((int) i));
+			out.append(',').append(1 + random.nextInt(300000)).append(',').append(pick(random, COMPLAINTS)).append('\n');
+		});
+		bytes += table(new File(dir, "closed_request.csv"), this._closed, 16, (i, random, out) -> {
+			// closed request i closes service request i
+			long day = Math.min(requestDay((int) i) + random.nextInt(31), FIRST_DAY + DAYS - 1);
+			out.append(i).append(',').append(i).append(',').append(random.nextInt(this._mechanics)).append(',');
+			appendDate(out, day);
+			out.append(',').append(pick(random, COMMENTS)).append(',').append(10 + random.nextInt(991)).append('\n');
+		});
+		return bytes;
+	}
+
+	/**
+	 * Generates the rows of one table in chunks on the pool and writes the
+	 * chunks in order, keeping at most two chunks per thread in memory.
+	 */
+	private long table(File file, int rows, int stream, Rows writer) throws IOException {
+		int window = 2 * this._pool.getParallelism();
+		ArrayDeque<CompletableFuture<byte[]>> pending = new ArrayDeque<CompletableFuture<byte[]>>();
+		long bytes = 0;
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16)){
+			for (long first = 0; first < rows || !pending.isEmpty(); ){
+				if (first < rows && pending.size() < window){
+					long from = first;
+					long end = Math.min(rows, first + this._chunkRows);
+					pending.add(CompletableFuture.supplyAsync(() -> {
+						StringBuilder sb = new StringBuilder((int) (end - from) * 64);
+						for (long i = from; i < end; ++i){
+							// seeded per row, so the chunk size does not change the values
+							writer.write(i, new SplittableRandom(hash(stream, i)), sb);
+						}
+						return sb.toString().getBytes(StandardCharsets.US_ASCII);
+					}, this._pool));
+					first = end;
+					continue;
+				}
+				byte[] chunk = pending.remove().join();
+				out.write(chunk);
+				bytes += chunk.length;
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Writes ops operations in the command format of BatchRunner: report
+	 * reads with probability readRatio, otherwise inserts and closes of
+	 * requests that the generated data makes valid.  Once every open
+	 * request is closed, closes repeat and are rejected.
+	 */
+	public void writeTrace(File file, int ops, double readRatio) throws IOException {
+		SplittableRandom random = new SplittableRandom(hash(17, 0));
+		int nextCar = this._cars;
+		int nextOpen = this._closed;
+		try (PrintWriter out = new PrintWriter(file, "US-ASCII")){
+			for (int i = 0; i < ops; ++i){
+				if (random.nextDouble() < readRatio){
+					out.println(pick(random, REPORTS));
+					continue;
+				}
+				int w = random.nextInt(10);
+				if (w < 4){
+					int car = random.nextInt(this._cars);
+					StringBuilder sb = new StringBuilder("InsertServiceRequest,").append(owner(car)).append(',');
+					appendVin(sb, car);
+					out.println(sb.append(',').append(1 + random.nextInt(300000)).append(',').append(pick(random, COMPLAINTS)));
+				}else if (w < 7){
+					int rid = nextOpen < this._requests ? nextOpen++ : random.nextInt(this._requests);
+					out.println("CloseServiceRequest," + rid + "," + random.nextInt(this._mechanics) + ","
+						+ pick(random, COMMENTS) + "," + (10 + random.nextInt(991)));
+				}else if (w == 7){
+					String[] make = MAKES[random.nextInt(MAKES.length)];
+					StringBuilder sb = new StringBuilder("AddCar,");
+					appendVin(sb, nextCar++);
+					out.println(sb.append(',').append(make[0]).append(',').append(make[1 + random.nextInt(make.length - 1)])
+						.append(',').append(1970 + random.nextInt(51)));
+				}else if (w == 8){
+					// the menu takes a phone number of at most 10 characters
+					out.println("AddCustomer," + pick(random, FIRST_NAMES) + "," + pick(random, LAST_NAMES) + ","
+						+ (100 + random.nextInt(900)) + (100 + random.nextInt(900)) + (1000 + random.nextInt(9000))
+						+ "," + (1 + random.nextInt(9999)) + " " + pick(random, STREETS) + " " + pick(random, CITIES));
+				}else{
+					out.println("AddMechanic," + pick(random, FIRST_NAMES) + "," + pick(random, LAST_NAMES) + "," + random.nextInt(40));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs the operations of a trace through the backend on the given number
+	 * of threads, which take the next operation in trace order, and prints
+	 * the throughput and the latency of each kind of operation.  An
+	 * operation the shop refuses is counted as rejected.
+	 */
+	public static void replay(ShopBackend backend, File trace, int threads) throws IOException, InterruptedException {
+		List<String[]> ops = new ArrayList<String[]>();
+		try (BufferedReader in = new BufferedReader(new FileReader(trace))){
+			for (String line; (line = in.readLine()) != null; ){
+				if (!line.isEmpty()) ops.add(line.split(",", -1));
+			}
+		}
+		Map<String, LatencyHistogram> latency = new LinkedHashMap<String, LatencyHistogram>();
+		Map<String, AtomicLong> rejected = new LinkedHashMap<String, AtomicLong>();
+		for (String[] op : ops){
+			if (!latency.containsKey(op[0])){
+				latency.put(op[0], new LatencyHistogram());
+				rejected.put(op[0], new AtomicLong());
+			}
+		}
+		AtomicInteger next = new AtomicInteger();
+		List<Throwable> failures = new ArrayList<Throwable>();
+		Thread[] workers = new Thread[Math.max(1, threads)];
+		long begin = System.nanoTime();
+		for (int t = 0; t < workers.length; ++t){
+			workers[t] = new Thread(() -> {
+				for (int i; (i = next.getAndIncrement()) < ops.size(); ){
+					String[] op = ops.get(i);
+					long start = System.nanoTime();
+					try{
+						run(backend, op);
+					}catch (IllegalArgumentException | SQLException e){
+						rejected.get(op[0]).incrementAndGet();
+					}catch (RuntimeException e){
+						synchronized (failures){
+							failures.add(e);
+						}
+					}
+					latency.get(op[0]).record(System.nanoTime() - start);
+				}
+			}, "replay-" + t);
+			workers[t].start();
+		}
+		for (Thread w : workers){
+			w.join();
+		}
+		double seconds = (System.nanoTime() - begin) / 1e9;
+
+		System.out.println(String.format(Locale.ROOT, "%d operations on %d threads in %.2f s: %.0f ops/s",
+			ops.size(), workers.length, seconds, ops.size() / seconds));
+		System.out.println(String.format(Locale.ROOT, "%-48s %8s %9s %10s %10s %10s",
+			"operation", "count", "rejected", "p50 ms", "p99 ms", "max ms"));
+		for (Map.Entry<String, LatencyHistogram> e : latency.entrySet()){
+			LatencyHistogram h = e.getValue();
+			System.out.println(String.format(Locale.ROOT, "%-48s %8d %9d %10.3f %10.3f %10.3f", e.getKey(), h.getCount(),
+				rejected.get(e.getKey()).get(), h.percentile(0.5) / 1e6, h.percentile(0.99) / 1e6, h.getMax() / 1e6));
+		}
+		if (!failures.isEmpty()){
+			System.out.println(failures.size() + " operations failed, the first with " + failures.get(0));
+		}
+	}
+
+	/**
+	 * Runs one operation of a trace.
+	 */
+	private static void run(ShopBackend backend, String[] op) throws SQLException {
+		try{
+			switch (op[0]){
+				case "AddCustomer":
+					backend.addCustomer(op[1], op[2], op[3], op[4]);
+					break;
+				case "AddMechanic":
+					backend.addMechanic(op[1], op[2], Integer.parseInt(op[3]));
+					break;
+				case "AddCar":
+					backend.addCar(op[1], op[2], op[3], Integer.parseInt(op[4]));
+					break;
+				case "InsertServiceRequest":
+					backend.insertServiceRequest(Integer.parseInt(op[1]), op[2], Integer.parseInt(op[3]), op[4]);
+					break;
+				case "CloseServiceRequest":
+					backend.closeServiceRequest(Integer.parseInt(op[1]), Integer.parseInt(op[2]), op[3], Integer.parseInt(op[4]));
+					break;
+				case "ListCustomersWithBillLessThan100":
+					backend.customersWithBillLessThan100();
+					break;
+				case "ListCustomersWithMoreThan20Cars":
+					backend.customersWithMoreThan20Cars();
+					break;
+				case "ListCarsBefore1995With50000Milles":
+					backend.carsBefore1995With50000Miles();
+					break;
+				case "ListKCarsWithTheMostServices":
+					backend.mostServicedCars(Integer.parseInt(op[1]));
+					break;
+				case "ListCustomersInDescendingOrderOfTheirTotalBill":
+					backend.customersByTotalBill();
+					break;
+				default:
+					throw new IllegalStateException("unknown operation '" + op[0] + "'");
+			}
+		}catch (CompletionException e){
+			// the group commit writer completes a refused write with its SQLException
+			if (e.getCause() instanceof SQLException) throw (SQLException) e.getCause();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the owner of a car: the fleet cars come first, fleetCars per
+	 * fleet owner, the others belong to a random other customer
+	 */
+	int owner(int car){
+		if (car < this._fleetOwners * this._fleetCars){
+			return car / this._fleetCars;
+		}
+		return this._fleetOwners + (int) Long.remainderUnsigned(hash(OWNER, car), this._customers - this._fleetOwners);
+	}
+
+	/**
+	 * @return the car of rank u of the Zipf distribution, by the inverse of
+	 * its continuous approximation; the ranks are spread over the cars by a
+	 * multiplicative permutation, so the popular cars are not all fleet cars
+	 */
+	int car(double u){
+		double n = this._cars;
+		double x;
+		if (this._skew == 0.0){
+			x = 1 + u * n;
+		}else if (Math.abs(this._skew - 1.0) < 1e-9){
+			x = Math.pow(n + 1, u);
+		}else{
+			double a = 1 - this._skew;
+			x = Math.pow((Math.pow(n + 1, a) - 1) * u + 1, 1 / a);
+		}
+		long rank = Math.min(this._cars - 1, Math.max(0, (long) x - 1));
+		return (int) (((rank + 1) * 1000000007L) % this._cars);
+	}
+
+	/**
+	 * @return the epoch day of a service request
+	 */
+	long requestDay(int rid){
+		return FIRST_DAY + Long.remainderUnsigned(hash(REQUEST_DAY, rid), DAYS);
+	}
+
+	/**
+	 * Appends the VIN of a car: six letters that look random and the car's
+	 * number in ten digits, which keeps VINs unique.
+	 */
+	void appendVin(StringBuilder out, long car){
+		long h = hash(VIN, car);
+		for (int i = 0; i < 6; ++i){
+			out.append((char) ('A' + Long.remainderUnsigned(h, 26)));
+			h = Long.divideUnsigned(h, 26);
+		}
+		String digits = Long.toString(car);
+		for (int i = digits.length(); i < 10; ++i){
+			out.append('0');
+		}
+		out.append(digits);
+	}
+
+	/**
+	 * Appends a date as the shipped files write it, M/D/YYYY 00:00.
+	 */
+	static void appendDate(StringBuilder out, long epochDay){
+		LocalDate d = LocalDate.ofEpochDay(epochDay);
+		out.append(d.getMonthValue()).append('/').append(d.getDayOfMonth()).append('/').append(d.getYear()).append(" 00:00");
+	}
+
+	static String pick(SplittableRandom random, String[] values){
+		return values[random.nextInt(values.length)];
+	}
+
+	/**
+	 * @return a well mixed 64-bit hash of the seed, a stream and a row, by
+	 * the finalizer of SplitMix64
+	 */
+	long hash(int stream, long row){
+		return mix(mix(this._seed + stream * 0x9E3779B97F4A7C15L) + row);
+	}
+
+	static long mix(long z){
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	public String toString(){
+		return String.format(Locale.ROOT, "customers=%d mechanics=%d cars=%d requests=%d closed=%d fleetOwners=%d x %d cars skew=%.2f",
+			this._customers, this._mechanics, this._cars, this._requests, this._closed, this._fleetOwners, this._fleetCars, this._skew);
+	}
+}//end DataGenerator
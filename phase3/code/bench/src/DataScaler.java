@@ -0,0 +1,118 @@
+/*
+ * Scaled copies of the shop data set
+ * ==================================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * This class writes a data directory holding `scale` copies of the shipped
+ * CSV files.  Every copy shifts the integer keys by the size of the key range
+ * of the original and prefixes the VINs with the copy number, so foreign keys
+ * stay consistent and no key repeats.  Copy 0 is the original data.
+ *
+ */
+
+public class DataScaler{
+	private final File _source;
+
+	/**
+	 * @param source the directory with the shipped CSV files
+	 */
+	public DataScaler(File source){
+		this._source = source;
+	}
+
+	/**
+	 * Writes the scaled files into target.
+	 *
+	 * @param target the directory to write to, created if missing
+	 * @param scale the number of copies, at most 100
+	 * @throws java.io.IOException when a file could not be read or written
+	 */
+	public void write(File target, int scale) throws IOException {
+		if (scale < 1 || scale > 100){
+			throw new IllegalArgumentException("scale must be between 1 and 100");
+		}
+		target.mkdirs();
+		long customers = keyRange("customer.csv", 0);
+		long mechanics = keyRange("mechanic.csv", 0);
+		long owns = keyRange("owns.csv", 0);
+		long requests = keyRange("service_request.csv", 0);
+		long closed = keyRange("closed_request.csv", 0);
+
+		// for each file: the offset applied to every field, 0 = unchanged, -1 = VIN
+		copy(target, "customer.csv", scale, new long[]{ customers });
+		copy(target, "mechanic.csv", scale, new long[]{ mechanics });
+		copy(target, "car.csv", scale, new long[]{ -1 });
+		copy(target, "owns.csv", scale, new long[]{ owns, customers, -1 });
+		copy(target, "service_request.csv", scale, new long[]{ requests, customers, -1 });
+		copy(target, "closed_request.csv", scale, new long[]{ closed, requests, mechanics });
+	}
+
+	/**
+	 * @return one more than the largest value of the integer field
+	 */
+	private long keyRange(String file, int field) throws IOException {
+		long max = -1;
+		try (BufferedReader reader = new BufferedReader(new FileReader(new File(this._source, file)))){
+			String line;
+			while ((line = reader.readLine()) != null){
+				if (line.isEmpty()) continue;
+				int end = line.indexOf(',');
+				max = Math.max(max, Long.parseLong(line.substring(0, end < 0 ? line.length() : end).trim()));
+			}
+		}
+		return max + 1;
+	}
+
+	private void copy(File target, String file, int scale, long[] offsets) throws IOException {
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(new File(target, file)), 1 << 16)){
+			for (int k = 0; k < scale; ++k){
+				try (BufferedReader reader = new BufferedReader(new FileReader(new File(this._source, file)))){
+					String line;
+					while ((line = reader.readLine()) != null){
+						if (line.isEmpty()) continue;
+						writer.write(k == 0 ? line : shift(line, offsets, k));
+						writer.write('\n');
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Applies the offsets of copy k to the leading fields of the line.
+	 */
+	static String shift(String line, long[] offsets, int k){
+		String[] f = line.split(",", -1);
+		for (int i = 0; i < offsets.length && i < f.length; ++i){
+			if (offsets[i] == -1){
+				f[i] = vin(f[i], k);
+			}else if (offsets[i] > 0){
+				f[i] = Long.toString(Long.parseLong(f[i].trim()) + offsets[i] * k);
+			}
+		}
+		return String.join(",", f);
+	}
+
+	/**
+	 * Original VINs start with letters, so a two digit prefix never collides.
+	 */
+	static String vin(String vin, int k){
+		return String.format("%02d", k) + vin.substring(Math.min(2, vin.length()));
+	}
+}//end DataScaler
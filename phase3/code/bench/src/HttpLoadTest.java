@@ -0,0 +1,114 @@
+/*
+ * Load test for the HTTP service
+ * ==============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class measures how the HTTP service (MechanicShop --serve) scales with
+ * the number of concurrent clients.  For each concurrency level it runs that
+ * many client threads for a fixed time; every client sends a mix of report
+ * reads and customer name searches, one request after the other.  It prints
+ * the throughput, the 50th and 99th percentile latency and the number of
+ * failed requests per level.
+ *
+ * Settings (system properties): bench.concurrency (1,2,4,8,16,32),
+ * bench.warmupMs (2000), bench.iterationMs (10000).
+ *
+ */
+
+public class HttpLoadTest{
+	static final long WARMUP_NS = Long.getLong("bench.warmupMs", 2000L) * 1000000L;
+	static final long ROUND_NS = Long.getLong("bench.iterationMs", 10000L) * 1000000L;
+	static final String[] PATHS = {
+		"/reports/bill-less-than-100",
+		"/reports/more-than-20-cars",
+		"/reports/cars-before-1995",
+		"/reports/most-serviced-cars?k=10",
+		"/reports/total-bill" };
+	static final String[] PREFIXES = { "a", "b", "c", "d", "e", "g", "h", "k", "l", "m", "p", "r", "s", "t", "w" };
+
+	public static void main (String[] args) throws Exception {
+		if (args.length != 1) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + HttpLoadTest.class.getName () +
+					" <base url, e.g. http://localhost:8080>");
+			return;
+		}//end if
+		String base = args[0].endsWith("/") ? args[0].substring(0, args[0].length() - 1) : args[0];
+		HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+		round(client, base, 4, WARMUP_NS);
+		System.out.println("clients\trequests_per_s\tp50_ms\tp99_ms\tfailed");
+		for (String level : System.getProperty("bench.concurrency", "1,2,4,8,16,32").split(",")){
+			int clients = Integer.parseInt(level.trim());
+			LatencyHistogram latency = new LatencyHistogram();
+			long failed = round(client, base, clients, ROUND_NS, latency);
+			System.out.println(String.format("%d\t%.1f\t%.2f\t%.2f\t%d", clients,
+				latency.getCount() * 1e9 / ROUND_NS, latency.percentile(0.5) / 1e6, latency.percentile(0.99) / 1e6, failed));
+		}
+	}
+
+	static long round(HttpClient client, String base, int clients, long nanos) throws InterruptedException {
+		return round(client, base, clients, nanos, new LatencyHistogram());
+	}
+
+	/**
+	 * Runs the clients until the time is up.
+	 *
+	 * @return the number of requests that failed or did not answer 200
+	 */
+	static long round(HttpClient client, String base, int clients, long nanos, LatencyHistogram latency)
+		throws InterruptedException {
+		long end = System.nanoTime() + nanos;
+		AtomicLong failed = new AtomicLong();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < clients; ++t){
+			SplittableRandom random = new SplittableRandom(t);
+			Thread thread = new Thread(() -> {
+				while (System.nanoTime() < end){
+					// four report reads for every name search
+					String path = random.nextInt(5) < 4 ? PATHS[random.nextInt(PATHS.length)]
+						: "/customers?lname=" + PREFIXES[random.nextInt(PREFIXES.length)];
+					HttpRequest request = HttpRequest.newBuilder(URI.create(base + path))
+						.timeout(Duration.ofSeconds(30)).GET().build();
+					long start = System.nanoTime();
+					try{
+						HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+						if (response.statusCode() != 200){
+							failed.incrementAndGet();
+							continue;
+						}
+					}catch (Exception e){
+						failed.incrementAndGet();
+						continue;
+					}
+					latency.record(System.nanoTime() - start);
+				}
+			}, "client-" + t);
+			thread.start();
+			threads.add(thread);
+		}
+		for (Thread thread : threads){
+			thread.join();
+		}
+		return failed.get();
+	}
+}//end HttpLoadTest
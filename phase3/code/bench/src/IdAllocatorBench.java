@@ -0,0 +1,86 @@
+/*
+ * Insert latency benchmark for key generation
+ * ===========================================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.SQLException;
+
+/**
+ * This class compares the two ways MechanicShop has used to pick a new key:
+ * counting every existing key with a full table scan, and taking the next key
+ * from an IdAllocator.  Both strategies insert into scratch tables that start
+ * with the same number of rows and keep growing; the average insert latency
+ * is printed for every round so the trend is visible as the tables grow.
+ *
+ */
+
+public class IdAllocatorBench{
+	static final int INITIAL_ROWS = 30000;
+	static final int ROUNDS = 10;
+	static final int INSERTS_PER_ROUND = 1000;
+
+	public static void main (String[] args) throws Exception {
+		if (args.length != 3) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + IdAllocatorBench.class.getName () +
+					" <dbname> <port> <user>");
+			return;
+		}//end if
+
+		Class.forName("org.postgresql.Driver");
+		MechanicShop esql = new MechanicShop (args[0], args[1], args[2], "");
+		try{
+			setup(esql, "bench_scan_ids");
+			setup(esql, "bench_alloc_ids");
+			esql.executeUpdate("DROP SEQUENCE IF EXISTS bench_alloc_ids_id_seq");
+			IdAllocator ids = new IdAllocator(esql, "bench_alloc_ids", "id");
+
+			System.out.println("round\trows\tscan_us_per_insert\tallocator_us_per_insert");
+			for (int round = 1; round <= ROUNDS; ++round){
+				int rows = INITIAL_ROWS + (round - 1) * INSERTS_PER_ROUND;
+
+				long start = System.nanoTime();
+				for (int i = 0; i < INSERTS_PER_ROUND; ++i){
+					int id = esql.executeQueryAndReturnResult("SELECT id FROM bench_scan_ids").getRowCount() + 1;
+					esql.executeUpdate("INSERT INTO bench_scan_ids (id, note) VALUES (" + id + ", 'bench')");
+				}
+				long scan = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				for (int i = 0; i < INSERTS_PER_ROUND; ++i){
+					int id = ids.nextId();
+					esql.executeUpdate("INSERT INTO bench_alloc_ids (id, note) VALUES (" + id + ", 'bench')");
+				}
+				long alloc = System.nanoTime() - start;
+
+				System.out.println(round + "\t" + rows + "\t"
+					+ (scan / 1000 / INSERTS_PER_ROUND) + "\t"
+					+ (alloc / 1000 / INSERTS_PER_ROUND));
+			}
+		}finally{
+			esql.executeUpdate("DROP TABLE IF EXISTS bench_scan_ids");
+			esql.executeUpdate("DROP TABLE IF EXISTS bench_alloc_ids");
+			esql.executeUpdate("DROP SEQUENCE IF EXISTS bench_alloc_ids_id_seq");
+			esql.cleanup();
+		}
+	}
+
+	/**
+	 * Creates a scratch table holding INITIAL_ROWS rows with keys 1..n, the
+	 * same keys the scan strategy would have produced.
+	 */
+	static void setup(MechanicShop esql, String table) throws SQLException {
+		esql.executeUpdate("DROP TABLE IF EXISTS " + table);
+		esql.executeUpdate("CREATE TABLE " + table + " (id INTEGER NOT NULL PRIMARY KEY, note TEXT)");
+		esql.executeUpdate("INSERT INTO " + table + " (id, note) SELECT g, 'seed' FROM generate_series(1, "
+			+ INITIAL_ROWS + ") g");
+	}
+}//end IdAllocatorBench
@@ -0,0 +1,307 @@
+/*
+ * Benchmarks for the MechanicShop operations
+ * ==========================================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * This class benchmarks the ten menu operations and the executeQuery,
+ * executeQueryAndReturnResult and executeQueryAndPrintResult helpers against
+ * a local database seeded with the shipped data set and with scaled copies of
+ * it.  Operations run the same statements the menu issues, with generated
+ * input instead of Scanner prompts.
+ *
+ * Every benchmark is measured in two modes, following the JMH conventions:
+ * thrpt (operations per second over fixed-length iterations) and sample
+ * (the distribution of single invocation times).  Results are written as a
+ * JSON array in the layout of JMH's -rf json output so existing tooling can
+ * read them.
+ *
+ * Settings (system properties): bench.scales (1,10,100), bench.warmupIterations (2),
+ * bench.iterations (5), bench.iterationMs (1000), bench.data (../data).
+ *
+ * WARNING: the benchmark truncates and reloads the shop tables.
+ *
+ */
+
+public class MechanicShopBench{
+	/**
+	 * One benchmarked invocation.
+	 */
+	interface Op {
+		void run() throws Exception;
+	}
+
+	static final int WARMUP = Integer.getInteger("bench.warmupIterations", 2);
+	static final int ITERATIONS = Integer.getInteger("bench.iterations", 5);
+	static final long ITERATION_NS = Long.getLong("bench.iterationMs", 1000L) * 1000000L;
+
+	private final MechanicShop _esql;
+	private final SplittableRandom _random = new SplittableRandom(42);
+	private int _scale;
+	private int _customers;
+	private int _mechanics;
+	private int _requests;
+	private List<Object[]> _ownership = new ArrayList<Object[]>();
+	private long _carCounter = 0;
+
+	MechanicShopBench(MechanicShop esql){
+		this._esql = esql;
+	}
+
+	public static void main (String[] args) throws Exception {
+		if (args.length < 3) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + MechanicShopBench.class.getName () +
+					" <dbname> <port> <user> [result.json]");
+			return;
+		}//end if
+		String resultFile = args.length > 3 ? args[3] : "mechanicshop-bench.json";
+		File data = new File(System.getProperty("bench.data", "../data"));
+		String[] scales = System.getProperty("bench.scales", "1,10,100").split(",");
+
+		Class.forName("org.postgresql.Driver");
+		MechanicShop esql = new MechanicShop (args[0], args[1], args[2], "");
+		PrintStream console = System.out;
+		List<String> results = new ArrayList<String>();
+		try{
+			MechanicShopBench bench = new MechanicShopBench(esql);
+			for (String s : scales){
+				int scale = Integer.parseInt(s.trim());
+				bench.seed(data, scale);
+				for (Map.Entry<String, Op> e : bench.operations().entrySet()){
+					results.add(bench.throughput(e.getKey(), e.getValue(), console));
+					results.add(bench.sample(e.getKey(), e.getValue(), console));
+				}
+			}
+		}finally{
+			System.setOut(console);
+			esql.cleanup();
+		}
+		try (Writer out = new FileWriter(resultFile)){
+			out.write("[\n" + String.join(",\n", results) + "\n]\n");
+		}
+		System.out.println("Results written to " + resultFile);
+	}
+
+	/**
+	 * Replaces the shop data with `scale` copies of the shipped data set.
+	 */
+	void seed(File data, int scale) throws Exception {
+		System.out.println("Seeding scale " + scale + "...");
+		File dir = new File(System.getProperty("java.io.tmpdir"), "mechanicshop-bench-x" + scale);
+		new DataScaler(data).write(dir, scale);
+		this._esql.executeUpdate("TRUNCATE Closed_Request, Service_Request, Owns, Car, Mechanic, Customer");
+		new BulkLoader(this._esql, dir).load();
+		this._esql.executeUpdate("ANALYZE");
+
+		this._scale = scale;
+		this._customers = count("SELECT COUNT(*) FROM Customer");
+		this._mechanics = count("SELECT COUNT(*) FROM Mechanic");
+		this._requests = count("SELECT COUNT(*) FROM Service_Request");
+		this._ownership.clear();
+		QueryResult owns = this._esql.executeQueryAndReturnResult("SELECT customer_id, car_vin FROM Owns");
+		for (int i = 0; i < owns.getRowCount(); ++i){
+			this._ownership.add(new Object[]{ owns.getInt(i, 0), owns.getString(i, 1) });
+		}
+	}
+
+	private int count(String sql) throws Exception {
+		return this._esql.executeQueryAndReturnResult(sql).getInt(0, 0);
+	}
+
+	/**
+	 * @return the benchmarks by name, in execution order
+	 */
+	Map<String, Op> operations(){
+		final MechanicShop esql = this._esql;
+		Map<String, Op> ops = new LinkedHashMap<String, Op>();
+		// the writes go through the service, as the menu's do, so the name index and the ranking follow them
+		ops.put("AddCustomer", () -> esql.getService().addCustomer("Bench", "Customer", "0000000000", "1 Bench Street"));
+		ops.put("AddMechanic", () -> esql.getService().addMechanic("Bench", "Mechanic", 5));
+		ops.put("AddCar", () -> esql.getService().addCar(String.format("BN%014d", this._carCounter++), "Bench", "Model", 2015));
+		ops.put("InsertServiceRequest", () -> {
+			Object[] own = this._ownership.get(this._random.nextInt(this._ownership.size()));
+			esql.getService().insertServiceRequest((Integer) own[0], (String) own[1], 1 + this._random.nextInt(200000), "bench");
+		});
+		ops.put("CloseServiceRequest", () -> {
+			int rid = this._random.nextInt(this._requests);
+			int mid = this._random.nextInt(this._mechanics);
+			try{
+				esql.getService().closeServiceRequest(rid, mid, "bench", 50);
+			}catch (IllegalArgumentException e){
+				// most random requests are closed already; the rejection is the same round trip
+			}
+		});
+		ops.put("ListCustomersWithBillLessThan100", () -> esql.executeQueryAndPrintResult(MechanicShop.REPORT_BILL_LESS_THAN_100));
+		ops.put("ListCustomersWithMoreThan20Cars", () -> esql.executeQueryAndPrintResult(MechanicShop.REPORT_MORE_THAN_20_CARS));
+		ops.put("ListCarsBefore1995With50000Milles", () -> esql.executeQueryAndPrintResult(MechanicShop.REPORT_CARS_BEFORE_1995));
+		ops.put("ListKCarsWithTheMostServices", () -> esql.executeQueryAndPrintResult(MechanicShop.REPORT_K_MOST_SERVICED, 10));
+		ops.put("ListKCarsWithTheMostServicesTracked", () -> esql.printTopCars(10));
+		ops.put("CustomerNamePrefixSearch", () -> esql.getCustomerNames().search("sm", MechanicShop.NAME_MATCHES));
+		ops.put("ListCustomersInDescendingOrderOfTheirTotalBill", () -> esql.executeQueryAndPrintResult(MechanicShop.REPORT_TOTAL_BILL));
+		ops.put("executeQuery", () -> esql.executeQuery("SELECT * FROM Customer WHERE id = ?",
+			this._random.nextInt(this._customers)));
+		ops.put("executeQueryAndReturnResult", () -> esql.executeQueryAndReturnResult(
+			"SELECT rid, customer_id, car_vin, date, odometer FROM Service_Request WHERE customer_id = ?",
+			this._random.nextInt(this._customers)));
+		ops.put("executeQueryAndPrintResult", () -> esql.executeQueryAndPrintResult(
+			"SELECT rid, customer_id, car_vin, date, odometer FROM Service_Request WHERE customer_id = ?",
+			this._random.nextInt(this._customers)));
+		return ops;
+	}
+
+	/**
+	 * Runs warmup and measurement iterations of fixed length and reports the
+	 * operations per second of each measurement iteration.
+	 */
+	String throughput(String name, Op op, PrintStream console) throws Exception {
+		double[] scores = new double[ITERATIONS];
+		for (int it = -WARMUP; it < ITERATIONS; ++it){
+			long count = 0;
+			long start = System.nanoTime();
+			long end = start + ITERATION_NS;
+			long now;
+			silence();
+			try{
+				do{
+					op.run();
+					++count;
+					now = System.nanoTime();
+				}while (now < end);
+			}finally{
+				System.setOut(console);
+			}
+			if (it >= 0){
+				scores[it] = count / ((now - start) / 1e9);
+			}
+		}
+		double mean = mean(scores);
+		console.println(String.format(Locale.ROOT, "%-48s x%-3d thrpt %12.3f ops/s", name, this._scale, mean));
+		return json(name, "thrpt", "ops/s", mean, error(scores, mean), null, scores);
+	}
+
+	/**
+	 * Times every single invocation during the measurement iterations and
+	 * reports the distribution in milliseconds.
+	 */
+	String sample(String name, Op op, PrintStream console) throws Exception {
+		long[] samples = new long[1024];
+		int n = 0;
+		for (int it = -WARMUP; it < ITERATIONS; ++it){
+			long end = System.nanoTime() + ITERATION_NS;
+			silence();
+			try{
+				long now;
+				do{
+					long start = System.nanoTime();
+					op.run();
+					now = System.nanoTime();
+					if (it >= 0){
+						if (n == samples.length) samples = Arrays.copyOf(samples, n * 2);
+						samples[n++] = now - start;
+					}
+				}while (now < end);
+			}finally{
+				System.setOut(console);
+			}
+		}
+		long[] sorted = Arrays.copyOf(samples, n);
+		Arrays.sort(sorted);
+		double[] ms = new double[n];
+		for (int i = 0; i < n; ++i) ms[i] = sorted[i] / 1e6;
+		double mean = mean(ms);
+		String percentiles = String.format(Locale.ROOT,
+			"{\"0.0\":%.6f,\"50.0\":%.6f,\"90.0\":%.6f,\"99.0\":%.6f,\"99.9\":%.6f,\"100.0\":%.6f}",
+			pct(ms, 0.0), pct(ms, 0.5), pct(ms, 0.9), pct(ms, 0.99), pct(ms, 0.999), pct(ms, 1.0));
+		console.println(String.format(Locale.ROOT, "%-48s x%-3d sample %11.3f ms/op (p99 %.3f)",
+			name, this._scale, mean, pct(ms, 0.99)));
+		return json(name, "sample", "ms/op", mean, error(ms, mean), percentiles, null);
+	}
+
+	/**
+	 * Reports print their rows; the benchmark discards them.
+	 */
+	private static void silence(){
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+	}
+
+	private String json(String name, String mode, String unit, double score, double error,
+			String percentiles, double[] raw){
+		StringBuilder sb = new StringBuilder();
+		sb.append("  {\"benchmark\":\"MechanicShopBench.").append(name).append('"');
+		sb.append(",\"mode\":\"").append(mode).append('"');
+		sb.append(",\"warmupIterations\":").append(WARMUP);
+		sb.append(",\"measurementIterations\":").append(ITERATIONS);
+		sb.append(",\"params\":{\"scale\":\"").append(this._scale).append("\"}");
+		sb.append(",\"primaryMetric\":{\"score\":").append(number(score));
+		sb.append(",\"scoreError\":").append(number(error));
+		sb.append(",\"scoreUnit\":\"").append(unit).append('"');
+		if (percentiles != null){
+			sb.append(",\"scorePercentiles\":").append(percentiles);
+		}
+		if (raw != null){
+			sb.append(",\"rawData\":[[");
+			for (int i = 0; i < raw.length; ++i){
+				if (i > 0) sb.append(',');
+				sb.append(number(raw[i]));
+			}
+			sb.append("]]");
+		}
+		sb.append("}}");
+		return sb.toString();
+	}
+
+	/**
+	 * @return the value as a JSON number; JSON has no NaN or infinity, so
+	 * those are written as strings, as JMH writes them
+	 */
+	private static String number(double v){
+		if (Double.isNaN(v) || Double.isInfinite(v)){
+			return "\"" + v + "\"";
+		}
+		return String.format(Locale.ROOT, "%.6f", v);
+	}
+
+	private static double mean(double[] v){
+		double sum = 0;
+		for (double x : v) sum += x;
+		return v.length == 0 ? 0.0 : sum / v.length;
+	}
+
+	/**
+	 * @return the half width of the 99.9% confidence interval (normal approximation)
+	 */
+	private static double error(double[] v, double mean){
+		if (v.length < 2) return Double.NaN;
+		double sq = 0;
+		for (double x : v) sq += (x - mean) * (x - mean);
+		return 3.291 * Math.sqrt(sq / (v.length - 1)) / Math.sqrt(v.length);
+	}
+
+	private static double pct(double[] sorted, double p){
+		if (sorted.length == 0) return 0.0;
+		int index = (int) Math.ceil(p * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+	}
+}//end MechanicShopBench
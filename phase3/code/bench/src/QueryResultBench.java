@@ -0,0 +1,105 @@
+/*
+ * Allocation benchmark for query results
+ * ======================================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.lang.management.ManagementFactory;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class compares how much memory the two result representations take
+ * for the same rows: the nested List&lt;List&lt;String&gt;&gt; that
+ * executeQueryAndReturnResult used to return, and the columnar QueryResult.
+ * Both read the same result set, fetched once per round, so the driver's own
+ * allocations are the same for both and the difference is the container.  The
+ * bytes allocated per row are measured with the per-thread allocation counter
+ * of the JVM, and the time per row is printed alongside.
+ *
+ */
+
+public class QueryResultBench{
+	static final int ROUNDS = Integer.getInteger("bench.iterations", 20);
+	static final String[] QUERIES = {
+		"SELECT vin, make, model, year FROM Car",
+		"SELECT rid, customer_id, car_vin, date, odometer, complain FROM Service_Request",
+		"SELECT wid, rid, mid, date, comment, bill FROM Closed_Request" };
+
+	public static void main (String[] args) throws Exception {
+		if (args.length != 3) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + QueryResultBench.class.getName () +
+					" <dbname> <port> <user>");
+			return;
+		}//end if
+
+		Class.forName("org.postgresql.Driver");
+		MechanicShop esql = new MechanicShop (args[0], args[1], args[2], "");
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		try{
+			System.out.println("query\trows\tlists_bytes_per_row\tcolumnar_bytes_per_row\tlists_ns_per_row\tcolumnar_ns_per_row");
+			for (String sql : QUERIES){
+				long[] lists = new long[2];
+				long[] columnar = new long[2];
+				int rows = 0;
+				for (int round = 0; round < ROUNDS; ++round){
+					// alternates the order so neither side always runs on a warmer JIT
+					boolean listsFirst = round % 2 == 0;
+					for (int k = 0; k < 2; ++k){
+						boolean useLists = (k == 0) == listsFirst;
+						PooledConnection pc = esql.borrow();
+						try{
+							ResultSet rs = MechanicShop.prepare(pc, sql).executeQuery();
+							long bytes = threads.getThreadAllocatedBytes(thread);
+							long start = System.nanoTime();
+							if (useLists){
+								rows = collectLists(rs).size();
+							}else{
+								rows = QueryResult.from(rs).getRowCount();
+							}
+							long[] total = useLists ? lists : columnar;
+							total[1] += System.nanoTime() - start;
+							total[0] += threads.getThreadAllocatedBytes(thread) - bytes;
+						}finally{
+							pc.close();
+						}
+					}
+				}
+				double perRow = (double) Math.max(1, rows) * ROUNDS;
+				System.out.println(String.format("%s\t%d\t%.1f\t%.1f\t%.1f\t%.1f",
+					sql, rows, lists[0] / perRow, columnar[0] / perRow, lists[1] / perRow, columnar[1] / perRow));
+			}
+		}finally{
+			esql.cleanup();
+		}
+	}
+
+	/**
+	 * The former representation: one ArrayList of strings per row.
+	 */
+	static List<List<String>> collectLists(ResultSet rs) throws SQLException {
+		ResultSetMetaData rsmd = rs.getMetaData();
+		int numCol = rsmd.getColumnCount();
+		List<List<String>> result = new ArrayList<List<String>>();
+		while (rs.next()){
+			List<String> record = new ArrayList<String>();
+			for (int i = 1; i <= numCol; ++i)
+				record.add(rs.getString(i));
+			result.add(record);
+		}
+		rs.close();
+		return result;
+	}
+}//end QueryResultBench
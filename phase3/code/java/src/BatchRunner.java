@@ -0,0 +1,411 @@
+/*
+ * Non-interactive batch mode
+ * ==========================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class runs MechanicShop operations from a command file instead of the
+ * menu.  Every line holds one operation name followed by its arguments,
+ * separated by commas:
+ *
+ *   AddCustomer,fname,lname,phone,address
+ *   AddMechanic,fname,lname,experience
+ *   AddCar,vin,make,model,year
+ *   InsertServiceRequest,customer_id,vin,odometer,complain
+ *   CloseServiceRequest,rid,mid,comment,bill
+ *   ListCustomersWithBillLessThan100
+ *   ListCustomersWithMoreThan20Cars
+ *   ListCarsBefore1995With50000Milles
+ *   ListKCarsWithTheMostServices,k
+ *   ListCustomersInDescendingOrderOfTheirTotalBill
+ *
+ * Empty lines and lines starting with # are skipped.  The values go through
+ * the same checks as the menu, and a service request for a car the customer
+ * does not own is rejected, as it is there.  Writes are collected
+ * and committed every commitEvery commands, in the order of the file: each
+ * run of consecutive writes of the same kind goes out as one JDBC batch.
+ * A report first commits the pending writes so it sees them, and runs on
+ * the same connection, so a pool of one connection is enough.  When a
+ * group fails it is rolled back and replayed one command at a time so only
+ * the offending lines are lost.
+ *
+ */
+
+public class BatchRunner{
+	/**
+	 * A write waiting for the next group commit.
+	 */
+	static final class Pending {
+		final int line;
+		final String sql;
+		final Object[] params;
+		final long start;
+
+		Pending(int line, String sql, Object[] params, long start){
+			this.line = line;
+			this.sql = sql;
+			this.params = params;
+			this.start = start;
+		}
+	}
+
+	private final MechanicShop _esql;
+	private final int _commitEvery;
+	private final List<Pending> _group = new ArrayList<Pending>();
+
+	//per command latency in nanoseconds
+	private long[] _latencies = new long[1024];
+	private int _commands = 0;
+	private int _writes = 0;
+	private int _reports = 0;
+	private int _failed = 0;
+	private int _rejected = 0;
+
+	/**
+	 * @param esql the shop whose connection pool is used
+	 * @param commitEvery the number of writes committed together
+	 */
+	public BatchRunner(MechanicShop esql, int commitEvery){
+		this._esql = esql;
+		this._commitEvery = Math.max(1, commitEvery);
+	}
+
+	/**
+	 * Runs every command of the file and prints a throughput and latency summary.
+	 *
+	 * @param file the command file
+	 * @throws java.lang.Exception when the file could not be read or the connection broke
+	 */
+	public void run(File file) throws Exception {
+		long begin = System.nanoTime();
+		PooledConnection pc = this._esql.borrow();
+		try (BufferedReader reader = new BufferedReader(new FileReader(file))){
+			pc.connection().setAutoCommit(false);
+			String text;
+			int lineNo = 0;
+			while ((text = reader.readLine()) != null){
+				++lineNo;
+				text = text.trim();
+				if (text.isEmpty() || text.startsWith("#")){
+					continue;
+				}
+				long start = System.nanoTime();
+				try{
+					execute(pc, lineNo, text.split(",", -1), start);
+				}catch (IllegalArgumentException e){
+					System.err.println("line " + lineNo + ": " + e.getMessage());
+					++this._failed;
+				}
+			}
+			flush(pc);
+		}finally{
+			pc.close();
+		}
+		summary(System.nanoTime() - begin);
+	}
+
+	/**
+	 * Queues a write or, for a report, commits the pending writes and runs it.
+	 */
+	private void execute(PooledConnection pc, int line, String[] f, long start) throws SQLException {
+		String op = f[0].trim();
+		switch (op){
+			case "AddCustomer":
+				arity(f, 4);
+				ShopService.checkCustomer(f[1], f[2], f[3]);
+				queue(pc, line, MechanicShop.INSERT_CUSTOMER, start,
+					this._esql.getCustomerIds().nextId(), f[1], f[2], f[3], f[4]);
+				break;
+			case "AddMechanic":
+				arity(f, 3);
+				ShopService.checkMechanic(f[1], f[2], toInt(f[3]));
+				queue(pc, line, MechanicShop.INSERT_MECHANIC, start,
+					this._esql.getMechanicIds().nextId(), f[1], f[2], toInt(f[3]));
+				break;
+			case "AddCar":
+				arity(f, 4);
+				ShopService.checkCar(f[1], f[2], f[3], toInt(f[4]));
+				queue(pc, line, MechanicShop.INSERT_CAR, start, f[1], f[2], f[3], toInt(f[4]));
+				break;
+			case "InsertServiceRequest":
+				arity(f, 4);
+				ShopService.checkServiceRequest(toInt(f[3]), f[4]);
+				// inserts nothing when the customer does not own the car
+				queue(pc, line, MechanicShop.INSERT_OWNED_SERVICE_REQUEST, start,
+					this._esql.getRequestIds().nextId(), toInt(f[3]), f[4], toInt(f[1]), f[2]);
+				break;
+			case "CloseServiceRequest":
+				arity(f, 4);
+				queue(pc, line, ShopService.CLOSE_SERVICE_REQUEST, start,
+					this._esql.getClosedRequestIds().nextId(), toInt(f[1]), toInt(f[2]), f[3], toInt(f[4]));
+				break;
+			case "ListCustomersWithBillLessThan100":
+				report(pc, start, MechanicShop.REPORT_BILL_LESS_THAN_100_TABLES, MechanicShop.REPORT_BILL_LESS_THAN_100);
+				break;
+			case "ListCustomersWithMoreThan20Cars":
+				report(pc, start, MechanicShop.REPORT_MORE_THAN_20_CARS_TABLES, MechanicShop.REPORT_MORE_THAN_20_CARS);
+				break;
+			case "ListCarsBefore1995With50000Milles":
+				report(pc, start, MechanicShop.REPORT_CARS_BEFORE_1995_TABLES, MechanicShop.REPORT_CARS_BEFORE_1995);
+				break;
+			case "ListKCarsWithTheMostServices":
+				arity(f, 1);
+				flush(pc);
+				this._esql.printTopCars(toInt(f[1]));
+				++this._reports;
+				record(System.nanoTime() - start);
+				break;
+			case "ListCustomersInDescendingOrderOfTheirTotalBill":
+				report(pc, start, MechanicShop.REPORT_TOTAL_BILL_TABLES, MechanicShop.REPORT_TOTAL_BILL);
+				break;
+			default:
+				throw new IllegalArgumentException("unknown operation '" + op + "'");
+		}
+	}
+
+	private void queue(PooledConnection pc, int line, String sql, long start, Object... params) throws SQLException {
+		this._group.add(new Pending(line, sql, params, start));
+		++this._writes;
+		if (this._group.size() >= this._commitEvery){
+			flush(pc);
+		}
+	}
+
+	private void report(PooledConnection pc, long start, String[] tables, String sql, Object... params) throws SQLException {
+		flush(pc);
+		// on the batch connection: borrowing a second one deadlocks a pool of one
+		this._esql.executeReport(pc, tables, sql, params);
+		++this._reports;
+		record(System.nanoTime() - start);
+	}
+
+	/**
+	 * Sends the pending writes in the order of the file, each run of the
+	 * same statement as one JDBC batch, and commits them together.  A run of
+	 * closes is sent as one call of close_service_requests.  The group is
+	 * emptied even when this throws.
+	 */
+	private void flush(PooledConnection pc) throws SQLException {
+		if (this._group.isEmpty()){
+			return;
+		}
+		try{
+			send(pc);
+		}finally{
+			this._group.clear();
+		}
+	}
+
+	private void send(PooledConnection pc) throws SQLException {
+		int[] counts = new int[this._group.size()];
+		//status of each close, CLOSED for the other writes
+		int[] statuses = new int[this._group.size()];
+		try{
+			int i = 0;
+			while (i < this._group.size()){
+				String sql = this._group.get(i).sql;
+				int first = i;
+				while (i < this._group.size() && this._group.get(i).sql.equals(sql)){
+					++i;
+				}
+				if (sql.equals(ShopService.CLOSE_SERVICE_REQUEST)){
+					closeAll(pc, first, i, counts, statuses);
+					continue;
+				}
+				PreparedStatement stmt = MechanicShop.prepare(pc, sql);
+				long begin = System.nanoTime();
+				int[] batch = null;
+				try{
+					for (int k = first; k < i; ++k){
+						MechanicShop.prepare(pc, sql, this._group.get(k).params).addBatch();
+					}
+					batch = stmt.executeBatch();
+					System.arraycopy(batch, 0, counts, first, batch.length);
+				}finally{
+					// the statement stays in the cache; a failed batch must not be sent again
+					stmt.clearBatch();
+					recordStatement(sql, this._group.get(first).params, begin, batch == null ? 0 : rows(batch), batch == null);
+				}
+			}
+			pc.connection().commit();
+		}catch (SQLException e){
+			pc.connection().rollback();
+			replay(pc, counts, statuses);
+		}catch (RuntimeException e){
+			// nothing of the group may be committed by the next flush
+			pc.connection().rollback();
+			throw e;
+		}
+		long now = System.nanoTime();
+		for (int i = 0; i < this._group.size(); ++i){
+			Pending p = this._group.get(i);
+			if (i == 0 || !p.sql.equals(this._group.get(i - 1).sql)){
+				if (p.sql.equals(ShopService.CLOSE_SERVICE_REQUEST)){
+					this._esql.getReportCache().invalidate("closed_request");
+				}else{
+					this._esql.getReportCache().invalidateFor(p.sql);
+				}
+			}
+			if (counts[i] == 0){
+				System.err.println("line " + p.line + ": " + (p.sql.equals(ShopService.CLOSE_SERVICE_REQUEST)
+					? ShopService.CLOSE_MESSAGES[statuses[i]] : ShopService.NOT_OWNED));
+				++this._rejected;
+			}
+			if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO){
+				track(p);
+			}
+			record(now - p.start);
+		}
+	}
+
+	/**
+	 * Tells the in-memory indexes about a customer, car or service request
+	 * that was committed.
+	 */
+	private void track(Pending p) throws SQLException {
+		if (p.sql.equals(MechanicShop.INSERT_CUSTOMER)){
+			this._esql.getCustomerNames().add((Integer) p.params[0], (String) p.params[1], (String) p.params[2]);
+		}else if (p.sql.equals(MechanicShop.INSERT_CAR)){
+			this._esql.getTopCars().carAdded((String) p.params[0], (String) p.params[1], (String) p.params[2]);
+		}else if (p.sql.equals(MechanicShop.INSERT_OWNED_SERVICE_REQUEST)){
+			this._esql.getTopCars().requestAdded((String) p.params[4], (Integer) p.params[0]);
+		}
+	}
+
+	/**
+	 * Closes the requests of group positions [from, to) in one call.
+	 */
+	private void closeAll(PooledConnection pc, int from, int to, int[] counts, int[] statuses) throws SQLException {
+		int n = to - from;
+		int[] wids = new int[n];
+		int[] rids = new int[n];
+		int[] mids = new int[n];
+		String[] comments = new String[n];
+		int[] bills = new int[n];
+		for (int k = 0; k < n; ++k){
+			Object[] params = this._group.get(from + k).params;
+			wids[k] = (Integer) params[0];
+			rids[k] = (Integer) params[1];
+			mids[k] = (Integer) params[2];
+			comments[k] = (String) params[3];
+			bills[k] = (Integer) params[4];
+		}
+		long begin = System.nanoTime();
+		int[] closed = null;
+		try{
+			closed = ShopService.closeServiceRequests(pc, wids, rids, mids, comments, bills);
+		}finally{
+			recordStatement(ShopService.CLOSE_SERVICE_REQUESTS, new Object[]{ wids, rids, mids, comments, bills },
+				begin, closed == null ? 0 : n, closed == null);
+		}
+		for (int k = 0; k < n; ++k){
+			statuses[from + k] = closed[k];
+			counts[from + k] = closed[k] == ShopService.CLOSED ? 1 : 0;
+		}
+	}
+
+	/**
+	 * Runs the writes of a failed group one at a time, each in its own
+	 * transaction, and reports the ones that fail.
+	 */
+	private void replay(PooledConnection pc, int[] counts, int[] statuses) throws SQLException {
+		for (int i = 0; i < this._group.size(); ++i){
+			Pending p = this._group.get(i);
+			long begin = System.nanoTime();
+			try{
+				if (p.sql.equals(ShopService.CLOSE_SERVICE_REQUEST)){
+					try (ResultSet rs = MechanicShop.prepare(pc, p.sql, p.params).executeQuery()){
+						rs.next();
+						statuses[i] = rs.getInt(1);
+					}
+					counts[i] = statuses[i] == ShopService.CLOSED ? 1 : 0;
+				}else{
+					counts[i] = MechanicShop.prepare(pc, p.sql, p.params).executeUpdate();
+				}
+				pc.connection().commit();
+				recordStatement(p.sql, p.params, begin, counts[i], false);
+			}catch (SQLException e){
+				recordStatement(p.sql, p.params, begin, 0, true);
+				pc.connection().rollback();
+				System.err.println("line " + p.line + ": " + e.getMessage());
+				counts[i] = -1;
+				++this._failed;
+			}
+		}
+	}
+
+	/**
+	 * Passes a statement run on the batch connection to the statement
+	 * metrics and the slow query log.
+	 */
+	private void recordStatement(String sql, Object[] params, long begin, long rows, boolean failed){
+		this._esql.recordStatement(sql, params, System.nanoTime() - begin, rows, failed);
+	}
+
+	/**
+	 * @return the rows changed by a JDBC batch, counting SUCCESS_NO_INFO as one
+	 */
+	private static long rows(int[] counts){
+		long rows = 0;
+		for (int n : counts){
+			rows += n == Statement.SUCCESS_NO_INFO ? 1 : Math.max(n, 0);
+		}
+		return rows;
+	}
+
+	private void record(long nanos){
+		if (this._commands == this._latencies.length){
+			this._latencies = Arrays.copyOf(this._latencies, this._commands * 2);
+		}
+		this._latencies[this._commands++] = nanos;
+	}
+
+	private void summary(long elapsed){
+		long[] sorted = Arrays.copyOf(this._latencies, this._commands);
+		Arrays.sort(sorted);
+		double seconds = elapsed / 1e9;
+		System.out.println(String.format("Batch finished: %d commands (%d writes, %d reports) in %.2f s, %.1f commands/s",
+			this._commands, this._writes, this._reports, seconds, this._commands / seconds));
+		System.out.println(String.format("Latency: p50=%.2f ms p99=%.2f ms max=%.2f ms; failed=%d rejected=%d",
+			percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 1.0), this._failed, this._rejected));
+	}
+
+	private static double percentile(long[] sorted, double p){
+		if (sorted.length == 0) return 0.0;
+		int index = (int) Math.ceil(p * sorted.length) - 1;
+		return sorted[Math.max(0, index)] / 1e6;
+	}
+
+	private static void arity(String[] f, int args){
+		if (f.length != args + 1){
+			throw new IllegalArgumentException(f[0] + " expects " + args + " arguments, got " + (f.length - 1));
+		}
+	}
+
+	private static int toInt(String s){
+		try{
+			return Integer.parseInt(s.trim());
+		}catch (NumberFormatException e){
+			throw new IllegalArgumentException("'" + s + "' is not a number");
+		}
+	}
+}//end BatchRunner
@@ -0,0 +1,173 @@
+/*
+ * Maintained customer bill totals
+ * ===============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * This class keeps the table Customer_Bill_Total, which holds the sum of the
+ * bills of every customer with at least one closed request.  A trigger on
+ * Closed_Request updates the row of the customer whenever a request is
+ * closed, changed or removed, the same way the Lab10 triggers fill in a
+ * column on insert, so the total bill report reads the table in bill order
+ * instead of aggregating all closed requests.  The table and trigger are
+ * created by a SchemaMigrator step; this class holds their definitions,
+ * rebuilds the totals from scratch and checks them against the full
+ * aggregation.
+ *
+ */
+
+public class BillTotals{
+	public static final String TABLE = "customer_bill_total";
+
+	static final String CREATE_TABLE =
+		"CREATE TABLE IF NOT EXISTS Customer_Bill_Total (" +
+		" customer_id INTEGER NOT NULL," +
+		" total_bill BIGINT NOT NULL," +
+		" requests INTEGER NOT NULL," +
+		" PRIMARY KEY (customer_id))";
+
+	static final String CREATE_INDEX =
+		"CREATE INDEX IF NOT EXISTS customer_bill_total_bill_idx ON Customer_Bill_Total (total_bill DESC)";
+
+	//adds NEW.bill to the total of the customer of the request and takes OLD.bill off
+	static final String CREATE_FUNCTION =
+		"CREATE OR REPLACE FUNCTION maintain_customer_bill_total()\n" +
+		" RETURNS \"trigger\" AS\n" +
+		" $BODY$\n" +
+		" BEGIN\n" +
+		"   IF TG_OP IN ('UPDATE', 'DELETE') THEN\n" +
+		"     UPDATE Customer_Bill_Total T SET total_bill = T.total_bill - OLD.bill, requests = T.requests - 1\n" +
+		"       FROM Service_Request S WHERE S.rid = OLD.rid AND T.customer_id = S.customer_id;\n" +
+		"     DELETE FROM Customer_Bill_Total T USING Service_Request S\n" +
+		"       WHERE S.rid = OLD.rid AND T.customer_id = S.customer_id AND T.requests = 0;\n" +
+		"   END IF;\n" +
+		"   IF TG_OP IN ('INSERT', 'UPDATE') THEN\n" +
+		"     INSERT INTO Customer_Bill_Total (customer_id, total_bill, requests)\n" +
+		"       SELECT S.customer_id, NEW.bill, 1 FROM Service_Request S WHERE S.rid = NEW.rid\n" +
+		"       ON CONFLICT (customer_id) DO UPDATE\n" +
+		"       SET total_bill = Customer_Bill_Total.total_bill + EXCLUDED.total_bill,\n" +
+		"           requests = Customer_Bill_Total.requests + 1;\n" +
+		"   END IF;\n" +
+		"   RETURN NULL;\n" +
+		" END;\n" +
+		" $BODY$\n" +
+		" LANGUAGE plpgsql VOLATILE";
+
+	//TRUNCATE does not fire row triggers, so it empties the totals itself
+	static final String CREATE_TRUNCATE_FUNCTION =
+		"CREATE OR REPLACE FUNCTION clear_customer_bill_total()\n" +
+		" RETURNS \"trigger\" AS\n" +
+		" $BODY$\n" +
+		" BEGIN\n" +
+		"   DELETE FROM Customer_Bill_Total;\n" +
+		"   RETURN NULL;\n" +
+		" END;\n" +
+		" $BODY$\n" +
+		" LANGUAGE plpgsql VOLATILE";
+
+	static final String[] CREATE_TRIGGERS = {
+		"DROP TRIGGER IF EXISTS CustomerBillTotalTrigger ON Closed_Request",
+		"CREATE TRIGGER CustomerBillTotalTrigger AFTER INSERT OR UPDATE OR DELETE ON Closed_Request" +
+		" FOR EACH ROW EXECUTE PROCEDURE maintain_customer_bill_total()",
+		"DROP TRIGGER IF EXISTS CustomerBillTotalTruncateTrigger ON Closed_Request",
+		"CREATE TRIGGER CustomerBillTotalTruncateTrigger AFTER TRUNCATE ON Closed_Request" +
+		" FOR EACH STATEMENT EXECUTE PROCEDURE clear_customer_bill_total()" };
+
+	//everything the totals need, in creation order
+	static final String[] SCHEMA = {
+		CREATE_TABLE, CREATE_INDEX, CREATE_FUNCTION, CREATE_TRUNCATE_FUNCTION,
+		CREATE_TRIGGERS[0], CREATE_TRIGGERS[1], CREATE_TRIGGERS[2], CREATE_TRIGGERS[3] };
+
+	//the totals computed from scratch, as the report used to do on every call
+	static final String AGGREGATE =
+		"SELECT S.customer_id, SUM(A.bill) AS total_bill, COUNT(*) AS requests" +
+		" FROM Closed_Request A, Service_Request S WHERE A.rid = S.rid GROUP BY S.customer_id";
+
+	static final String MISMATCHES =
+		"SELECT COALESCE(T.customer_id, F.customer_id), T.total_bill, F.total_bill, T.requests, F.requests" +
+		" FROM Customer_Bill_Total T FULL OUTER JOIN (" + AGGREGATE + ") F ON F.customer_id = T.customer_id" +
+		" WHERE T.total_bill IS DISTINCT FROM F.total_bill OR T.requests IS DISTINCT FROM F.requests" +
+		" ORDER BY 1";
+
+	private final MechanicShop _esql;
+
+	/**
+	 * @param esql the shop used to reach the database
+	 */
+	public BillTotals(MechanicShop esql){
+		this._esql = esql;
+	}
+
+	/**
+	 * Recomputes every total from Closed_Request in one transaction.  Closed
+	 * requests cannot be written while it runs, so no change is lost.
+	 *
+	 * @return the number of customers with a total
+	 * @throws java.sql.SQLException when the rebuild failed and was rolled back
+	 */
+	public int rebuild() throws SQLException {
+		PooledConnection pc = this._esql.borrow();
+		try{
+			pc.connection().setAutoCommit(false);
+			int rows = fill(pc);
+			pc.connection().commit();
+			this._esql.getReportCache().invalidate(TABLE);
+			return rows;
+		}finally{
+			// returning the connection rolls back a failed rebuild
+			pc.close();
+		}
+	}
+
+	/**
+	 * Replaces the totals with the full aggregation inside the transaction
+	 * open on the connection.
+	 *
+	 * @param pc a connection with auto-commit off
+	 * @return the number of customers with a total
+	 * @throws java.sql.SQLException when the totals could not be written
+	 */
+	static int fill(PooledConnection pc) throws SQLException {
+		MechanicShop.prepare(pc, "LOCK TABLE Closed_Request IN SHARE ROW EXCLUSIVE MODE").execute();
+		MechanicShop.prepare(pc, "DELETE FROM Customer_Bill_Total").executeUpdate();
+		return MechanicShop.prepare(pc,
+			"INSERT INTO Customer_Bill_Total (customer_id, total_bill, requests) " + AGGREGATE).executeUpdate();
+	}
+
+	/**
+	 * Compares the maintained totals with the full aggregation and prints
+	 * every customer whose total or request count differs.
+	 *
+	 * @return the number of differing customers, 0 when the totals are correct
+	 * @throws java.sql.SQLException when the comparison failed
+	 */
+	public int check() throws SQLException {
+		int mismatches = 0;
+		PooledConnection pc = this._esql.borrow();
+		try{
+			PreparedStatement stmt = MechanicShop.prepare(pc, MISMATCHES);
+			try (ResultSet rs = stmt.executeQuery()){
+				while (rs.next()){
+					System.out.println(String.format("customer %d: maintained total=%s requests=%s, actual total=%s requests=%s",
+						rs.getInt(1), rs.getString(2), rs.getString(4), rs.getString(3), rs.getString(5)));
+					++mismatches;
+				}
+			}
+		}finally{
+			pc.close();
+		}
+		return mismatches;
+	}
+}//end BillTotals
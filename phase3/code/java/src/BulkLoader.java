@@ -0,0 +1,359 @@
+/*
+ * Client-side bulk loader
+ * =======================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * This class loads the shop data files (customer.csv, car.csv, ...) from a
+ * directory on the client machine.  Each file is streamed to the server with
+ * the COPY protocol of the PostgreSQL driver, so the files do not have to be
+ * readable by the database server.  Tables are loaded in foreign key order;
+ * tables of the same stage have no dependencies on each other and are loaded
+ * in parallel on separate pooled connections.
+ *
+ * Dates written as M/D/YYYY HH:MM are rewritten to YYYY-MM-DD while the bytes
+ * are copied, so the load does not depend on the server's DateStyle.  Files of
+ * mechanicshop.mappedLoadMinBytes (16 MB) or more are parsed by
+ * MappedCsvParser on all cores and sent in file order; smaller ones are
+ * copied line by line.  Memory use does not grow with the size of the files.
+ *
+ */
+
+public class BulkLoader{
+	//size of the read buffer and of the buffer handed to the COPY stream
+	static final int BUFFER_SIZE = 1 << 16;
+	static final byte[] NEWLINE = { '\n' };
+	//files at least this large are parsed in parallel chunks by MappedCsvParser
+	static final long MAPPED_MIN_BYTES = Long.getLong("mechanicshop.mappedLoadMinBytes", 16L << 20);
+
+	/**
+	 * One data file and the table it is copied into.
+	 */
+	static final class TableSpec {
+		final String table;
+		final String file;
+		final String columns;
+		//index of the field holding a M/D/YYYY date, -1 if none
+		final int dateField;
+
+		TableSpec(String table, String file, String columns, int dateField){
+			this.table = table;
+			this.file = file;
+			this.columns = columns;
+			this.dateField = dateField;
+		}
+
+		int fieldCount(){
+			return this.columns.split(",").length;
+		}
+	}
+
+	//tables grouped by load stage; a stage only references tables of earlier stages
+	static final TableSpec[][] STAGES = {
+		{
+			new TableSpec("Customer", "customer.csv", "id, fname, lname, phone, address", -1),
+			new TableSpec("Mechanic", "mechanic.csv", "id, fname, lname, experience", -1),
+			new TableSpec("Car", "car.csv", "vin, make, model, year", -1),
+		},
+		{
+			new TableSpec("Owns", "owns.csv", "ownership_id, customer_id, car_vin", -1),
+			new TableSpec("Service_Request", "service_request.csv", "rid, customer_id, car_vin, date, odometer, complain", 3),
+		},
+		{
+			new TableSpec("Closed_Request", "closed_request.csv", "wid, rid, mid, date, comment, bill", 3),
+		},
+	};
+
+	private final MechanicShop _esql;
+	private final File _dir;
+
+	/**
+	 * @param esql the shop whose connection pool is used
+	 * @param dir the directory holding the data files
+	 */
+	public BulkLoader(MechanicShop esql, File dir){
+		this._esql = esql;
+		this._dir = dir;
+	}
+
+	/**
+	 * Loads every table, stage by stage, and prints the rows per second
+	 * reached for each table and for the whole load.
+	 *
+	 * @return the total number of rows loaded
+	 * @throws java.lang.Exception when a file could not be read or a COPY failed
+	 */
+	public long load() throws Exception {
+		ExecutorService workers = Executors.newFixedThreadPool(
+			Math.min(STAGES[0].length, this._esql.getPool().getMaxSize()));
+		long totalRows = 0;
+		long start = System.nanoTime();
+		try{
+			for (TableSpec[] stage : STAGES){
+				List<Future<Long>> pending = new ArrayList<Future<Long>>();
+				for (final TableSpec spec : stage){
+					pending.add(workers.submit(() -> loadTable(spec)));
+				}
+				for (Future<Long> f : pending){
+					try{
+						totalRows += f.get();
+					}catch (ExecutionException e){
+						if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+						throw e;
+					}
+				}
+			}
+		}finally{
+			workers.shutdown();
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.println(String.format("Loaded %d rows in %.2f s (%.0f rows/s)",
+			totalRows, elapsed / 1e9, totalRows / (elapsed / 1e9)));
+
+		// rows were written without the allocators and in-memory indexes, so catch them up
+		this._esql.resyncIds();
+		this._esql.getTopCars().reconcile();
+		this._esql.getCustomerNames().load();
+		return totalRows;
+	}
+
+	/**
+	 * Streams one file into its table.
+	 *
+	 * @return the number of rows copied
+	 */
+	long loadTable(TableSpec spec) throws SQLException, IOException {
+		File file = new File(this._dir, spec.file);
+		long start = System.nanoTime();
+		long rows;
+		PooledConnection pc = this._esql.borrow();
+		try{
+			CopyManager copy = pc.connection().unwrap(PGConnection.class).getCopyAPI();
+			CopyIn copyIn = copy.copyIn("COPY " + spec.table + " (" + spec.columns + ") FROM STDIN WITH DELIMITER ','");
+			try{
+				if (file.length() >= MAPPED_MIN_BYTES){
+					new MappedCsvParser().parse(file, spec.fieldCount(), () -> new CopySink(spec.dateField),
+						bytes -> copyIn.writeToCopy(bytes, 0, bytes.length));
+				}else{
+					try (InputStream input = new FileInputStream(file)){
+						new LineCopier(copyIn, spec.dateField).copy(input);
+					}
+				}
+				rows = copyIn.endCopy();
+				this._esql.getReportCache().invalidate(spec.table);
+			}finally{
+				if (copyIn.isActive()){
+					copyIn.cancelCopy();
+				}
+			}
+		}finally{
+			pc.close();
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.println(String.format("%-16s %10d rows %8.2f s %12.0f rows/s",
+			spec.table, rows, elapsed / 1e9, rows / (elapsed / 1e9)));
+		return rows;
+	}
+
+	/**
+	 * Writes the rows of one chunk in the COPY text format, with the date
+	 * field rewritten, into one buffer that is sent as a whole.
+	 */
+	static final class CopySink implements MappedCsvParser.Sink<byte[]> {
+		private final int _dateField;
+		private byte[] _out = new byte[BUFFER_SIZE];
+		private int _outLength = 0;
+
+		CopySink(int dateField){
+			this._dateField = dateField;
+		}
+
+		public void row(MappedCsvParser.Row row){
+			// a rewritten date grows by at most two bytes (M/D/YYYY to YYYY-MM-DD)
+			int worstCase = row.length() + 3;
+			if (this._outLength + worstCase > this._out.length){
+				this._out = Arrays.copyOf(this._out, Math.max(this._out.length * 2, this._outLength + worstCase));
+			}
+			for (int f = 0; f < row.getFieldCount(); ++f){
+				if (f > 0){
+					this._out[this._outLength++] = ',';
+				}
+				int end = f == this._dateField ? row.copyDateTo(f, this._out, this._outLength) : -1;
+				this._outLength = end >= 0 ? end : row.copyTo(f, this._out, this._outLength);
+			}
+			this._out[this._outLength++] = '\n';
+		}
+
+		public byte[] finish(){
+			return Arrays.copyOf(this._out, this._outLength);
+		}
+	}
+
+	/**
+	 * Copies lines from an input stream to a COPY stream, dropping carriage
+	 * returns and empty lines and normalizing the date field.  All buffers
+	 * are allocated once per file.
+	 */
+	static final class LineCopier {
+		private final CopyIn _copyIn;
+		private final int _dateField;
+		private byte[] _line = new byte[1024];
+		private int _lineLength = 0;
+		private final byte[] _out = new byte[BUFFER_SIZE];
+		private int _outLength = 0;
+		//value parsed by the last readNumber call
+		private int _number = 0;
+
+		LineCopier(CopyIn copyIn, int dateField){
+			this._copyIn = copyIn;
+			this._dateField = dateField;
+		}
+
+		void copy(InputStream input) throws IOException, SQLException {
+			byte[] buf = new byte[BUFFER_SIZE];
+			int n;
+			while ((n = input.read(buf)) > 0){
+				for (int i = 0; i < n; ++i){
+					byte b = buf[i];
+					if (b == '\n'){
+						endLine();
+					}else if (b != '\r'){
+						if (this._lineLength == this._line.length){
+							this._line = Arrays.copyOf(this._line, this._line.length * 2);
+						}
+						this._line[this._lineLength++] = b;
+					}
+				}
+			}
+			endLine();
+			flush();
+		}
+
+		private void endLine() throws SQLException {
+			if (this._lineLength == 0){
+				return;
+			}
+			// a rewritten date grows by at most two bytes (M/D/YYYY to YYYY-MM-DD)
+			int worstCase = this._lineLength + 3;
+			if (this._outLength + worstCase > this._out.length){
+				flush();
+			}
+			if (worstCase > this._out.length){
+				this._copyIn.writeToCopy(this._line, 0, this._lineLength);
+				this._copyIn.writeToCopy(NEWLINE, 0, 1);
+				this._lineLength = 0;
+				return;
+			}
+			int field = 0;
+			int i = 0;
+			while (i < this._lineLength){
+				if (field == this._dateField){
+					int end = i;
+					while (end < this._lineLength && this._line[end] != ',') ++end;
+					writeDate(i, end);
+					i = end;
+					if (i < this._lineLength){
+						this._out[this._outLength++] = ',';
+						++i;
+						++field;
+					}
+					continue;
+				}
+				byte b = this._line[i++];
+				this._out[this._outLength++] = b;
+				if (b == ',') ++field;
+			}
+			this._out[this._outLength++] = '\n';
+			this._lineLength = 0;
+		}
+
+		/**
+		 * Writes line[from, to) as YYYY-MM-DD if it is a M/D/YYYY date with an
+		 * optional time, otherwise copies it unchanged.
+		 */
+		private void writeDate(int from, int to){
+			int i = readNumber(from, to);
+			int month = this._number;
+			boolean ok = i >= 0 && i < to && this._line[i] == '/';
+			int day = 0;
+			if (ok){
+				i = readNumber(i + 1, to);
+				day = this._number;
+				ok = i >= 0 && i < to && this._line[i] == '/';
+			}
+			int year = 0;
+			if (ok){
+				int start = i + 1;
+				i = readNumber(start, to);
+				year = this._number;
+				ok = i - start == 4 && (i == to || this._line[i] == ' ');
+			}
+			if (!ok){
+				System.arraycopy(this._line, from, this._out, this._outLength, to - from);
+				this._outLength += to - from;
+				return;
+			}
+			writeDigits(year, 4);
+			this._out[this._outLength++] = '-';
+			writeDigits(month, 2);
+			this._out[this._outLength++] = '-';
+			writeDigits(day, 2);
+		}
+
+		/**
+		 * Parses the digits starting at line[i] into _number.
+		 *
+		 * @return the index after the last digit, -1 if there was no digit
+		 */
+		private int readNumber(int i, int to){
+			int start = i;
+			int value = 0;
+			while (i < to && this._line[i] >= '0' && this._line[i] <= '9'){
+				value = value * 10 + (this._line[i] - '0');
+				++i;
+			}
+			this._number = value;
+			return i == start ? -1 : i;
+		}
+
+		private void writeDigits(int value, int width){
+			for (int i = width - 1; i >= 0; --i){
+				this._out[this._outLength + i] = (byte) ('0' + value % 10);
+				value /= 10;
+			}
+			this._outLength += width;
+		}
+
+		private void flush() throws SQLException {
+			if (this._outLength > 0){
+				this._copyIn.writeToCopy(this._out, 0, this._outLength);
+				this._outLength = 0;
+			}
+		}
+	}
+}//end BulkLoader
@@ -0,0 +1,327 @@
+/*
+ * Bounded connection pool
+ * =======================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class keeps up to maxSize physical connections to one database and
+ * lends them out to callers.  Connections are opened lazily, checked with
+ * isValid when they sat idle for too long, and handed back in the state they
+ * were borrowed in.  A borrower that keeps a connection longer than the leak
+ * threshold is reported together with the place it was borrowed from.
+ *
+ */
+
+public class ConnectionPool{
+	private final String _url;
+	private final Properties _props;
+	private final int _maxSize;
+	private final long _borrowTimeoutMs;
+	private final long _validateAfterNs;
+	private final long _leakThresholdNs;
+	private final int _statementCacheSize;
+
+	//one permit per connection that may be handed out
+	private final Semaphore _permits;
+	private final ConcurrentLinkedDeque<PooledConnection> _idle = new ConcurrentLinkedDeque<PooledConnection>();
+	private final Set<PooledConnection> _inUse = ConcurrentHashMap.newKeySet();
+	private final List<PooledConnection> _all = new ArrayList<PooledConnection>();
+	private final ScheduledExecutorService _leakDetector;
+	private volatile boolean _closed = false;
+
+	//metrics, guarded by this
+	private long _borrows = 0;
+	private long _timeouts = 0;
+	private long _created = 0;
+	private long _invalidated = 0;
+	private long _waitNsTotal = 0;
+	private long _waitNsMax = 0;
+	private int _peakInUse = 0;
+	private final long _startNs = System.nanoTime();
+	private long _lastChangeNs = _startNs;
+	private double _busyIntegral = 0;
+	private int _lastInUse = 0;
+
+	/**
+	 * @param url the JDBC connection URL
+	 * @param props the connection properties (user, password, driver options)
+	 * @param maxSize the maximum number of open connections
+	 * @param borrowTimeoutMs how long borrow waits for a free connection
+	 * @param validateAfterMs idle time after which a connection is validated before reuse
+	 * @param leakThresholdMs time after which a borrowed connection is reported as leaked, 0 to disable
+	 * @param statementCacheSize the number of prepared statements cached per connection
+	 */
+	public ConnectionPool(String url, Properties props, int maxSize, long borrowTimeoutMs,
+			long validateAfterMs, long leakThresholdMs, int statementCacheSize){
+		this._url = url;
+		this._props = props;
+		this._maxSize = maxSize;
+		this._borrowTimeoutMs = borrowTimeoutMs;
+		this._validateAfterNs = TimeUnit.MILLISECONDS.toNanos(validateAfterMs);
+		this._leakThresholdNs = TimeUnit.MILLISECONDS.toNanos(leakThresholdMs);
+		this._statementCacheSize = statementCacheSize;
+		this._permits = new Semaphore(maxSize, true);
+
+		if (leakThresholdMs > 0){
+			this._leakDetector = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "pool-leak-detector");
+				t.setDaemon(true);
+				return t;
+			});
+			long period = Math.max(1, leakThresholdMs / 2);
+			this._leakDetector.scheduleAtFixedRate(this::detectLeaks, period, period, TimeUnit.MILLISECONDS);
+		}else{
+			this._leakDetector = null;
+		}
+	}
+
+	/**
+	 * Borrows a connection, waiting up to the borrow timeout for one to be
+	 * returned when all of them are in use.
+	 *
+	 * @return a connection handle; close it to give the connection back
+	 * @throws java.sql.SQLException when the timeout expires or no connection could be opened
+	 */
+	public PooledConnection borrow() throws SQLException {
+		if (this._closed){
+			throw new SQLException("Connection pool is closed");
+		}
+		long start = System.nanoTime();
+		boolean acquired;
+		try{
+			acquired = this._permits.tryAcquire(this._borrowTimeoutMs, TimeUnit.MILLISECONDS);
+		}catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a connection");
+		}
+		long waited = System.nanoTime() - start;
+		if (!acquired){
+			synchronized (this){
+				++this._timeouts;
+			}
+			throw new SQLException(String.format(
+				"Timed out after %d ms waiting for a connection (pool size %d, all in use)",
+				this._borrowTimeoutMs, this._maxSize));
+		}
+
+		PooledConnection pc;
+		try{
+			pc = takeIdle();
+			if (pc == null){
+				pc = open();
+			}
+		}catch (SQLException e){
+			this._permits.release();
+			throw e;
+		}
+
+		pc.borrowedAt = System.nanoTime();
+		pc.borrowSite = this._leakDetector == null ? null : new Throwable("borrowed here");
+		pc.leakReported = false;
+		this._inUse.add(pc);
+		synchronized (this){
+			++this._borrows;
+			this._waitNsTotal += waited;
+			this._waitNsMax = Math.max(this._waitNsMax, waited);
+			accountBusy(this._inUse.size());
+		}
+		return pc;
+	}
+
+	/**
+	 * Returns the most recently used idle connection that is still usable.
+	 */
+	private PooledConnection takeIdle(){
+		PooledConnection pc;
+		while ((pc = this._idle.pollFirst()) != null){
+			if (System.nanoTime() - pc.lastReleased < this._validateAfterNs){
+				return pc;
+			}
+			try{
+				if (pc.connection().isValid(2)){
+					return pc;
+				}
+			}catch (SQLException e){
+				// treated as invalid.
+			}
+			discard(pc);
+			synchronized (this){
+				++this._invalidated;
+			}
+		}
+		return null;
+	}
+
+	private PooledConnection open() throws SQLException {
+		Connection conn = DriverManager.getConnection(this._url, this._props);
+		PooledConnection pc = new PooledConnection(this, conn, this._statementCacheSize);
+		synchronized (this){
+			++this._created;
+			this._all.add(pc);
+		}
+		return pc;
+	}
+
+	private void discard(PooledConnection pc){
+		synchronized (this){
+			this._all.remove(pc);
+		}
+		pc.destroy();
+	}
+
+	/**
+	 * Gives a borrowed connection back.  An open transaction is rolled back
+	 * and auto-commit restored; a broken connection is closed instead of
+	 * being reused.
+	 */
+	void release(PooledConnection pc){
+		if (!this._inUse.remove(pc)){
+			return;
+		}
+		boolean reusable = !this._closed;
+		try{
+			if (reusable && !pc.connection().getAutoCommit()){
+				pc.connection().rollback();
+				pc.connection().setAutoCommit(true);
+			}
+			reusable = reusable && !pc.connection().isClosed();
+		}catch (SQLException e){
+			reusable = false;
+		}
+		synchronized (this){
+			accountBusy(this._inUse.size());
+		}
+		if (reusable){
+			pc.lastReleased = System.nanoTime();
+			this._idle.offerFirst(pc);
+		}else{
+			discard(pc);
+		}
+		this._permits.release();
+	}
+
+	/**
+	 * Adds the time spent at the previous in-use level to the busy integral
+	 * and moves to the new level.  Must be called with the lock held.
+	 */
+	private void accountBusy(int inUse){
+		long now = System.nanoTime();
+		this._busyIntegral += (double) this._lastInUse * (now - this._lastChangeNs);
+		this._lastInUse = inUse;
+		this._lastChangeNs = now;
+		if (inUse > this._peakInUse){
+			this._peakInUse = inUse;
+		}
+	}
+
+	/**
+	 * Reports every connection held longer than the leak threshold, once per borrow.
+	 */
+	private void detectLeaks(){
+		long now = System.nanoTime();
+		for (PooledConnection pc : this._inUse){
+			if (!pc.leakReported && now - pc.borrowedAt > this._leakThresholdNs){
+				pc.leakReported = true;
+				System.err.println(String.format("Possible connection leak: connection held for %d ms",
+					TimeUnit.NANOSECONDS.toMillis(now - pc.borrowedAt)));
+				if (pc.borrowSite != null){
+					pc.borrowSite.printStackTrace();
+				}
+			}
+		}
+	}
+
+	public int getMaxSize(){
+		return this._maxSize;
+	}
+
+	public int getInUse(){
+		return this._inUse.size();
+	}
+
+	public int getIdle(){
+		return this._idle.size();
+	}
+
+	/**
+	 * @return the average wait for a connection in microseconds
+	 */
+	public synchronized double getAverageWaitMicros(){
+		return this._borrows == 0 ? 0.0 : this._waitNsTotal / 1000.0 / this._borrows;
+	}
+
+	/**
+	 * @return the share of pool capacity that was in use since the pool was created, 0..1
+	 */
+	public synchronized double getUtilization(){
+		long now = System.nanoTime();
+		double busy = this._busyIntegral + (double) this._lastInUse * (now - this._lastChangeNs);
+		long elapsed = now - this._startNs;
+		return elapsed == 0 ? 0.0 : busy / ((double) elapsed * this._maxSize);
+	}
+
+	/**
+	 * @return a one line summary of the pool metrics
+	 */
+	public synchronized String stats(){
+		return String.format(
+			"size=%d in-use=%d idle=%d peak=%d borrows=%d timeouts=%d created=%d invalidated=%d avg-wait=%.1fus max-wait=%.1fus utilization=%.1f%%",
+			this._maxSize, this._inUse.size(), this._idle.size(), this._peakInUse, this._borrows, this._timeouts,
+			this._created, this._invalidated, getAverageWaitMicros(), this._waitNsMax / 1000.0, 100.0 * getUtilization());
+	}
+
+	/**
+	 * @return the statement cache counters summed over every open connection
+	 */
+	public synchronized String statementStats(){
+		long hits = 0, misses = 0, evictions = 0;
+		int size = 0;
+		for (PooledConnection pc : this._all){
+			hits += pc.statements().getHits();
+			misses += pc.statements().getMisses();
+			evictions += pc.statements().getEvictions();
+			size += pc.statements().size();
+		}
+		long lookups = hits + misses;
+		double ratio = lookups == 0 ? 0.0 : (100.0 * hits) / lookups;
+		return String.format("statements=%d hits=%d misses=%d evictions=%d hit-ratio=%.1f%%",
+			size, hits, misses, evictions, ratio);
+	}
+
+	/**
+	 * Closes every idle connection and stops handing out new ones.
+	 * Connections still borrowed are closed when they are returned.
+	 */
+	public void close(){
+		this._closed = true;
+		if (this._leakDetector != null){
+			this._leakDetector.shutdownNow();
+		}
+		PooledConnection pc;
+		while ((pc = this._idle.pollFirst()) != null){
+			discard(pc);
+		}
+	}
+}//end ConnectionPool
@@ -0,0 +1,280 @@
+/*
+ * Customer last name index
+ * ========================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * This class finds customers by the beginning of their last name without a
+ * query.  Names are normalized (trailing CHAR padding removed, lower case)
+ * and kept with the customer ids in parallel arrays sorted by name, so a
+ * prefix is two binary searches and the matches are the slice between them.
+ * Customers added later go to a small sorted delta that is merged into the
+ * main arrays once it grows, so adding one does not copy the whole index.
+ * The main arrays and the delta are published together in one immutable
+ * State, so a search never sees a merged delta missing from both.
+ *
+ */
+
+public class CustomerNameIndex{
+	//size at which the delta is merged into the main arrays
+	static final int MAX_DELTA = 1024;
+
+	/**
+	 * Customers sorted by normalized last name, then id.
+	 */
+	static final class Slice {
+		final String[] keys;
+		final int[] ids;
+		final String[] fnames;
+		final String[] lnames;
+		final int size;
+
+		Slice(String[] keys, int[] ids, String[] fnames, String[] lnames, int size){
+			this.keys = keys;
+			this.ids = ids;
+			this.fnames = fnames;
+			this.lnames = lnames;
+			this.size = size;
+		}
+
+		static Slice empty(int capacity){
+			return new Slice(new String[capacity], new int[capacity], new String[capacity], new String[capacity], 0);
+		}
+
+		/**
+		 * @return the first position whose entry is not less than (key, id)
+		 */
+		int lowerBound(String key, int id){
+			int lo = 0;
+			int hi = this.size;
+			while (lo < hi){
+				int mid = (lo + hi) >>> 1;
+				int c = this.keys[mid].compareTo(key);
+				if (c < 0 || (c == 0 && this.ids[mid] < id)){
+					lo = mid + 1;
+				}else{
+					hi = mid;
+				}
+			}
+			return lo;
+		}
+	}
+
+	/**
+	 * The main arrays and the delta that belong together.
+	 */
+	static final class State {
+		final Slice main;
+		final Slice delta;
+
+		State(Slice main, Slice delta){
+			this.main = main;
+			this.delta = delta;
+		}
+	}
+
+	private final MechanicShop _esql;
+	//replaced with one write, never changed, so readers need no lock
+	private volatile State _state = new State(Slice.empty(0), Slice.empty(0));
+
+	/**
+	 * @param esql the shop used to reach the database
+	 */
+	public CustomerNameIndex(MechanicShop esql){
+		this._esql = esql;
+	}
+
+	/**
+	 * @return the name as it is compared: without padding, in lower case
+	 */
+	static String normalize(String name){
+		int end = name.length();
+		while (end > 0 && name.charAt(end - 1) == ' '){
+			--end;
+		}
+		int start = 0;
+		while (start < end && name.charAt(start) == ' '){
+			++start;
+		}
+		return name.substring(start, end).toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Loads all customers, replacing the current contents.
+	 *
+	 * @return the number of customers loaded
+	 * @throws java.sql.SQLException when the customers could not be read
+	 */
+	public int load() throws SQLException {
+		return load(this._esql.executeQueryAndReturnResult("SELECT id, fname, lname FROM Customer"));
+	}
+
+	/**
+	 * Loads the given customers, replacing the current contents.
+	 *
+	 * @param rows id, first name and last name of every customer
+	 * @return the number of customers loaded
+	 */
+	public int load(QueryResult rows){
+		Integer[] order = new Integer[rows.getRowCount()];
+		String[] keys = new String[rows.getRowCount()];
+		for (int i = 0; i < order.length; ++i){
+			order[i] = i;
+			keys[i] = normalize(rows.getString(i, 2));
+		}
+		Arrays.sort(order, (a, b) -> {
+			int c = keys[a].compareTo(keys[b]);
+			return c != 0 ? c : Integer.compare(rows.getInt(a, 0), rows.getInt(b, 0));
+		});
+		Slice main = new Slice(new String[order.length], new int[order.length],
+			new String[order.length], new String[order.length], order.length);
+		for (int i = 0; i < order.length; ++i){
+			int row = order[i];
+			main.keys[i] = keys[row];
+			main.ids[i] = rows.getInt(row, 0);
+			main.fnames[i] = rows.getString(row, 1).trim();
+			main.lnames[i] = rows.getString(row, 2).trim();
+		}
+		synchronized (this){
+			this._state = new State(main, Slice.empty(0));
+		}
+		return order.length;
+	}
+
+	/**
+	 * Adds a customer written by this process.
+	 */
+	public synchronized void add(int id, String fname, String lname){
+		String key = normalize(lname);
+		State state = this._state;
+		Slice d = state.delta;
+		int at = d.lowerBound(key, id);
+		if (at < d.size && d.ids[at] == id && d.keys[at].equals(key)){
+			return;
+		}
+		Slice next = insert(d, at, key, id, fname.trim(), lname.trim());
+		if (next.size >= MAX_DELTA){
+			this._state = new State(merge(state.main, next), Slice.empty(0));
+		}else{
+			this._state = new State(state.main, next);
+		}
+	}
+
+	private static Slice insert(Slice from, int at, String key, int id, String fname, String lname){
+		Slice to = new Slice(new String[from.size + 1], new int[from.size + 1],
+			new String[from.size + 1], new String[from.size + 1], from.size + 1);
+		System.arraycopy(from.keys, 0, to.keys, 0, at);
+		System.arraycopy(from.ids, 0, to.ids, 0, at);
+		System.arraycopy(from.fnames, 0, to.fnames, 0, at);
+		System.arraycopy(from.lnames, 0, to.lnames, 0, at);
+		to.keys[at] = key;
+		to.ids[at] = id;
+		to.fnames[at] = fname;
+		to.lnames[at] = lname;
+		int rest = from.size - at;
+		System.arraycopy(from.keys, at, to.keys, at + 1, rest);
+		System.arraycopy(from.ids, at, to.ids, at + 1, rest);
+		System.arraycopy(from.fnames, at, to.fnames, at + 1, rest);
+		System.arraycopy(from.lnames, at, to.lnames, at + 1, rest);
+		return to;
+	}
+
+	private static Slice merge(Slice a, Slice b){
+		Slice m = Slice.empty(a.size + b.size);
+		int i = 0, j = 0, k = 0;
+		while (i < a.size || j < b.size){
+			boolean fromA = j >= b.size || (i < a.size
+				&& (a.keys[i].compareTo(b.keys[j]) < 0 || (a.keys[i].equals(b.keys[j]) && a.ids[i] <= b.ids[j])));
+			Slice s = fromA ? a : b;
+			int p = fromA ? i++ : j++;
+			if (k > 0 && m.ids[k - 1] == s.ids[p] && m.keys[k - 1].equals(s.keys[p])){
+				continue;
+			}
+			m.keys[k] = s.keys[p];
+			m.ids[k] = s.ids[p];
+			m.fnames[k] = s.fnames[p];
+			m.lnames[k] = s.lnames[p];
+			++k;
+		}
+		return new Slice(m.keys, m.ids, m.fnames, m.lnames, k);
+	}
+
+	/**
+	 * Finds the customers whose last name starts with the prefix, ignoring
+	 * case and padding.
+	 *
+	 * @param prefix the beginning of the last name
+	 * @param limit the maximum number of matches
+	 * @return id, first name and last name of the matches, ordered by last name
+	 */
+	public List<String[]> search(String prefix, int limit){
+		String key = normalize(prefix);
+		State state = this._state;
+		Slice main = state.main;
+		Slice delta = state.delta;
+		int i = main.lowerBound(key, Integer.MIN_VALUE);
+		int j = delta.lowerBound(key, Integer.MIN_VALUE);
+		List<String[]> matches = new ArrayList<String[]>();
+		while (matches.size() < limit){
+			boolean inMain = i < main.size && main.keys[i].startsWith(key);
+			boolean inDelta = j < delta.size && delta.keys[j].startsWith(key);
+			if (!inMain && !inDelta){
+				break;
+			}
+			boolean fromMain = inMain && (!inDelta || main.keys[i].compareTo(delta.keys[j]) < 0
+				|| (main.keys[i].equals(delta.keys[j]) && main.ids[i] <= delta.ids[j]));
+			Slice s = fromMain ? main : delta;
+			int p = fromMain ? i++ : j++;
+			if (!matches.isEmpty() && matches.get(matches.size() - 1)[0].equals(Integer.toString(s.ids[p]))){
+				continue;
+			}
+			matches.add(new String[]{ Integer.toString(s.ids[p]), s.fnames[p], s.lnames[p] });
+		}
+		return matches;
+	}
+
+	/**
+	 * Searches the index and, when it has no match, the database, adding
+	 * what the database finds.  Catches customers added by other processes.
+	 *
+	 * @param prefix the beginning of the last name
+	 * @param limit the maximum number of matches
+	 * @return id, first name and last name of the matches
+	 * @throws java.sql.SQLException when the database could not be searched
+	 */
+	public List<String[]> find(String prefix, int limit) throws SQLException {
+		List<String[]> matches = search(prefix, limit);
+		if (!matches.isEmpty()){
+			return matches;
+		}
+		QueryResult rows = this._esql.executeQueryAndReturnResult(
+			"SELECT id, fname, lname FROM Customer WHERE lower(lname) LIKE ? ORDER BY lname, id LIMIT ?",
+			normalize(prefix).replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%", limit);
+		for (int i = 0; i < rows.getRowCount(); ++i){
+			add(rows.getInt(i, 0), rows.getString(i, 1), rows.getString(i, 2));
+		}
+		return search(prefix, limit);
+	}
+
+	/**
+	 * @return the number of customers in the index
+	 */
+	public int size(){
+		State state = this._state;
+		return state.main.size + state.delta.size;
+	}
+}//end CustomerNameIndex
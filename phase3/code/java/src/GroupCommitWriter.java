@@ -0,0 +1,311 @@
+/*
+ * Group commit of concurrent writes
+ * =================================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * This class commits the inserts of many concurrent callers together.  In
+ * auto-commit every insert waits for its own flush of the write-ahead log;
+ * here callers put their insert into a bounded queue and get a future, and
+ * one writer thread takes what has queued up, at most maxBatch writes and
+ * waiting at most maxDelayMs after the first one, sends them as one JDBC
+ * batch per statement and commits them with a single flush.
+ *
+ * A future completes with the update count once the group is committed,
+ * or Statement.SUCCESS_NO_INFO when the driver did not report it for a
+ * batch.  An INSERT ... SELECT, which may insert no row, is sent on its own
+ * inside the group so its count is always exact.
+ * When a batch fails, the group is rolled back and run again one write at
+ * a time, each behind a savepoint, so only the writes that fail complete
+ * with their SQLException and the others are still committed together.
+ * Writes are sent in foreign key order, so a service request may refer to
+ * a car queued in the same group.  A full queue blocks the caller.
+ *
+ */
+
+public class GroupCommitWriter{
+	//statements in the order their tables reference each other; others go last
+	static final String[] ORDER = { MechanicShop.INSERT_CUSTOMER, MechanicShop.INSERT_MECHANIC, MechanicShop.INSERT_CAR,
+		MechanicShop.INSERT_SERVICE_REQUEST, MechanicShop.INSERT_OWNED_SERVICE_REQUEST };
+
+	//an insert whose rows come from a query and whose count callers check
+	static final Pattern CONDITIONAL = Pattern.compile("^\\s*INSERT\\b.*\\bSELECT\\b",
+		Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+	/**
+	 * One queued write.
+	 */
+	static final class Write {
+		final String sql;
+		final Object[] params;
+		final int rank;
+		final long submitted = System.nanoTime();
+		final CompletableFuture<Integer> result = new CompletableFuture<Integer>();
+		int count;
+		SQLException error;
+
+		Write(String sql, Object[] params){
+			this.sql = sql;
+			this.params = params;
+			int rank = 0;
+			while (rank < ORDER.length && !ORDER[rank].equals(sql)){
+				++rank;
+			}
+			this.rank = rank;
+		}
+	}
+
+	private final MechanicShop _esql;
+	private final ArrayBlockingQueue<Write> _queue;
+	private final int _maxBatch;
+	private final long _maxDelayNanos;
+	private final Thread _writer;
+	private volatile boolean _stopped = false;
+	//totals for stats(), written by the writer thread only
+	private volatile long _groups = 0;
+	private volatile long _writes = 0;
+	private volatile long _failures = 0;
+	private volatile long _replays = 0;
+
+	/**
+	 * Starts the writer thread.
+	 *
+	 * @param esql the shop whose connection pool is used
+	 * @param capacity the number of writes that can wait
+	 * @param maxBatch the most writes committed together
+	 * @param maxDelayMs how long the first write of a group waits for more
+	 */
+	public GroupCommitWriter(MechanicShop esql, int capacity, int maxBatch, long maxDelayMs){
+		this._esql = esql;
+		this._queue = new ArrayBlockingQueue<Write>(Math.max(1, capacity));
+		this._maxBatch = Math.max(1, maxBatch);
+		this._maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxDelayMs));
+		this._writer = new Thread(this::run, "group-commit");
+		this._writer.setDaemon(true);
+		this._writer.start();
+	}
+
+	/**
+	 * Queues a write, waiting while the queue is full.
+	 *
+	 * @param sql an INSERT, UPDATE or DELETE with ? placeholders
+	 * @param params the values bound to the placeholders, in order
+	 * @return the update count once committed, or the SQLException of this write;
+	 * Statement.SUCCESS_NO_INFO when the batch did not report it
+	 */
+	public CompletableFuture<Integer> submit(String sql, Object... params){
+		Write w = new Write(sql, params);
+		if (this._stopped){
+			w.result.completeExceptionally(new IllegalStateException("the writer is stopped"));
+			return w.result;
+		}
+		try{
+			this._queue.put(w);
+		}catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			w.result.completeExceptionally(e);
+			return w.result;
+		}
+		// close() may have drained the queue between the check and the put; whoever
+		// takes the write out of the queue completes it, so it is failed exactly once
+		if (this._stopped && this._queue.remove(w)){
+			w.result.completeExceptionally(new IllegalStateException("the writer is stopped"));
+		}
+		return w.result;
+	}
+
+	/**
+	 * Commits what is queued and stops the writer thread.
+	 */
+	public void close(){
+		this._stopped = true;
+		try{
+			this._writer.join();
+		}catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+		// queued between the last poll and the stop flag
+		for (Write w; (w = this._queue.poll()) != null; ){
+			w.result.completeExceptionally(new IllegalStateException("the writer is stopped"));
+		}
+	}
+
+	private void run(){
+		List<Write> group = new ArrayList<Write>(this._maxBatch);
+		while (true){
+			Write first;
+			try{
+				first = this._queue.poll(100, TimeUnit.MILLISECONDS);
+			}catch (InterruptedException e){
+				first = null;
+			}
+			if (first == null){
+				if (this._stopped) break;
+				continue;
+			}
+			group.add(first);
+			long deadline = first.submitted + this._maxDelayNanos;
+			try{
+				while (group.size() < this._maxBatch){
+					long wait = deadline - System.nanoTime();
+					Write next = wait > 0 ? this._queue.poll(wait, TimeUnit.NANOSECONDS) : this._queue.poll();
+					if (next == null) break;
+					group.add(next);
+				}
+			}catch (InterruptedException e){
+				// commits what was collected
+			}
+			commit(group);
+			group.clear();
+		}
+	}
+
+	/**
+	 * Writes and commits one group and completes its futures.
+	 */
+	private void commit(List<Write> group){
+		group.sort((a, b) -> Integer.compare(a.rank, b.rank));
+		long start = System.nanoTime();
+		SQLException failure = null;
+		try{
+			PooledConnection pc = this._esql.borrow();
+			try{
+				Connection c = pc.connection();
+				c.setAutoCommit(false);
+				try{
+					batch(pc, group);
+				}catch (SQLException e){
+					c.rollback();
+					++this._replays;
+					oneByOne(c, pc, group);
+				}
+				c.commit();
+			}catch (SQLException e){
+				failure = e;
+				try{
+					pc.connection().rollback();
+				}catch (SQLException ignored){
+					// the connection is broken; returning it discards it
+				}
+			}finally{
+				pc.close();
+			}
+		}catch (SQLException e){
+			failure = e;
+		}
+		long nanos = System.nanoTime() - start;
+		// the statements of the group as parameters, so a slow group shows what it wrote
+		this._esql.recordStatement("group commit", statements(group), nanos, group.size(), failure != null);
+		++this._groups;
+		this._writes += group.size();
+		for (int i = 0; i < group.size(); ++i){
+			Write w = group.get(i);
+			if (i == 0 || !w.sql.equals(group.get(i - 1).sql)){
+				this._esql.getReportCache().invalidateFor(w.sql);
+			}
+			SQLException error = failure != null ? failure : w.error;
+			if (error != null){
+				++this._failures;
+				w.result.completeExceptionally(error);
+			}else{
+				w.result.complete(w.count);
+			}
+		}
+	}
+
+	/**
+	 * @return the distinct statements of a sorted group, in order
+	 */
+	private static Object[] statements(List<Write> group){
+		List<Object> sqls = new ArrayList<Object>();
+		for (int i = 0; i < group.size(); ++i){
+			if (i == 0 || !group.get(i).sql.equals(group.get(i - 1).sql)){
+				sqls.add(group.get(i).sql);
+			}
+		}
+		return sqls.toArray();
+	}
+
+	/**
+	 * Sends the writes of each statement as one batch, except conditional
+	 * inserts, which are sent one at a time for their exact counts.
+	 */
+	private static void batch(PooledConnection pc, List<Write> group) throws SQLException {
+		int i = 0;
+		while (i < group.size()){
+			String sql = group.get(i).sql;
+			int first = i;
+			if (CONDITIONAL.matcher(sql).find()){
+				// a batch may answer SUCCESS_NO_INFO, which cannot tell 0 rows from 1
+				for (; i < group.size() && group.get(i).sql.equals(sql); ++i){
+					Write w = group.get(i);
+					w.count = MechanicShop.prepare(pc, sql, w.params).executeUpdate();
+				}
+				continue;
+			}
+			PreparedStatement stmt = null;
+			while (i < group.size() && group.get(i).sql.equals(sql)){
+				stmt = MechanicShop.prepare(pc, sql, group.get(i).params);
+				stmt.addBatch();
+				++i;
+			}
+			int[] counts;
+			try{
+				counts = stmt.executeBatch();
+			}finally{
+				// the statement stays in the cache; a failed batch must not be sent again
+				stmt.clearBatch();
+			}
+			for (int k = 0; k < counts.length; ++k){
+				// SUCCESS_NO_INFO is kept: turning it into 0 would read as no row written
+				group.get(first + k).count = counts[k];
+			}
+		}
+	}
+
+	/**
+	 * Runs the writes one at a time in the same transaction, each behind a
+	 * savepoint, and keeps the error of each write that fails.
+	 */
+	private static void oneByOne(Connection c, PooledConnection pc, List<Write> group) throws SQLException {
+		for (Write w : group){
+			Savepoint sp = c.setSavepoint();
+			try{
+				w.count = MechanicShop.prepare(pc, w.sql, w.params).executeUpdate();
+				c.releaseSavepoint(sp);
+			}catch (SQLException e){
+				c.rollback(sp);
+				w.error = e;
+			}
+		}
+	}
+
+	/**
+	 * @return the groups committed, the writes in them and the writes that failed
+	 */
+	public String stats(){
+		long groups = this._groups;
+		long writes = this._writes;
+		return String.format("groups=%d writes=%d avgGroup=%.1f failed=%d replayedGroups=%d queued=%d",
+			groups, writes, groups == 0 ? 0.0 : (double) writes / groups, this._failures, this._replays, this._queue.size());
+	}
+}//end GroupCommitWriter
@@ -0,0 +1,167 @@
+/*
+ * Primary key allocator
+ * =====================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class hands out primary keys for one table of the shop schema.  Keys
+ * come from a database sequence that is advanced BLOCK_SIZE values at a time,
+ * so every process owns a private block of keys and two terminals never
+ * receive the same one.  Keys inside a block are handed out from an in-memory
+ * counter; the database is only contacted once per block.
+ *
+ */
+
+public class IdAllocator{
+	//number of keys reserved with a single nextval call
+	public static final int BLOCK_SIZE = 50;
+
+	private final MechanicShop _esql;
+	private final String _table;
+	private final String _column;
+	private final String _sequence;
+
+	//block currently being handed out, replaced when it runs dry
+	private volatile Block _block = new Block(0, 0);
+	private boolean _sequenceChecked = false;
+
+	/**
+	 * A range of keys [next, end) reserved from the sequence.
+	 */
+	private static final class Block {
+		final AtomicLong next;
+		final long end;
+
+		Block(long start, long end){
+			this.next = new AtomicLong(start);
+			this.end = end;
+		}
+	}
+
+	/**
+	 * @param esql the shop used to reach the database
+	 * @param table the table whose key is generated
+	 * @param column the integer key column of that table
+	 */
+	public IdAllocator(MechanicShop esql, String table, String column){
+		this._esql = esql;
+		this._table = table;
+		this._column = column;
+		this._sequence = (table + "_" + column + "_seq").toLowerCase();
+	}
+
+	/**
+	 * @return the name of the backing sequence
+	 */
+	public String getSequence(){
+		return this._sequence;
+	}
+
+	/**
+	 * Returns the next unused key.  The common case is a single atomic
+	 * increment; a new block is reserved only when the current one is used up.
+	 *
+	 * @return a key that no other caller or process will receive
+	 * @throws java.sql.SQLException when a new block could not be reserved
+	 */
+	public int nextId() throws SQLException {
+		while (true){
+			Block b = this._block;
+			long id = b.next.getAndIncrement();
+			if (id < b.end){
+				return (int) id;
+			}
+			refill(b);
+		}
+	}
+
+	/**
+	 * Reserves a new block unless another thread already replaced the one
+	 * the caller found empty.
+	 */
+	private synchronized void refill(Block exhausted) throws SQLException {
+		if (this._block != exhausted){
+			return;
+		}
+		ensureSequence();
+		long start = this._esql.getNextSeqVal(this._sequence);
+		this._block = new Block(start, start + BLOCK_SIZE);
+	}
+
+	/**
+	 * Creates the backing sequence the first time it is needed and positions
+	 * it after the largest key already stored in the table.
+	 */
+	private void ensureSequence() throws SQLException {
+		if (this._sequenceChecked){
+			return;
+		}
+		int found = this._esql.executeQuery(
+			"SELECT 1 FROM pg_class WHERE relkind = 'S' AND relname = ?", this._sequence);
+		if (found == 0){
+			locked(true);
+		}
+		this._sequenceChecked = true;
+	}
+
+	/**
+	 * Moves the sequence past the largest key in the table and drops the
+	 * block held by this process.  Used after rows were written without going
+	 * through the allocator, e.g. by a bulk load.
+	 *
+	 * @throws java.sql.SQLException when the sequence could not be updated
+	 */
+	public synchronized void resync() throws SQLException {
+		ensureSequence();
+		locked(false);
+	}
+
+	/**
+	 * Creates (when create is set) and positions the sequence in one
+	 * transaction that holds an advisory lock on its name, so two processes
+	 * starting at once do not both create and position it.
+	 */
+	private void locked(boolean create) throws SQLException {
+		PooledConnection pc = this._esql.borrow();
+		try{
+			pc.connection().setAutoCommit(false);
+			MechanicShop.prepare(pc, "SELECT pg_advisory_xact_lock(hashtext(?))", this._sequence).executeQuery().close();
+			if (create){
+				MechanicShop.prepare(pc, String.format(
+					"CREATE SEQUENCE IF NOT EXISTS %s INCREMENT BY %d MINVALUE 0 START WITH 0",
+					this._sequence, BLOCK_SIZE)).executeUpdate();
+			}
+			positionSequence(pc);
+			pc.connection().commit();
+		}finally{
+			// returning the connection rolls back what was not committed
+			pc.close();
+		}
+		this._block = new Block(0, 0);
+	}
+
+	/**
+	 * Moves the sequence forward to the key after the largest one in the
+	 * table, and never back: another process may hold a block above that
+	 * key, and moving the sequence back would hand out its keys again.
+	 * When the sequence is already past the key it is left alone, so a
+	 * nextval running meanwhile cannot be undone.
+	 */
+	private void positionSequence(PooledConnection pc) throws SQLException {
+		MechanicShop.prepare(pc, String.format(
+			"SELECT setval('%1$s', T.m + 1, false) FROM (SELECT COALESCE(MAX(%2$s), -1) AS m FROM %3$s) T, %1$s S"
+			+ " WHERE T.m + 1 > CASE WHEN S.is_called THEN S.last_value + %4$d ELSE S.last_value END",
+			this._sequence, this._column, this._table, BLOCK_SIZE)).executeQuery().close();
+	}
+}//end IdAllocator
@@ -0,0 +1,171 @@
+/*
+ * Keyset pagination of reports
+ * ============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.SQLException;
+
+/**
+ * This class pages through a long report in the order of a unique integer
+ * key, Closed_Request.wid or Service_Request.rid.  A page is the next (or
+ * previous) page size rows after (or before) the key the current page ends
+ * (or starts) with, which the database reads from a partial index in key
+ * order, so page 1000 costs the same as page 1; OFFSET would read and throw
+ * away all the rows before it.  The pages come from a ShopBackend, so the
+ * in-memory backend is paged the same way.  Rows added while paging show up in key order and no row is
+ * shown twice.
+ *
+ */
+
+public class KeysetPager{
+	/**
+	 * A report that can be paged: its key is the first column, and both
+	 * statements take the key to seek from and the page size.
+	 */
+	static final class Report {
+		final String forward;
+		final String backward;
+
+		Report(String forward, String backward){
+			this.forward = forward;
+			this.backward = backward;
+		}
+	}
+
+	//report 6 ordered by Closed_Request.wid
+	static final Report BILL_LESS_THAN_100 = new Report(
+		"SELECT A.wid, C.fname, C.lname, A.bill, A.comment, S.date FROM Closed_Request A"
+		+ " JOIN Service_Request S ON S.rid = A.rid JOIN Customer C ON C.id = S.customer_id"
+		+ " WHERE A.bill < 100 AND A.wid > ? ORDER BY A.wid LIMIT ?",
+		"SELECT * FROM (SELECT A.wid, C.fname, C.lname, A.bill, A.comment, S.date FROM Closed_Request A"
+		+ " JOIN Service_Request S ON S.rid = A.rid JOIN Customer C ON C.id = S.customer_id"
+		+ " WHERE A.bill < 100 AND A.wid < ? ORDER BY A.wid DESC LIMIT ?) P ORDER BY wid");
+
+	//report 8 ordered by Service_Request.rid
+	static final Report CARS_BEFORE_1995 = new Report(
+		"SELECT S.rid, X.make, X.model, X.year, S.odometer FROM Service_Request S JOIN Car X ON X.vin = S.car_vin"
+		+ " WHERE S.odometer < 50000 AND X.year < 1995 AND S.rid > ? ORDER BY S.rid LIMIT ?",
+		"SELECT * FROM (SELECT S.rid, X.make, X.model, X.year, S.odometer FROM Service_Request S JOIN Car X ON X.vin = S.car_vin"
+		+ " WHERE S.odometer < 50000 AND X.year < 1995 AND S.rid < ? ORDER BY S.rid DESC LIMIT ?) P ORDER BY rid");
+
+	private final ShopBackend _backend;
+	private final Report _report;
+	private int _pageSize;
+	private QueryResult _page = null;
+	private int _number = 0;
+
+	/**
+	 * @param backend the shop data to read
+	 * @param report the report to page through
+	 * @param pageSize the rows per page
+	 */
+	public KeysetPager(ShopBackend backend, Report report, int pageSize){
+		this._backend = backend;
+		this._report = report;
+		setPageSize(pageSize);
+	}
+
+	/**
+	 * Takes effect with the next page that is read.
+	 */
+	public void setPageSize(int pageSize){
+		if (pageSize <= 0){
+			throw new IllegalArgumentException("Page size must be a positive number.");
+		}
+		this._pageSize = pageSize;
+	}
+
+	public int getPageSize(){
+		return this._pageSize;
+	}
+
+	/**
+	 * @return the number of the current page, 0 before the first one was read;
+	 * after a page size change it is only exact again once paging back
+	 * reaches the first row
+	 */
+	public int getPageNumber(){
+		return this._number;
+	}
+
+	/**
+	 * @return the rows of the current page, null before the first one was read
+	 */
+	public QueryResult getPage(){
+		return this._page;
+	}
+
+	/**
+	 * Moves to the page after the current one, or to the first page.
+	 *
+	 * @return false when there are no more rows; the current page stays
+	 * @throws java.sql.SQLException when the page could not be read
+	 */
+	public boolean next() throws SQLException {
+		int after = this._page == null || this._page.isEmpty() ? Integer.MIN_VALUE : lastKey();
+		return move(this._backend.page(this._report, after, true, this._pageSize), 1);
+	}
+
+	/**
+	 * Moves to the page before the current one.
+	 *
+	 * @return false when no row comes before the current page; the current
+	 * page stays
+	 * @throws java.sql.SQLException when the page could not be read
+	 */
+	public boolean previous() throws SQLException {
+		if (this._page == null || this._page.isEmpty()){
+			return false;
+		}
+		// the rows decide, not the page counter, which a page size change leaves behind
+		QueryResult page = this._backend.page(this._report, firstKey(), false, this._pageSize);
+		if (page.isEmpty()){
+			this._number = 1;
+			return false;
+		}
+		this._page = page;
+		// a short page backwards is the first one
+		this._number = page.getRowCount() < this._pageSize ? 1 : Math.max(1, this._number - 1);
+		return true;
+	}
+
+	/**
+	 * Reads the current page again from its first key, e.g. after the page
+	 * size changed.
+	 *
+	 * @throws java.sql.SQLException when the page could not be read
+	 */
+	public void reload() throws SQLException {
+		if (this._page == null || this._page.isEmpty()){
+			next();
+			return;
+		}
+		int from = firstKey();
+		this._page = this._backend.page(this._report, from - 1, true, this._pageSize);
+	}
+
+	private boolean move(QueryResult page, int step){
+		if (page.isEmpty() && this._page != null){
+			return false;
+		}
+		this._page = page;
+		this._number += step;
+		return !page.isEmpty();
+	}
+
+	private int firstKey(){
+		return this._page.getInt(0, 0);
+	}
+
+	private int lastKey(){
+		return this._page.getInt(this._page.getRowCount() - 1, 0);
+	}
+}//end KeysetPager
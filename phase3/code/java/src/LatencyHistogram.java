@@ -0,0 +1,102 @@
+/*
+ * Latency histogram
+ * =================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class counts durations in nanoseconds in log-linear buckets: values
+ * below 64 ns get one bucket each, larger values are split into 32 buckets
+ * per power of two, which keeps every percentile within about 3% of the true
+ * value.  Recording is a few atomic increments and never allocates, so it can
+ * be called from any thread on the hot path.
+ *
+ */
+
+public class LatencyHistogram{
+	static final int SUB_BITS = 5;
+	static final int SUB_COUNT = 1 << SUB_BITS;
+	static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+	private final AtomicLongArray _counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong _count = new AtomicLong();
+	private final AtomicLong _sum = new AtomicLong();
+	private final AtomicLong _max = new AtomicLong();
+
+	/**
+	 * @param nanos the duration to record, negative values count as 0
+	 */
+	public void record(long nanos){
+		if (nanos < 0) nanos = 0;
+		this._counts.incrementAndGet(index(nanos));
+		this._count.incrementAndGet();
+		this._sum.addAndGet(nanos);
+		long max;
+		while (nanos > (max = this._max.get()) && !this._max.compareAndSet(max, nanos)){
+			// retry until the maximum is at least nanos
+		}
+	}
+
+	static int index(long value){
+		if (value < 2 * SUB_COUNT){
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		return (shift + 1) * SUB_COUNT + (int) (value >>> shift) - SUB_COUNT;
+	}
+
+	/**
+	 * @return the largest value that falls into the bucket
+	 */
+	static long upperBound(int index){
+		if (index < 2 * SUB_COUNT){
+			return index;
+		}
+		int shift = index / SUB_COUNT - 1;
+		long sub = index % SUB_COUNT + SUB_COUNT;
+		return ((sub + 1) << shift) - 1;
+	}
+
+	public long getCount(){
+		return this._count.get();
+	}
+
+	public long getMax(){
+		return this._max.get();
+	}
+
+	public double getMean(){
+		long count = this._count.get();
+		return count == 0 ? 0.0 : (double) this._sum.get() / count;
+	}
+
+	/**
+	 * @param p the percentile as a fraction, e.g. 0.99
+	 * @return the smallest bucket bound covering that share of the values, in nanoseconds
+	 */
+	public long percentile(double p){
+		long count = this._count.get();
+		if (count == 0){
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(p * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; ++i){
+			seen += this._counts.get(i);
+			if (seen >= rank){
+				return Math.min(upperBound(i), this._max.get());
+			}
+		}
+		return this._max.get();
+	}
+}//end LatencyHistogram
@@ -0,0 +1,481 @@
+/*
+ * Parallel CSV parser
+ * ===================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * This class parses the shop data files (comma separated, no quoting, LF or
+ * CRLF line ends) in parallel.  A file is split into chunks of about
+ * chunkBytes that end at a line end; each chunk is memory mapped and parsed
+ * by a task of a fork-join pool.  Fields are byte ranges of the mapped
+ * chunk: ints and M/D/YYYY dates are parsed straight from the bytes and a
+ * String is only made when a field is asked for as one.
+ *
+ * Every chunk gets its own Sink, used by one thread.  What the sinks produce
+ * is handed to a Collector on the calling thread in file order, e.g. to a
+ * COPY stream.  Only a few chunks more than the pool has threads are parsed
+ * ahead of the collector, so memory use does not grow with the file.
+ *
+ */
+
+public class MappedCsvParser{
+	/**
+	 * Receives the rows of one chunk, on a thread of the pool.
+	 */
+	public interface Sink<T> {
+		/**
+		 * @param row the current row; it is reused for the next row
+		 */
+		void row(Row row);
+
+		/**
+		 * @return what the chunk produced, handed to the collector
+		 */
+		T finish();
+	}
+
+	/**
+	 * Receives what each chunk produced, on the calling thread in file order.
+	 */
+	public interface Collector<T> {
+		void collect(T result) throws IOException, SQLException;
+	}
+
+	/**
+	 * The fields of one line, as byte ranges of the mapped chunk.  Commas
+	 * after the last expected field belong to the last field.
+	 */
+	public static final class Row {
+		private final ByteBuffer _buf;
+		private final long _offset;
+		private final int[] _starts;
+		private final int[] _ends;
+		private int _lineStart;
+		private int _lineEnd;
+		//value parsed by the last readNumber call
+		private int _number = 0;
+
+		Row(ByteBuffer buf, long offset, int fields){
+			this._buf = buf;
+			this._offset = offset;
+			this._starts = new int[fields];
+			this._ends = new int[fields];
+		}
+
+		public int getFieldCount(){
+			return this._starts.length;
+		}
+
+		/**
+		 * @return the bytes of the line, without its line end
+		 */
+		public int length(){
+			return this._lineEnd - this._lineStart;
+		}
+
+		public int length(int field){
+			return this._ends[field] - this._starts[field];
+		}
+
+		/**
+		 * @throws java.lang.NumberFormatException when the field is not an integer
+		 */
+		public int getInt(int field){
+			int i = this._starts[field];
+			int end = this._ends[field];
+			boolean negative = i < end && this._buf.get(i) == '-';
+			if (negative) ++i;
+			if (i == end) throw notA("an integer", field);
+			long value = 0;
+			for (; i < end; ++i){
+				int digit = this._buf.get(i) - '0';
+				if (digit < 0 || digit > 9 || value > Integer.MAX_VALUE) throw notA("an integer", field);
+				value = value * 10 + digit;
+			}
+			value = negative ? -value : value;
+			if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) throw notA("an integer", field);
+			return (int) value;
+		}
+
+		/**
+		 * @return the M/D/YYYY date the field starts with, as days since 1970-01-01
+		 * @throws java.lang.IllegalArgumentException when the field is not such a date
+		 */
+		public long getEpochDay(int field){
+			int date = date(field);
+			if (date < 0) throw notA("a M/D/YYYY date", field);
+			return epochDay(date / 10000, date / 100 % 100, date % 100);
+		}
+
+		/**
+		 * @return the field decoded as UTF-8
+		 */
+		public String getString(int field){
+			byte[] bytes = new byte[length(field)];
+			this._buf.get(this._starts[field], bytes, 0, bytes.length);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * Copies the bytes of the field.
+		 *
+		 * @return the index after the copied bytes
+		 */
+		public int copyTo(int field, byte[] dst, int at){
+			int length = length(field);
+			this._buf.get(this._starts[field], dst, at, length);
+			return at + length;
+		}
+
+		/**
+		 * Writes the M/D/YYYY date the field starts with as YYYY-MM-DD.
+		 *
+		 * @return the index after the date, -1 when the field is not a date
+		 */
+		public int copyDateTo(int field, byte[] dst, int at){
+			int date = date(field);
+			if (date < 0){
+				return -1;
+			}
+			digits(date / 10000, 4, dst, at);
+			dst[at + 4] = '-';
+			digits(date / 100 % 100, 2, dst, at + 5);
+			dst[at + 7] = '-';
+			digits(date % 100, 2, dst, at + 8);
+			return at + 10;
+		}
+
+		private static void digits(int value, int width, byte[] dst, int at){
+			for (int i = width - 1; i >= 0; --i){
+				dst[at + i] = (byte) ('0' + value % 10);
+				value /= 10;
+			}
+		}
+
+		/**
+		 * Accepts M/D/YYYY with an optional time after a space.
+		 *
+		 * @return the date as YYYYMMDD, -1 when it is none
+		 */
+		private int date(int field){
+			int end = this._ends[field];
+			int i = readNumber(this._starts[field], end);
+			int month = this._number;
+			if (i < 0 || i - this._starts[field] > 2 || i == end || this._buf.get(i) != '/'){
+				return -1;
+			}
+			int start = i + 1;
+			i = readNumber(start, end);
+			int day = this._number;
+			if (i < 0 || i - start > 2 || i == end || this._buf.get(i) != '/'){
+				return -1;
+			}
+			start = i + 1;
+			i = readNumber(start, end);
+			int year = this._number;
+			if (i - start != 4 || (i < end && this._buf.get(i) != ' ')){
+				return -1;
+			}
+			if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)){
+				return -1;
+			}
+			return year * 10000 + month * 100 + day;
+		}
+
+		/**
+		 * @return the days of the month, as LocalDate counts them, without allocating
+		 */
+		private static int lengthOfMonth(int year, int month){
+			if (month == 2){
+				return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+			}
+			return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+		}
+
+		/**
+		 * Parses up to four digits starting at i into _number.
+		 *
+		 * @return the index after the last digit, -1 if there was no digit
+		 */
+		private int readNumber(int i, int end){
+			int start = i;
+			int value = 0;
+			while (i < end && i - start < 4){
+				int digit = this._buf.get(i) - '0';
+				if (digit < 0 || digit > 9) break;
+				value = value * 10 + digit;
+				++i;
+			}
+			this._number = value;
+			return i == start ? -1 : i;
+		}
+
+		private IllegalArgumentException notA(String what, int field){
+			return new NumberFormatException("not " + what + ": '" + getString(field) + "' in field " + (field + 1)
+				+ " of the line at byte " + (this._offset + this._lineStart));
+		}
+	}
+
+	/**
+	 * @return the days from 1970-01-01 to the date of the proleptic Gregorian calendar
+	 */
+	static long epochDay(int year, int month, int day){
+		long y = month <= 2 ? year - 1 : year;
+		long era = (y >= 0 ? y : y - 399) / 400;
+		long yearOfEra = y - era * 400;
+		long dayOfYear = (153L * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	/**
+	 * A sink that turns every row into an array of values: Integer for
+	 * INTEGER fields, Long days since 1970-01-01 for DATE fields and String
+	 * for any other type.
+	 *
+	 * @param types the java.sql.Types of the fields
+	 */
+	public static Sink<List<Object[]>> values(int... types){
+		return new Sink<List<Object[]>>(){
+			private final List<Object[]> _rows = new ArrayList<Object[]>();
+
+			public void row(Row row){
+				Object[] values = new Object[types.length];
+				for (int f = 0; f < types.length; ++f){
+					switch (types[f]){
+						case Types.INTEGER: values[f] = row.getInt(f); break;
+						case Types.DATE: values[f] = row.getEpochDay(f); break;
+						default: values[f] = row.getString(f);
+					}
+				}
+				this._rows.add(values);
+			}
+
+			public List<Object[]> finish(){
+				return this._rows;
+			}
+		};
+	}
+
+	/**
+	 * The result of one chunk.
+	 */
+	static final class Chunk<T> {
+		final T result;
+		final long rows;
+
+		Chunk(T result, long rows){
+			this.result = result;
+			this.rows = rows;
+		}
+	}
+
+	/**
+	 * Maps and parses one chunk.
+	 */
+	static final class ChunkTask<T> extends RecursiveTask<Chunk<T>> {
+		private static final long serialVersionUID = 1L;
+
+		private final FileChannel _channel;
+		private final long _start;
+		private final long _end;
+		private final int _fields;
+		private final Sink<T> _sink;
+
+		ChunkTask(FileChannel channel, long start, long end, int fields, Sink<T> sink){
+			this._channel = channel;
+			this._start = start;
+			this._end = end;
+			this._fields = fields;
+			this._sink = sink;
+		}
+
+		protected Chunk<T> compute(){
+			ByteBuffer buf;
+			try{
+				buf = this._channel.map(FileChannel.MapMode.READ_ONLY, this._start, this._end - this._start);
+			}catch (IOException e){
+				throw new IllegalStateException("could not map bytes " + this._start + " to " + this._end, e);
+			}
+			Row row = new Row(buf, this._start, this._fields);
+			int size = buf.limit();
+			long rows = 0;
+			int i = 0;
+			while (i < size){
+				int lineStart = i;
+				int field = 0;
+				row._starts[0] = i;
+				byte b = 0;
+				while (i < size && (b = buf.get(i)) != '\n'){
+					if (b == ',' && field + 1 < this._fields){
+						row._ends[field++] = i;
+						row._starts[field] = i + 1;
+					}
+					++i;
+				}
+				int lineEnd = i > lineStart && buf.get(i - 1) == '\r' ? i - 1 : i;
+				++i;
+				if (lineEnd == lineStart){
+					continue;
+				}
+				row._ends[field] = lineEnd;
+				row._lineStart = lineStart;
+				row._lineEnd = lineEnd;
+				if (field + 1 != this._fields){
+					throw new IllegalArgumentException("expected " + this._fields + " fields in the line at byte "
+						+ (this._start + lineStart) + ", found " + (field + 1));
+				}
+				this._sink.row(row);
+				++rows;
+			}
+			return new Chunk<T>(this._sink.finish(), rows);
+		}
+	}
+
+	private final ForkJoinPool _pool;
+	private final int _chunkBytes;
+
+	/**
+	 * Parses on the common fork-join pool, in chunks of
+	 * mechanicshop.csvChunkBytes (8 MB).
+	 */
+	public MappedCsvParser(){
+		this(ForkJoinPool.commonPool(), Integer.getInteger("mechanicshop.csvChunkBytes", 8 << 20));
+	}
+
+	/**
+	 * @param pool runs the chunk tasks
+	 * @param chunkBytes the size chunks are cut at; a chunk ends at the next line end
+	 */
+	public MappedCsvParser(ForkJoinPool pool, int chunkBytes){
+		if (chunkBytes <= 0){
+			throw new IllegalArgumentException("chunk size must be positive");
+		}
+		this._pool = pool;
+		this._chunkBytes = chunkBytes;
+	}
+
+	/**
+	 * Parses a file.  Empty lines are skipped.
+	 *
+	 * @param file the file to parse
+	 * @param fields the number of fields of every line
+	 * @param sinks makes the sink of each chunk
+	 * @param collector receives what the sinks produced, in file order
+	 * @return the number of rows parsed
+	 * @throws java.io.IOException when the file could not be read
+	 * @throws java.sql.SQLException when the collector failed
+	 * @throws java.lang.IllegalArgumentException when a line is malformed
+	 */
+	public <T> long parse(File file, int fields, Supplier<? extends Sink<T>> sinks, Collector<? super T> collector)
+		throws IOException, SQLException {
+		ArrayDeque<ForkJoinTask<Chunk<T>>> pending = new ArrayDeque<ForkJoinTask<Chunk<T>>>();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+			long[] bounds = boundaries(channel);
+			int ahead = this._pool.getParallelism() + 1;
+			long rows = 0;
+			int next = 0;
+			while (next < bounds.length - 1 || !pending.isEmpty()){
+				while (next < bounds.length - 1 && pending.size() < ahead){
+					pending.add(this._pool.submit(new ChunkTask<T>(channel, bounds[next], bounds[next + 1], fields, sinks.get())));
+					++next;
+				}
+				Chunk<T> chunk = join(pending.poll(), file);
+				rows += chunk.rows;
+				collector.collect(chunk.result);
+			}
+			return rows;
+		}finally{
+			for (ForkJoinTask<Chunk<T>> task : pending){
+				task.cancel(false);
+			}
+		}
+	}
+
+	private static <T> Chunk<T> join(ForkJoinTask<Chunk<T>> task, File file) throws IOException {
+		try{
+			return task.get();
+		}catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while parsing " + file, e);
+		}catch (ExecutionException e){
+			Throwable cause = e.getCause();
+			// the pool may throw a copy of the exception of the task that wraps the original
+			if (cause != null && cause.getCause() != null && cause.getCause().getClass() == cause.getClass()){
+				cause = cause.getCause();
+			}
+			if (cause instanceof IllegalArgumentException){
+				throw new IllegalArgumentException(file + ": " + cause.getMessage(), cause);
+			}
+			if (cause instanceof IllegalStateException && cause.getCause() instanceof IOException){
+				throw (IOException) cause.getCause();
+			}
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * @return the chunk boundaries: 0, the offset after the first line end at
+	 * or after every chunkBytes, and the file size
+	 */
+	long[] boundaries(FileChannel channel) throws IOException {
+		long size = channel.size();
+		List<Long> bounds = new ArrayList<Long>();
+		bounds.add(0L);
+		ByteBuffer probe = ByteBuffer.allocate(4096);
+		long pos = this._chunkBytes;
+		while (pos < size){
+			long lineEnd = -1;
+			while (lineEnd < 0 && pos < size){
+				probe.clear();
+				int n = channel.read(probe, pos);
+				for (int i = 0; i < n; ++i){
+					if (probe.get(i) == '\n'){
+						lineEnd = pos + i;
+						break;
+					}
+				}
+				if (lineEnd < 0) pos += Math.max(n, 0);
+				if (n <= 0) break;
+			}
+			if (lineEnd < 0 || lineEnd + 1 >= size){
+				break;
+			}
+			bounds.add(lineEnd + 1);
+			pos = lineEnd + 1 + this._chunkBytes;
+		}
+		bounds.add(size);
+		long[] result = new long[bounds.size()];
+		for (int i = 0; i < result.length; ++i){
+			result[i] = bounds.get(i);
+		}
+		return result;
+	}
+}//end MappedCsvParser
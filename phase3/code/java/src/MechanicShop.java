@@ -1,810 +1,1445 @@
-/*
- * Template JAVA User Interface
- * =============================
- *
- * Database Management Systems
- * Department of Computer Science &amp; Engineering
- * University of California - Riverside
- *
- * Target DBMS: 'Postgres'
- *
- */
-
-
-import java.sql.DriverManager;
-import java.sql.Connection;
-import java.sql.Statement;
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
-import java.sql.SQLException;
-import java.io.File;
-import java.io.FileReader;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.util.List;
-import java.util.ArrayList;
-
-import java.util.Scanner;
-/**
- * This class defines a simple embedded SQL utility class that is designed to
- * work with PostgreSQL JDBC drivers.
- *
- */
-
-public class MechanicShop{
-	//reference to physical database connection
-	private Connection _connection = null;
-	static BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
-	
-	public MechanicShop(String dbname, String dbport, String user, String passwd) throws SQLException {
-		System.out.print("Connecting to database...");
-		try{
-			// constructs the connection URL
-			String url = "jdbc:postgresql://localhost:" + dbport + "/" + dbname;
-			System.out.println ("Connection URL: " + url + "\n");
-			
-			// obtain a physical connection
-	        this._connection = DriverManager.getConnection(url, user, passwd);
-	        System.out.println("Done");
-		}catch(Exception e){
-			System.err.println("Error - Unable to Connect to Database: " + e.getMessage());
-	        System.out.println("Make sure you started postgres on this machine");
-	        System.exit(-1);
-		}
-	}
-	
-	/**
-	 * Method to execute an update SQL statement.  Update SQL instructions
-	 * includes CREATE, INSERT, UPDATE, DELETE, and DROP.
-	 * 
-	 * @param sql the input SQL string
-	 * @throws java.sql.SQLException when update failed
-	 * */
-	public void executeUpdate (String sql) throws SQLException { 
-		// creates a statement object
-		Statement stmt = this._connection.createStatement ();
-
-		// issues the update instruction
-		stmt.executeUpdate (sql);
-
-		// close the instruction
-	    stmt.close ();
-	}//end executeUpdate
-
-	/**
-	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
-	 * method issues the query to the DBMS and outputs the results to
-	 * standard out.
-	 * 
-	 * @param query the input query string
-	 * @return the number of rows returned
-	 * @throws java.sql.SQLException when failed to execute the query
-	 */
-	public int executeQueryAndPrintResult (String query) throws SQLException {
-		//creates a statement object
-		Statement stmt = this._connection.createStatement ();
-
-		//issues the query instruction
-		ResultSet rs = stmt.executeQuery (query);
-
-		/*
-		 *  obtains the metadata object for the returned result set.  The metadata
-		 *  contains row and column info.
-		 */
-		ResultSetMetaData rsmd = rs.getMetaData ();
-		int numCol = rsmd.getColumnCount ();
-		int rowCount = 0;
-		
-		//iterates through the result set and output them to standard out.
-		boolean outputHeader = true;
-		while (rs.next()){
-			if(outputHeader){
-				for(int i = 1; i <= numCol; i++){
-					System.out.print(rsmd.getColumnName(i) + "\t");
-			    }
-			    System.out.println();
-			    outputHeader = false;
-			}
-			for (int i=1; i<=numCol; ++i)
-				System.out.print (rs.getString (i) + "\t");
-			System.out.println ();
-			++rowCount;
-		}//end while
-		stmt.close ();
-		return rowCount;
-	}
-	
-	/**
-	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
-	 * method issues the query to the DBMS and returns the results as
-	 * a list of records. Each record in turn is a list of attribute values
-	 * 
-	 * @param query the input query string
-	 * @return the query result as a list of records
-	 * @throws java.sql.SQLException when failed to execute the query
-	 */
-	public List<List<String>> executeQueryAndReturnResult (String query) throws SQLException { 
-		//creates a statement object 
-		Statement stmt = this._connection.createStatement (); 
-		
-		//issues the query instruction 
-		ResultSet rs = stmt.executeQuery (query); 
-	 
-		/*
-		 * obtains the metadata object for the returned result set.  The metadata 
-		 * contains row and column info. 
-		*/ 
-		ResultSetMetaData rsmd = rs.getMetaData (); 
-		int numCol = rsmd.getColumnCount (); 
-		int rowCount = 0; 
-	 
-		//iterates through the result set and saves the data returned by the query. 
-		boolean outputHeader = false;
-		List<List<String>> result  = new ArrayList<List<String>>(); 
-		while (rs.next()){
-			List<String> record = new ArrayList<String>(); 
-			for (int i=1; i<=numCol; ++i) 
-				record.add(rs.getString (i)); 
-			result.add(record); 
-		}//end while 
-		stmt.close (); 
-		return result; 
-	}//end executeQueryAndReturnResult
-	
-	/**
-	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
-	 * method issues the query to the DBMS and returns the number of results
-	 * 
-	 * @param query the input query string
-	 * @return the number of rows returned
-	 * @throws java.sql.SQLException when failed to execute the query
-	 */
-	public int executeQuery (String query) throws SQLException {
-		//creates a statement object
-		Statement stmt = this._connection.createStatement ();
-
-		//issues the query instruction
-		ResultSet rs = stmt.executeQuery (query);
-
-		int rowCount = 0;
-
-		//iterates through the result set and count nuber of results.
-		if(rs.next()){
-			rowCount++;
-		}//end while
-		stmt.close ();
-		return rowCount;
-	}
-	
-	/**
-	 * Method to fetch the last value from sequence. This
-	 * method issues the query to the DBMS and returns the current 
-	 * value of sequence used for autogenerated keys
-	 * 
-	 * @param sequence name of the DB sequence
-	 * @return current value of a sequence
-	 * @throws java.sql.SQLException when failed to execute the query
-	 */
-	
-	public int getCurrSeqVal(String sequence) throws SQLException {
-		Statement stmt = this._connection.createStatement ();
-		
-		ResultSet rs = stmt.executeQuery (String.format("Select currval('%s')", sequence));
-		if (rs.next()) return rs.getInt(1);
-		return -1;
-	}
-
-	/**
-	 * Method to close the physical connection if it is open.
-	 */
-	public void cleanup(){
-		try{
-			if (this._connection != null){
-				this._connection.close ();
-			}//end if
-		}catch (SQLException e){
-	         // ignored.
-		}//end try
-	}//end cleanup
-
-	/**
-	 * The main execution method
-	 * 
-	 * @param args the command line arguments this inclues the <mysql|pgsql> <login file>
-	 */
-	public static void main (String[] args) {
-		if (args.length != 3) {
-			System.err.println (
-				"Usage: " + "java [-classpath <classpath>] " + MechanicShop.class.getName () +
-		            " <dbname> <port> <user>");
-			return;
-		}//end if
-		
-		MechanicShop esql = null;
-		
-		try{
-			System.out.println("(1)");
-			
-			try {
-				Class.forName("org.postgresql.Driver");
-			}catch(Exception e){
-
-				System.out.println("Where is your PostgreSQL JDBC Driver? " + "Include in your library path!");
-				e.printStackTrace();
-				return;
-			}
-			
-			System.out.println("(2)");
-			String dbname = args[0];
-			String dbport = args[1];
-			String user = args[2];
-			
-			esql = new MechanicShop (dbname, dbport, user, "");
-			
-			boolean keepon = true;
-			while(keepon){
-				System.out.println("MAIN MENU");
-				System.out.println("---------");
-				System.out.println("1. AddCustomer");
-				System.out.println("2. AddMechanic");
-				System.out.println("3. AddCar");
-				System.out.println("4. InsertServiceRequest");
-				System.out.println("5. CloseServiceRequest");
-				System.out.println("6. ListCustomersWithBillLessThan100");
-				System.out.println("7. ListCustomersWithMoreThan20Cars");
-				System.out.println("8. ListCarsBefore1995With50000Milles");
-				System.out.println("9. ListKCarsWithTheMostServices");
-				System.out.println("10. ListCustomersInDescendingOrderOfTheirTotalBill");
-				System.out.println("11. < EXIT");
-				
-				/*
-				 * FOLLOW THE SPECIFICATION IN THE PROJECT DESCRIPTION
-				 */
-				switch (readChoice()){
-					case 1: AddCustomer(esql); break;
-					case 2: AddMechanic(esql); break;
-					case 3: AddCar(esql); break;
-					case 4: InsertServiceRequest(esql); break;
-					case 5: CloseServiceRequest(esql); break;
-					case 6: ListCustomersWithBillLessThan100(esql); break;
-					case 7: ListCustomersWithMoreThan20Cars(esql); break;
-					case 8: ListCarsBefore1995With50000Milles(esql); break;
-					case 9: ListKCarsWithTheMostServices(esql); break;
-					case 10: ListCustomersInDescendingOrderOfTheirTotalBill(esql); break;
-					case 11: keepon = false; break;
-				}
-			}
-		}catch(Exception e){
-			System.err.println (e.getMessage ());
-		}finally{
-			try{
-				if(esql != null) {
-					System.out.print("Disconnecting from database...");
-					esql.cleanup ();
-					System.out.println("Done\n\nBye !");
-				}//end if				
-			}catch(Exception e){
-				// ignored.
-			}
-		}
-	}
-
-	public static int readChoice() {
-		int input;
-		// returns only if a correct value is given.
-		do {
-			System.out.print("Please make your choice: ");
-			try { // read the integer, parse it and break.
-				input = Integer.parseInt(in.readLine());
-				break;
-			}catch (Exception e) {
-				System.out.println("Your input is invalid!");
-				continue;
-			}//end try
-		}while (true);
-		return input;
-
-
-	}//end readChoice
-	
-	public static void AddCustomer(MechanicShop esql){//1  Ted
-		try {
-			String qs;
-			List<List<String>> x;
-			int c_id;
-			String tfN;
-			String tlN;
-			String tpN;
-			String ta;
-		
-			qs = String.format("SELECT C.id FROM Customer C");
-			x = esql.executeQueryAndReturnResult(qs);
-			c_id = x.size() + 1;
-	
-					Scanner fnO = new Scanner(System.in);
-					System.out.println("Enter customer's first name: ");
-					tfN = fnO.nextLine();
-					if (tfN.length() > 32) {
-						throw new Exception("First name cannot exceed 32 characters.");
-					}
-					else if (tfN.length() <= 0) {
-						throw new Exception("First name cannot be null.");
-					}
-		
-					Scanner lnO = new Scanner(System.in);
-					System.out.println("Enter customer's last name: ");
-					tlN = lnO.nextLine();
-					if (tlN.length() > 32) {
-						throw new Exception("Last name cannot exceed 32 characters.");
-					}
-					else if (tlN.length() <= 0) {
-						throw new Exception("Last name cannot be null.");
-					}
-				
-			
-					Scanner pnO = new Scanner(System.in);
-					System.out.println("Enter customer's phone number: ");
-					tpN = pnO.nextLine();
-					if (tpN.length() > 10) {
-						throw new Exception("Phone number cannot exceed 10 characters.");
-					}
-					else if (tpN.length() <= 0) {
-						throw new Exception("Phone number cannot be null.");
-					}
-	
-
-			Scanner aO = new Scanner(System.in);
-			System.out.println("Enter customer's address: ");
-			ta = aO.nextLine();
-
-			String sq;
-			sq = String.format("INSERT INTO Customer(id, fname, lname, phone, address) VALUES(%d, '%s', '%s', '%s', '%s')", c_id, tfN, tlN, tpN, ta);
-			esql.executeUpdate(sq);
-		}
-		catch(Exception exc) {
-			System.err.println(exc.getMessage());
-		}
-
-	}
-	
-	public static void AddMechanic(MechanicShop esql){//2 Lindsey
-			String mechFirstName;
-			String mechLastName;
-			int mechID = 0;
-			int mechExp; 
-
-			// Reading in input using Scanner
-			Scanner scnr = new Scanner(System.in);
-
-			while(true){
-				try{
-					System.out.print("Enter the mechanic first name: ");
-					mechFirstName = scnr.nextLine();
-					if(mechFirstName.length() > 32){
-						throw new Exception("First name cannot exceed 32 characters.");
-					}
-					else if(mechFirstName.length() <= 0){
-						throw new Exception("First name cannot be null.");
-					}
-					break;
-				}
-				catch(Exception ex){
-					System.out.println(ex.getMessage());
-					System.out.println("Please try again.");
-				}
-			}
-
-			while(true){
-				try{
-					System.out.print("Enter the mechanic last name: ");
-					mechLastName = scnr.nextLine();
-					if(mechLastName.length() > 32){
-						throw new Exception("Last name cannot exceed 32 characters.");
-					}
-					else if(mechLastName.length() <= 0){
-						throw new Exception("Last name cannot be null.");
-					}
-					break;
-				}
-				catch(Exception ex){
-					System.out.println(ex.getMessage());
-					System.out.println("Please try again.");
-				}
-
-			}
-
-			try{
-				String qs;
-				List<List<String>> x;
-
-				qs = String.format("SELECT M.id FROM Mechanic M");
-				x = esql.executeQueryAndReturnResult(qs);
-				mechID = x.size() + 1;
-			}
-			catch(Exception e){
-				System.err.println (e.getMessage());
-			}
-
-			while(true){
-				try{
-					System.out.print("Enter the mechanic's years of experience: ");
-					mechExp = scnr.nextInt(); 
-					if(mechExp < 0){
-						throw new Exception("Years of experience cannot be a negative number.");
-					}
-					break;
-				}
-				catch(Exception ex){
-					System.out.println(ex.getMessage());
-					System.out.println("Please try again.");
-				}
-			}
-			// Putting values into database: 
-			try{
-				System.out.println("\nAdding new mechanic to database:");
-				esql.executeUpdate("INSERT INTO MECHANIC (id, fname, lname, experience) VALUES (" 
-				+ mechID + ", '" + mechFirstName + "', '" + mechLastName + "', " + mechExp + ");"  );
-				// This will output the newly entered data:
-				String test = "SELECT * FROM MECHANIC WHERE id = '" + mechID + "';" ;
-				esql.executeQueryAndPrintResult(test);
-				System.out.println("Done adding mechanic. Returning to MAIN MENU...\n");
-				
-			}
-			catch (Exception e){
-				System.err.println (e.getMessage());
-			}
-
-	}
-	
-	public static void AddCar(MechanicShop esql){//3 Lindsey
-		String carVin;
-		String carMake;
-		String carModel;
-		int carYear; 
-		
-		// Reading in input using Scanner
-		Scanner scnr = new Scanner(System.in);
-
-		while(true){
-			try{
-				System.out.print("Enter the car vin: ");
-				carVin = scnr.next();
-				if(carVin.length() == 0 || carVin.length() > 16){
-					throw new Exception("Invalid VIN, can't be null and must be less than 16 characters.");
-				}
-				
-				System.out.print("Enter the car make: ");
-				carMake = scnr.next();
-				if(carMake.length() == 0 || carMake.length() > 32){
-					throw new Exception("Invalid input. Cannot exceed 32 characters!");
-				}
-				
-				System.out.print("Enter the car model: ");
-				carModel = scnr.next();
-				if(carModel.length() == 0 || carModel.length() > 32){
-					throw new Exception("Invalid input. Cannot exceed 32 characters!");
-				}
-				
-				System.out.print("Enter the car year: ");
-				carYear = scnr.nextInt();
-				if(carYear < 1900 || carYear > 2020){
-					throw new Exception("Invalid input. Must be a valid year.");
-				}
-				
-				// input values into db
-				System.out.println("\nAdding new car to database:");
-				esql.executeUpdate("INSERT INTO CAR (vin, make, model, year) VALUES ('" 
-				+ carVin + "', '" + carMake + "', '" + carModel + "', " + carYear + ");"  );
-
-				//show that values are in db
-				String test = "SELECT * FROM CAR WHERE vin = '" + carVin + "';" ;
-				esql.executeQueryAndPrintResult(test);
-				System.out.println("Done adding car. Returning to MAIN MENU...\n");
-				break;
-			}
-			catch(Exception e){
-				System.out.println(e.getMessage());
-			}
-		}		
-	}
-	
-	public static void InsertServiceRequest(MechanicShop esql){//4 Lindsey
-		String userInput;
-		boolean notValid = true;
-		Scanner scnr = new Scanner(System.in);
-		String sql = "";
-
-		// ask for user to input the last name, read in input
-		System.out.print("Enter in the last name: ");
-		userInput = scnr.next();
-		int test = -1;
-		boolean keepAsking = true;
-
-		// check if exists in table
-		try{
-			String check = "SELECT * FROM CUSTOMER WHERE lname= '" + userInput + "';" ;
-			test = esql.executeQuery(check);
-			//System.out.println("Test val: " + test); // for testing, comment out later
-			// if test is 1, means that record exists. 0 means doesnt exist in table
-		}
-		catch (Exception e){
-			System.err.println (e.getMessage());
-		}
-
-		if(test >= 1){ // record exists in table
-			// output all clients that match user's input
-			try{
-				String getLName = "SELECT id, fname, lname FROM CUSTOMER WHERE lname = '" + userInput + "';" ;
-				esql.executeQueryAndPrintResult(getLName);
-			}
-			catch (Exception e){
-				System.err.println (e.getMessage());
-			}
-			
-			int custID = -1;
-
-			while(notValid){
-				while(notValid){
-					System.out.print("\n Enter in the id of customer you would like to select: ");
-					custID = scnr.nextInt();
-						//check if selection exists (is valid)
-					try{
-						test = esql.executeQuery("SELECT id, fname, lname FROM CUSTOMER WHERE lname = '" + userInput + "' AND id = " + custID + ";");
-					}
-					catch (Exception e){
-						System.err.println (e.getMessage());
-					}
-					if(test == 1){// means its valid customer id
-						notValid = false;
-					}
-					else{ // means its not a valid customer id
-						System.out.println("Invalid customer id. Please try again.");
-						notValid = true;
-					}
-				}
-
-				String getCars = "SELECT ownership_id, vin, make, model, year FROM OWNS o, Customer cust, Car cc WHERE o.customer_id = cust.id AND o.car_vin = cc.vin AND cust.id = " + custID + ";" ;
-				//check if selection exists (is valid)
-				try{
-					test = esql.executeQuery(getCars);
-				}
-				catch (Exception e){
-					System.err.println (e.getMessage());
-				}
-				// if test is >= 1, means record(s) exists. 0 means doesnt exist in table
-				int ownID;
-				if(test >= 1){
-					while(true){
-						try{
-							esql.executeQueryAndPrintResult(getCars);
-						}
-						catch (Exception e){
-							System.err.println (e.getMessage());
-						}
-						System.out.print("\nEnter in the ownership id of the car you would like to add the service request to: ");
-						ownID = scnr.nextInt();
-						try{
-							test = esql.executeQuery("SELECT ownership_id, vin, make, model, year FROM OWNS o, Customer cust, Car cc WHERE o.customer_id = cust.id AND o.car_vin = cc.vin AND cust.id = " + custID + "AND ownership_id = " + ownID + ";");
-						    
-						}
-						catch (Exception e){
-							System.err.println (e.getMessage());
-						}
-						if(test == 1){//valid car selection
-							// Initiate the service request here
-							System.out.println("Initiating service request...");
-
-							try{
-							// getting rid
-								String qs1;
-								List<List<String>> x;
-								int setRid;
-								qs1 = String.format("SELECT s.rid FROM Service_request s");
-								x = esql.executeQueryAndReturnResult(qs1);
-								setRid = x.size() + 1;
-							
-							// getting VIN
-								String qs2;
-								List<List<String>> y;
-								String setVin;
-								qs2 = String.format("SELECT o.car_vin FROM Owns o WHERE o.ownership_id = '" + ownID + "';");
-								y = esql.executeQueryAndReturnResult(qs2);
-								setVin = y.toString();
-								setVin = setVin.substring(2, setVin.length()-2);
-							
-							// getting odometer
-								int odo = 0;
-								System.out.print("Enter odometer reading: ");
-								odo = scnr.nextInt();
-								if(odo <= 0){
-									throw new Exception("Odometer can't be null.");
-								}
-							// getting complaint 	
-								String comp = "";
-								System.out.print("Enter complaint: ");
-								scnr.nextLine();
-								comp = scnr.nextLine();
-								if(comp.length() >= 10000){
-									throw new Exception("Too long.");
-								}								
-							
-								try{
-									System.out.println("\nCreated Service Request:");
-									sql = "INSERT INTO SERVICE_REQUEST (rid, customer_id, car_vin, date, odometer, complain) VALUES (" + setRid + ", " 
-									+ custID + ", '" + setVin + "', " + "CURRENT_DATE," + odo + ", '" + comp + "');";
-									esql.executeUpdate(sql);
-									String t = "SELECT * FROM SERVICE_REQUEST WHERE rid = '" + setRid + "';" ;
-									esql.executeQueryAndPrintResult(t);
-									System.out.println("Done making service request.\n");
-									break;
-								}
-								catch(Exception e){
-									System.err.println (e.getMessage());
-								}
-							
-							}
-							catch(Exception e){
-								System.err.println (e.getMessage());
-							}
-						}
-						else{// invalid car selection
-							System.out.println("Invalid car selection. Try again.\n");
-						}
-					}
-
-				}
-				else{
-					System.out.println("Car doesn't exist.");
-				}
-			
-			}
-
-		}
-		else{ // record does not exist, option to add customer
-			char userChoice;
-			System.out.println("Customer does not exist in database.");
-			
-			while(keepAsking){
-				System.out.println("Would you like to add this customer to the database? \n 1. Yes \n 2. No");
-				userChoice = scnr.next().charAt(0);
-				if(userChoice == '1'){ // go to AddCustomer function
-					AddCustomer(esql);
-					break;
-				}
-				else if(userChoice == '2'){ // Exit back to Main Menu
-					System.out.println("Stopped initiating service request... Returning to MAIN MENU.");
-					break;
-				}
-				else{
-					System.out.println("Invalid choice. Please try again.");
-					keepAsking = true;
-				}
-			}				
-		}		
-	}
-	
-	public static void CloseServiceRequest(MechanicShop esql) throws Exception{//5 Ted
-		try {
-			int nRows;
-			int rN;
-			int mechID;
-			int billCost;
-			String comments;
-			String sq;
-
-			String qs;
-			qs = String.format("SELECT B.wid FROM Closed_Request B");
-			List<List<String>> y;
-			y = esql.executeQueryAndReturnResult(qs);
-			int crw = y.size() + 1;
-
-			Scanner tRN = new Scanner(System.in);
-			System.out.println("Enter service request number: ");
-			rN = tRN.nextInt();
-
-			Scanner tmechID = new Scanner(System.in);
-			System.out.println("Enter mechanic's ID: ");
-			mechID = tmechID.nextInt();
-
-			Scanner tcomments = new Scanner(System.in);
-			System.out.println("Enter any comments regarding the service request for repairs: ");
-			comments = tcomments.nextLine();
-
-			Scanner tbillCost = new Scanner(System.in);
-			System.out.println("Enter cost to put on the customer's bill: ");
-			billCost = tRN.nextInt();
-
-			sq = String.format("SELECT * From Mechanic M WHERE M.id = %d", mechID);
-			nRows = esql.executeQuery(sq);
-			if (nRows == 0) {
-				System.out.println("Invalid mechanic ID. Does not exist.\n");
-				return;
-			}
-
-			sq = String.format("SELECT * FROM Service_Request S WHERE S.rid = %d", rN);
-			nRows = esql.executeQuery(sq);
-			if(nRows == 0) {
-				System.out.println("Invalid service request ID. Does not exist.\n");
-				return;
-			}
-
-			sq = String.format("SELECT * FROM Service_Request S WHERE S.rid = %d AND S.date <= CURRENT_DATE", rN);
-			nRows = esql.executeQuery(sq);
-			if (nRows == 0) {
-				System.out.println("Invalid or out of date request date.\n");
-				return;
-			}
-
-			sq = String.format("INSERT INTO Closed_Request(wid, rid, date, comment, bill) VALUES(%d, %d, %d, CURRENT_DATE, '%s', %d)", crw, rN, mechID, comments, billCost);
-			esql.executeQuery(sq);
-		}
-		catch(Exception exc) {
-			System.err.println(exc.getMessage());
-		}
-	}
-	
-	public static void ListCustomersWithBillLessThan100(MechanicShop esql){//6 Ted
-		try {
-			String sq;
-			int nRows;
-			sq = "SELECT C.fname, C.lname, A.bill, A.comment, S.date FROM Customer C, Closed_Request A,  Service_Request S WHERE A.bill < 100 AND A.rid = S.rid AND S.customer_id = C.id";
-			nRows = esql.executeQueryAndPrintResult(sq);
-		}
-		catch(Exception exc) {
-			System.err.println(exc.getMessage());
-		}
-	}
-	
-	public static void ListCustomersWithMoreThan20Cars(MechanicShop esql){//7 Ted
-		try {
-			String sq;
-			int nRows;
-			sq = "SELECT A.fname, A.lname, A.numCars FROM (SELECT O.customer_id, C.fname, C.lname, COUNT(*) numCars FROM Owns O,Customer C WHERE C.id = O.customer_id GROUP BY O.customer_id, C.fname, C.lname) AS A WHERE numCars > 20";
-			nRows = esql.executeQueryAndPrintResult(sq);
-		}
-		catch(Exception exc){
-			System.err.println(exc.getMessage());
-		}
-	}
-	
-	public static void ListCarsBefore1995With50000Milles(MechanicShop esql){//8 Ted
-		try {
-			String sq;
-			int nRows;
-			sq = "SELECT X.make, X.model, X.year, S.odometer FROM Car X, Service_Request S WHERE S.car_vin = X.vin AND S.odometer < 50000 AND X.year < 1995";
-			nRows = esql.executeQueryAndPrintResult(sq);
-			
-		}
-		catch(Exception exc) {
-			System.err.println(exc.getMessage());
-		}
-	}
-	
-	public static void ListKCarsWithTheMostServices(MechanicShop esql){//9 Lindsey
-		int k;
-		Scanner scnr = new Scanner(System.in);
-
-		System.out.print("Enter K number of cars: ");
-		k = scnr.nextInt();
-
-		String sqlCmd = "SELECT cc.make, cc.model, COUNT(*) AS num_serv_requests FROM CAR cc, Service_request s WHERE cc.vin = s.car_vin GROUP BY cc.vin ORDER BY num_serv_requests desc LIMIT " + k + ";" ;
-
-		try{
-			esql.executeQueryAndPrintResult(sqlCmd);
-		}
-		catch (Exception e){
-			System.err.println (e.getMessage());
-		}
-	}
-	
-	public static void ListCustomersInDescendingOrderOfTheirTotalBill(MechanicShop esql){// 10 Lindsey
-		String sqlCmd = "SELECT cust.fname, cust.lname, SUM (bill) AS total_bill FROM CUSTOMER cust, SERVICE_REQUEST sr, CLOSED_REQUEST cr WHERE cust.id = sr.customer_id AND cr.rid = sr.rid GROUP BY cust.id ORDER BY total_bill desc;" ;
-		
-		try{
-			esql.executeQueryAndPrintResult(sqlCmd);
-		}
-		catch (Exception e){
-			System.err.println (e.getMessage());
-		}
-	}
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.DriverManager;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.io.File;
+import java.io.FileReader;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.IOException;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Date;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+
+import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
+/**
+ * This class defines a simple embedded SQL utility class that is designed to
+ * work with PostgreSQL JDBC drivers.
+ *
+ */
+
+public class MechanicShop{
+	//pool of physical database connections, each with its own statement cache
+	private ConnectionPool _pool = null;
+	//latency histograms of the menu operations and SQL statements
+	private final Metrics _metrics = new Metrics();
+	//rows of recent reports, dropped when a table they read is written
+	private final ReportCache _reportCache = new ReportCache(
+		Long.getLong("mechanicshop.reportCacheBytes", 16L << 20),
+		Long.getLong("mechanicshop.reportCacheTtlMs", 60000L));
+	//key generators for the tables whose ids are assigned by the application
+	private IdAllocator _customerIds = new IdAllocator(this, "Customer", "id");
+	private IdAllocator _mechanicIds = new IdAllocator(this, "Mechanic", "id");
+	private IdAllocator _requestIds = new IdAllocator(this, "Service_Request", "rid");
+	private IdAllocator _closedRequestIds = new IdAllocator(this, "Closed_Request", "wid");
+	//per-customer bill totals kept current by a trigger on Closed_Request
+	private BillTotals _billTotals = new BillTotals(this);
+	//service request counts per car, answering report 9 from memory
+	private TopCarTracker _topCars = new TopCarTracker(this);
+	//customers by last name, for prefix lookups without a query
+	private CustomerNameIndex _customerNames = new CustomerNameIndex(this);
+	//the menu operations without console input and output, shared with the HTTP service
+	private ShopService _service = new ShopService(this);
+	//where the menu and the HTTP service read and write the shop data
+	private ShopBackend _backend = this._service;
+	//commits the inserts of concurrent callers together; null when they run in auto-commit
+	private GroupCommitWriter _writer = null;
+	//statements slower than mechanicshop.slowQueryMs, with their plans; null when not set
+	private SlowQueryLog _slowQueries = null;
+	static BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+	//set by a menu operation that ended with an error or was refused; the menu runs on one thread
+	static boolean operationFailed = false;
+	//wall time a menu operation spent working, without the time it waited for input
+	static long workNanos = 0;
+	//when the current stretch of work started, 0 while waiting for input
+	static long workStart = 0;
+
+	//names of menu entries 1 to 10, used as metric names
+	static final String[] OPERATIONS = {
+		"AddCustomer", "AddMechanic", "AddCar", "InsertServiceRequest", "CloseServiceRequest",
+		"ListCustomersWithBillLessThan100", "ListCustomersWithMoreThan20Cars",
+		"ListCarsBefore1995With50000Milles", "ListKCarsWithTheMostServices",
+		"ListCustomersInDescendingOrderOfTheirTotalBill" };
+
+	//statements of the menu operations, shared with the batch runner
+	static final String INSERT_CUSTOMER = "INSERT INTO Customer(id, fname, lname, phone, address) VALUES(?, ?, ?, ?, ?)";
+	static final String INSERT_MECHANIC = "INSERT INTO MECHANIC (id, fname, lname, experience) VALUES (?, ?, ?, ?)";
+	static final String INSERT_CAR = "INSERT INTO CAR (vin, make, model, year) VALUES (?, ?, ?, ?)";
+	static final String INSERT_SERVICE_REQUEST = "INSERT INTO SERVICE_REQUEST (rid, customer_id, car_vin, date, odometer, complain) VALUES (?, ?, ?, CURRENT_DATE, ?, ?)";
+	//inserts nothing unless the customer owns the car, so the check costs no extra round trip
+	static final String INSERT_OWNED_SERVICE_REQUEST = "INSERT INTO SERVICE_REQUEST (rid, customer_id, car_vin, date, odometer, complain) "
+		+ "SELECT ?, O.customer_id, O.car_vin, CURRENT_DATE, ?, ? FROM Owns O WHERE O.customer_id = ? AND O.car_vin = ? LIMIT 1";
+	static final String INSERT_CLOSED_REQUEST = "INSERT INTO Closed_Request(wid, rid, mid, date, comment, bill) VALUES(?, ?, ?, CURRENT_DATE, ?, ?)";
+	static final String REPORT_BILL_LESS_THAN_100 = "SELECT C.fname, C.lname, A.bill, A.comment, S.date FROM Customer C, Closed_Request A,  Service_Request S WHERE A.bill < 100 AND A.rid = S.rid AND S.customer_id = C.id";
+	static final String REPORT_MORE_THAN_20_CARS = "SELECT A.fname, A.lname, A.numCars FROM (SELECT O.customer_id, C.fname, C.lname, COUNT(*) numCars FROM Owns O,Customer C WHERE C.id = O.customer_id GROUP BY O.customer_id, C.fname, C.lname) AS A WHERE numCars > 20";
+	static final String REPORT_CARS_BEFORE_1995 = "SELECT X.make, X.model, X.year, S.odometer FROM Car X, Service_Request S WHERE S.car_vin = X.vin AND S.odometer < 50000 AND X.year < 1995";
+	static final String REPORT_K_MOST_SERVICED = "SELECT cc.make, cc.model, COUNT(*) AS num_serv_requests FROM CAR cc, Service_request s WHERE cc.vin = s.car_vin GROUP BY cc.vin ORDER BY num_serv_requests desc LIMIT ?";
+	static final String REPORT_TOTAL_BILL = "SELECT C.fname, C.lname, T.total_bill FROM Customer_Bill_Total T, Customer C WHERE C.id = T.customer_id ORDER BY T.total_bill desc";
+	//columns and maximum number of the customers offered by InsertServiceRequest
+	static final String[] NAME_COLUMNS = { "id", "fname", "lname" };
+	static final int NAME_MATCHES = Integer.getInteger("mechanicshop.nameMatches", 100);
+	//rows per page of the reports the menu pages through
+	static final int REPORT_PAGE_SIZE = Integer.getInteger("mechanicshop.reportPageSize", 50);
+
+	//tables read by each report, used to drop its cached rows after a write
+	static final String[] REPORT_BILL_LESS_THAN_100_TABLES = { "customer", "closed_request", "service_request" };
+	static final String[] REPORT_MORE_THAN_20_CARS_TABLES = { "owns", "customer" };
+	static final String[] REPORT_CARS_BEFORE_1995_TABLES = { "car", "service_request" };
+	//closed_request is listed because its trigger writes customer_bill_total
+	static final String[] REPORT_TOTAL_BILL_TABLES = { "customer", "customer_bill_total", "closed_request" };
+
+	//report output settings: rows fetched per cursor round trip (0 buffers the
+	//whole result), maximum rows printed (0 is unlimited) and rows shown before
+	//pausing for the user (0 never pauses)
+	private int _fetchSize = Integer.getInteger("mechanicshop.fetchSize", 1000);
+	private int _maxRows = Integer.getInteger("mechanicshop.maxRows", 0);
+	private int _pageSize = Integer.getInteger("mechanicshop.pageSize", 0);
+	
+	public MechanicShop(String dbname, String dbport, String user, String passwd) throws SQLException {
+		System.out.print("Connecting to database...");
+		try{
+			// constructs the connection URL
+			String url = "jdbc:postgresql://localhost:" + dbport + "/" + dbname;
+			System.out.println ("Connection URL: " + url + "\n");
+			
+			// connection properties; prepareThreshold controls after how many
+			// executions the driver switches a statement to a named server-side plan
+			Properties props = new Properties();
+			props.setProperty("user", user);
+			props.setProperty("password", passwd);
+			props.setProperty("prepareThreshold", System.getProperty("mechanicshop.prepareThreshold", "1"));
+
+			// creates the pool and obtains a first physical connection to verify the settings
+	        this._pool = new ConnectionPool(url, props,
+	        	Integer.getInteger("mechanicshop.poolSize", 4),
+	        	Long.getLong("mechanicshop.poolBorrowTimeoutMs", 5000L),
+	        	Long.getLong("mechanicshop.poolValidateAfterMs", 30000L),
+	        	Long.getLong("mechanicshop.poolLeakThresholdMs", 60000L),
+	        	Integer.getInteger("mechanicshop.statementCacheSize", 64));
+	        this._pool.borrow().close();
+	        long slowQueryMs = Long.getLong("mechanicshop.slowQueryMs", -1L);
+	        if (slowQueryMs >= 0){
+	        	this._slowQueries = new SlowQueryLog(url, props, slowQueryMs,
+	        		new File(System.getProperty("mechanicshop.slowQueryLog", "mechanicshop-slow.log")),
+	        		Long.getLong("mechanicshop.slowQueryLogBytes", 10L << 20),
+	        		Integer.getInteger("mechanicshop.slowQueryLogFiles", 5),
+	        		Boolean.parseBoolean(System.getProperty("mechanicshop.slowQueryExplain", "true")),
+	        		Long.getLong("mechanicshop.slowQueryExplainTimeoutMs", 60000L));
+	        }
+	        System.out.println("Done");
+		}catch(Exception e){
+			System.err.println("Error - Unable to Connect to Database: " + e.getMessage());
+	        System.out.println("Make sure you started postgres on this machine");
+	        System.exit(-1);
+		}
+		// brings the schema up to date: bill totals, indexes
+		new SchemaMigrator(this).migrate();
+		this._topCars.start(Long.getLong("mechanicshop.topCarsReconcileMs", 60000L));
+		this._customerNames.load();
+		if (Boolean.getBoolean("mechanicshop.groupCommit")){
+			this._writer = new GroupCommitWriter(this,
+				Integer.getInteger("mechanicshop.groupCommitQueue", 4096),
+				Integer.getInteger("mechanicshop.groupCommitMaxBatch", 256),
+				Long.getLong("mechanicshop.groupCommitMaxDelayMs", 2L));
+		}
+	}
+	
+	/**
+	 * Creates a shop without a database, e.g. for MemoryBackend.  Only the
+	 * operations of the backend can be used; the execute methods cannot.
+	 *
+	 * @param backend answers the menu operations
+	 */
+	public MechanicShop(ShopBackend backend){
+		this._backend = backend;
+	}
+	
+	/**
+	 * Method to execute an update SQL statement.  Update SQL instructions
+	 * includes CREATE, INSERT, UPDATE, DELETE, and DROP.  The statement is
+	 * prepared once per connection and reused from the statement cache, so
+	 * values should be passed as ? placeholders rather than spliced into
+	 * the SQL text.  Cached reports that read the written table are dropped.
+	 * 
+	 * @param sql the input SQL string
+	 * @param params the values bound to the ? placeholders, in order
+	 * @return the number of rows affected
+	 * @throws java.sql.SQLException when update failed
+	 * */
+	public int executeUpdate (String sql, Object... params) throws SQLException { 
+		long start = System.nanoTime ();
+		int rowCount = 0;
+		boolean failed = true;
+		// borrows a connection from the pool
+		PooledConnection pc = this._pool.borrow ();
+		try{
+			// fetches the cached statement and binds the parameters
+			PreparedStatement stmt = prepare (pc, sql, params);
+
+			// issues the update instruction
+			rowCount = stmt.executeUpdate ();
+			failed = false;
+			this._reportCache.invalidateFor (sql);
+			return rowCount;
+		}finally{
+			// returns the connection to the pool
+			pc.close ();
+			recordStatement (sql, params, System.nanoTime () - start, rowCount, failed);
+		}
+	}//end executeUpdate
+
+	/**
+	 * Records a statement in the metrics and, when it was slow, in the slow
+	 * query log.  Code that runs statements on a borrowed connection reports
+	 * them here too.
+	 *
+	 * @param sql the statement text
+	 * @param params the values bound to its placeholders
+	 * @param nanos the time it took
+	 * @param rows the rows it returned or changed
+	 * @param failed true if it threw
+	 */
+	public void recordStatement (String sql, Object[] params, long nanos, long rows, boolean failed){
+		this._metrics.recordStatement (sql, nanos, rows, failed);
+		if (this._slowQueries != null){
+			this._slowQueries.record (sql, params, nanos, rows, failed);
+		}
+	}
+
+	/**
+	 * Borrows a connection from the pool for work that has to run several
+	 * statements on the same connection, e.g. inside one transaction.  The
+	 * handle must be closed to return the connection.
+	 *
+	 * @return a pooled connection handle
+	 * @throws java.sql.SQLException when no connection became available in time
+	 */
+	public PooledConnection borrow () throws SQLException {
+		return this._pool.borrow ();
+	}
+
+	/**
+	 * Returns the statement cached on the connection for the SQL text with
+	 * the parameters bound.  The statement must not be closed by the caller.
+	 *
+	 * @param pc a connection borrowed from the pool
+	 * @param sql the SQL string with ? placeholders
+	 * @param params the values bound to the placeholders, in order
+	 * @return the prepared statement
+	 * @throws java.sql.SQLException when the statement could not be prepared
+	 */
+	public static PreparedStatement prepare (PooledConnection pc, String sql, Object... params) throws SQLException {
+		PreparedStatement stmt = pc.statements ().prepare (sql);
+		// cached statements keep their settings, so reset what the streaming path changes
+		stmt.setFetchSize (0);
+		stmt.setMaxRows (0);
+		for (int i = 0; i < params.length; ++i){
+			if (params[i] == null)
+				stmt.setNull (i + 1, Types.NULL);
+			else
+				stmt.setObject (i + 1, params[i]);
+		}
+		return stmt;
+	}
+
+	/**
+	 * @return the operation and statement metrics of this shop
+	 */
+	public Metrics getMetrics(){
+		return this._metrics;
+	}
+
+	/**
+	 * @return the maintained per-customer bill totals
+	 */
+	public BillTotals getBillTotals(){
+		return this._billTotals;
+	}
+
+	/**
+	 * @return the in-memory ranking of the most serviced cars
+	 */
+	public TopCarTracker getTopCars(){
+		return this._topCars;
+	}
+
+	/**
+	 * @return the shop operations used by the menu and the HTTP service
+	 */
+	public ShopService getService(){
+		return this._service;
+	}
+
+	/**
+	 * @return the shop data the menu and the HTTP service use, the database
+	 * through getService() unless another backend was set
+	 */
+	public ShopBackend getBackend(){
+		return this._backend;
+	}
+
+	public void setBackend(ShopBackend backend){
+		this._backend = backend;
+	}
+
+	/**
+	 * @return the group commit writer of the inserts, null when
+	 * mechanicshop.groupCommit is not set and inserts run in auto-commit
+	 */
+	public GroupCommitWriter getWriter(){
+		return this._writer;
+	}
+
+	/**
+	 * @return the slow query log, or null when mechanicshop.slowQueryMs is not set
+	 */
+	public SlowQueryLog getSlowQueries(){
+		return this._slowQueries;
+	}
+
+	/**
+	 * @return the index of customers by last name
+	 */
+	public CustomerNameIndex getCustomerNames(){
+		return this._customerNames;
+	}
+
+	/**
+	 * @return the cache of report results
+	 */
+	public ReportCache getReportCache(){
+		return this._reportCache;
+	}
+
+	/**
+	 * @return the connection pool used by this shop
+	 */
+	public ConnectionPool getPool(){
+		return this._pool;
+	}
+
+	/**
+	 * Sets how report output is fetched and paged.
+	 *
+	 * @param fetchSize rows fetched per round trip through a server-side cursor, 0 to buffer the whole result
+	 * @param maxRows maximum number of rows printed, 0 for no limit
+	 * @param pageSize rows printed before pausing for the user, 0 to never pause
+	 */
+	public void setOutputOptions (int fetchSize, int maxRows, int pageSize){
+		this._fetchSize = fetchSize;
+		this._maxRows = maxRows;
+		this._pageSize = pageSize;
+	}
+
+	/**
+	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
+	 * method issues the query to the DBMS and outputs the results to
+	 * standard out.  Rows are streamed: inside a transaction the driver reads
+	 * them through a server-side cursor fetchSize rows at a time, so client
+	 * memory stays constant no matter how large the result is.
+	 * 
+	 * @param query the input query string
+	 * @param params the values bound to the ? placeholders, in order
+	 * @return the number of rows returned
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int executeQueryAndPrintResult (String query, Object... params) throws SQLException {
+		return executeQueryAndPrintResult (null, query, params);
+	}
+
+	/**
+	 * Prints a report like executeQueryAndPrintResult, serving it from the
+	 * report cache when the same query with the same parameters was printed
+	 * before and none of the tables it reads was written since.
+	 *
+	 * @param tables the tables the query reads
+	 * @param query the input query string
+	 * @param params the values bound to the ? placeholders, in order
+	 * @return the number of rows returned
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int executeReport (String[] tables, String query, Object... params) throws SQLException {
+		String key = ReportCache.key (query, params);
+		ReportCache.Entry cached = this._reportCache.get (key);
+		if (cached != null){
+			return printRows (cached.columns (), cached.rows ());
+		}
+		ReportCache.Entry capture = this._reportCache.begin (key, tables);
+		int rowCount = executeQueryAndPrintResult (capture, query, params);
+		this._reportCache.put (capture);
+		return rowCount;
+	}
+
+	/**
+	 * Prints a report like executeReport, on a connection the caller already
+	 * holds, e.g. the one of a batch, so no second connection is borrowed.
+	 * The connection's transaction is committed when the rows are streamed.
+	 *
+	 * @param pc a connection borrowed from the pool
+	 * @param tables the tables the query reads
+	 * @param query the input query string
+	 * @param params the values bound to the ? placeholders, in order
+	 * @return the number of rows returned
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int executeReport (PooledConnection pc, String[] tables, String query, Object... params) throws SQLException {
+		String key = ReportCache.key (query, params);
+		ReportCache.Entry cached = this._reportCache.get (key);
+		if (cached != null){
+			return printRows (cached.columns (), cached.rows ());
+		}
+		ReportCache.Entry capture = this._reportCache.begin (key, tables);
+		int rowCount = executeQueryAndPrintResult (pc, capture, query, params);
+		this._reportCache.put (capture);
+		return rowCount;
+	}
+
+	/**
+	 * Reads a report like executeQueryAndReturnResult, serving it from the
+	 * report cache while none of the tables it reads was written.
+	 *
+	 * @param tables the tables the query reads
+	 * @param query the input query string
+	 * @param params the values bound to the ? placeholders, in order
+	 * @return the rows of the report
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public QueryResult executeCachedQuery (String[] tables, String query, Object... params) throws SQLException {
+		String key = ReportCache.resultKey (query, params);
+		ReportCache.Entry cached = this._reportCache.get (key);
+		if (cached != null){
+			return cached.result ();
+		}
+		ReportCache.Entry capture = this._reportCache.begin (key, tables);
+		QueryResult result = executeQueryAndReturnResult (query, params);
+		this._reportCache.put (capture, result);
+		return result;
+	}
+
+	private int executeQueryAndPrintResult (ReportCache.Entry capture, String query, Object... params) throws SQLException {
+		PooledConnection pc = this._pool.borrow ();
+		try{
+			return executeQueryAndPrintResult (pc, capture, query, params);
+		}finally{
+			// returning the connection restores auto-commit
+			pc.close ();
+		}
+	}
+
+	private int executeQueryAndPrintResult (PooledConnection pc, ReportCache.Entry capture, String query, Object... params)
+		throws SQLException {
+		long start = System.nanoTime ();
+		int rowCount = 0;
+		boolean failed = true;
+		try{
+			// the driver only uses a cursor when auto-commit is off
+			boolean streaming = this._fetchSize > 0;
+			if (streaming){
+				pc.connection ().setAutoCommit (false);
+			}
+			PreparedStatement stmt = prepare (pc, query, params);
+			stmt.setFetchSize (this._fetchSize);
+			stmt.setMaxRows (this._maxRows);
+			rowCount = printResult (stmt.executeQuery (), capture);
+			if (streaming){
+				pc.connection ().commit ();
+			}
+			failed = false;
+			return rowCount;
+		}finally{
+			recordStatement (query, params, System.nanoTime () - start, rowCount, failed);
+		}
+	}
+
+	/**
+	 * Outputs the rows of the result set to standard out through one buffered
+	 * writer and closes the result set.  Stops early when the user quits at a
+	 * page break.  When capture is given the rows are also collected into it;
+	 * a listing that was cut short is marked abandoned so it is not cached.
+	 */
+	private int printResult (ResultSet rs, ReportCache.Entry capture) throws SQLException {
+		PrintWriter out = new PrintWriter (new BufferedWriter (new OutputStreamWriter (System.out), 1 << 16));
+
+		/*
+		 *  obtains the metadata object for the returned result set.  The metadata
+		 *  contains row and column info.
+		 */
+		ResultSetMetaData rsmd = rs.getMetaData ();
+		int numCol = rsmd.getColumnCount ();
+		int rowCount = 0;
+		if (capture != null){
+			capture.columns = new String[numCol];
+			for (int i = 1; i <= numCol; i++){
+				capture.columns[i - 1] = rsmd.getColumnName (i);
+			}
+		}
+		
+		//iterates through the result set and output them to standard out.
+		boolean outputHeader = true;
+		while (rs.next()){
+			if(outputHeader){
+				for(int i = 1; i <= numCol; i++){
+					out.print (rsmd.getColumnName(i));
+					out.print ('\t');
+			    }
+			    out.println ();
+			    outputHeader = false;
+			}
+			String[] row = capture == null ? null : new String[numCol];
+			for (int i=1; i<=numCol; ++i){
+				String value = rs.getString (i);
+				out.print (value);
+				out.print ('\t');
+				if (row != null) row[i - 1] = value;
+			}
+			out.println ();
+			if (row != null) this._reportCache.add (capture, row);
+			++rowCount;
+			if (this._pageSize > 0 && rowCount % this._pageSize == 0 && !nextPage (out, rowCount)){
+				if (capture != null) capture.abandoned = true;
+				break;
+			}
+		}//end while
+		if (this._maxRows > 0 && rowCount == this._maxRows){
+			out.println ("(output limited to " + this._maxRows + " rows)");
+			if (capture != null) capture.abandoned = true;
+		}
+		out.flush ();
+		rs.close ();
+		return rowCount;
+	}
+
+	/**
+	 * Prints the k cars with the most service requests, answered by the
+	 * in-memory tracker instead of the database.
+	 *
+	 * @param k the number of cars
+	 * @return the number of rows printed
+	 */
+	public int printTopCars (int k){
+		return printRows (TopCarTracker.COLUMNS, this._topCars.top (k));
+	}
+
+	/**
+	 * Outputs rows already read into a QueryResult the same way printResult
+	 * does, without going back to the database.
+	 *
+	 * @return the number of rows printed
+	 */
+	public int printResult (QueryResult result){
+		String[] columns = new String[result.getColumnCount ()];
+		for (int i = 0; i < columns.length; ++i){
+			columns[i] = result.getColumnName (i);
+		}
+		List<String[]> rows = new ArrayList<String[]> (result.getRowCount ());
+		for (int i = 0; i < result.getRowCount (); ++i){
+			rows.add (result.getRow (i));
+		}
+		return printRows (columns, rows);
+	}
+
+	/**
+	 * Outputs rows held in memory, e.g. a cached report, the same way
+	 * printResult does.
+	 */
+	private int printRows (String[] columns, List<String[]> rows){
+		PrintWriter out = new PrintWriter (new BufferedWriter (new OutputStreamWriter (System.out), 1 << 16));
+		int rowCount = 0;
+		for (String[] row : rows){
+			if (rowCount == 0){
+				for (String name : columns){
+					out.print (name);
+					out.print ('\t');
+				}
+				out.println ();
+			}
+			for (String value : row){
+				out.print (value);
+				out.print ('\t');
+			}
+			out.println ();
+			++rowCount;
+			if (this._pageSize > 0 && rowCount % this._pageSize == 0 && !nextPage (out, rowCount)){
+				break;
+			}
+		}
+		out.flush ();
+		return rowCount;
+	}
+
+	/**
+	 * Flushes the page just printed and asks whether to continue.
+	 *
+	 * @return false when the user wants to stop the listing
+	 */
+	private static boolean nextPage (PrintWriter out, int rowCount){
+		out.print ("-- " + rowCount + " rows shown, press Enter for more or q to stop -- ");
+		out.flush ();
+		try{
+			String answer = in.readLine ();
+			return answer != null && !answer.trim ().equalsIgnoreCase ("q");
+		}catch (IOException e){
+			return false;
+		}
+	}
+	
+	/**
+	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
+	 * method issues the query to the DBMS and returns the results column by
+	 * column, with typed accessors for the values.
+	 * 
+	 * @param query the input query string
+	 * @param params the values bound to the ? placeholders, in order
+	 * @return the query result
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public QueryResult executeQueryAndReturnResult (String query, Object... params) throws SQLException { 
+		long start = System.nanoTime ();
+		QueryResult result = null;
+		PooledConnection pc = this._pool.borrow ();
+		try{
+			result = QueryResult.from (prepare (pc, query, params).executeQuery ());
+			return result;
+		}finally{
+			pc.close ();
+			recordStatement (query, params, System.nanoTime () - start,
+				result == null ? 0 : result.getRowCount (), result == null);
+		}
+	}//end executeQueryAndReturnResult
+	
+	/**
+	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
+	 * method issues the query to the DBMS and returns the number of results
+	 * 
+	 * @param query the input query string
+	 * @param params the values bound to the ? placeholders, in order
+	 * @return the number of rows returned
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int executeQuery (String query, Object... params) throws SQLException {
+		long start = System.nanoTime ();
+		int rowCount = 0;
+		boolean failed = true;
+		PooledConnection pc = this._pool.borrow ();
+		try{
+			//issues the query instruction
+			ResultSet rs = prepare (pc, query, params).executeQuery ();
+
+			//iterates through the result set and count nuber of results.
+			if(rs.next()){
+				rowCount++;
+			}//end while
+			rs.close ();
+			failed = false;
+			return rowCount;
+		}finally{
+			pc.close ();
+			recordStatement (query, params, System.nanoTime () - start, rowCount, failed);
+		}
+	}
+	
+	/**
+	 * Method to test whether an input query SQL instruction (i.e. SELECT)
+	 * returns at least one row.  The query is wrapped in EXISTS so the DBMS
+	 * stops at the first matching row and only a single boolean is sent back.
+	 * 
+	 * @param query the input query string
+	 * @param params the values bound to the ? placeholders, in order
+	 * @return true if the query returns a row
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public boolean exists (String query, Object... params) throws SQLException {
+		return existsAll (new String[]{ query }, params)[0];
+	}
+
+	/**
+	 * Method to test several input query SQL instructions in one round trip.
+	 * Each query is wrapped in its own EXISTS and all of them are evaluated
+	 * by a single SELECT.
+	 * 
+	 * @param queries the input query strings
+	 * @param params the values bound to the ? placeholders of all queries, in order
+	 * @return for every query, true if it returns a row
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public boolean[] existsAll (String[] queries, Object... params) throws SQLException {
+		StringBuilder sql = new StringBuilder ("SELECT ");
+		for (int i = 0; i < queries.length; ++i){
+			if (i > 0) sql.append (", ");
+			sql.append ("EXISTS (").append (queries[i]).append (')');
+		}
+		String text = sql.toString ();
+		long start = System.nanoTime ();
+		boolean failed = true;
+		PooledConnection pc = this._pool.borrow ();
+		try{
+			PreparedStatement stmt = prepare (pc, text, params);
+			stmt.setFetchSize (1);
+			ResultSet rs = stmt.executeQuery ();
+			boolean[] found = new boolean[queries.length];
+			if (rs.next ()){
+				for (int i = 0; i < queries.length; ++i)
+					found[i] = rs.getBoolean (i + 1);
+			}
+			rs.close ();
+			failed = false;
+			return found;
+		}finally{
+			pc.close ();
+			recordStatement (text, params, System.nanoTime () - start, 1, failed);
+		}
+	}
+	
+	/**
+	 * Method to advance a sequence and fetch its new value. This
+	 * method issues the query to the DBMS and returns the value
+	 * handed out by nextval
+	 * 
+	 * @param sequence name of the DB sequence
+	 * @return next value of a sequence
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public long getNextSeqVal(String sequence) throws SQLException {
+		String query = "SELECT nextval(CAST(? AS regclass))";
+		long start = System.nanoTime ();
+		boolean failed = true;
+		PooledConnection pc = this._pool.borrow ();
+		try{
+			ResultSet rs = prepare (pc, query, sequence).executeQuery ();
+			long value = -1;
+			if (rs.next()) value = rs.getLong(1);
+			rs.close ();
+			failed = false;
+			return value;
+		}finally{
+			pc.close ();
+			recordStatement (query, new Object[]{ sequence }, System.nanoTime () - start, 1, failed);
+		}
+	}
+
+	public IdAllocator getCustomerIds(){
+		return this._customerIds;
+	}
+
+	public IdAllocator getMechanicIds(){
+		return this._mechanicIds;
+	}
+
+	public IdAllocator getRequestIds(){
+		return this._requestIds;
+	}
+
+	public IdAllocator getClosedRequestIds(){
+		return this._closedRequestIds;
+	}
+
+	/**
+	 * Moves every key sequence past the largest key stored in its table.
+	 * Needed after rows were inserted without the allocators.
+	 *
+	 * @throws java.sql.SQLException when a sequence could not be updated
+	 */
+	public void resyncIds() throws SQLException {
+		this._customerIds.resync ();
+		this._mechanicIds.resync ();
+		this._requestIds.resync ();
+		this._closedRequestIds.resync ();
+	}
+
+	/**
+	 * Method to close the physical connections if they are open.
+	 */
+	public void cleanup(){
+		this._topCars.stop ();
+		if (this._writer != null){
+			this._writer.close ();
+		}//end if
+		if (this._slowQueries != null){
+			this._slowQueries.close ();
+		}//end if
+		if (this._pool != null){
+			this._pool.close ();
+		}//end if
+	}//end cleanup
+
+	/**
+	 * The main execution method
+	 * 
+	 * @param args the command line arguments this inclues the <mysql|pgsql> <login file>
+	 */
+	public static void main (String[] args) {
+		String mode = args.length > 3 ? args[3] : null;
+		String modeArg = args.length > 4 ? args[4] : null;
+		boolean validMode = mode == null
+			|| ((mode.equals("--load") || mode.equals("--batch") || mode.equals("--serve") || mode.equals("--memory"))
+				&& args.length == 5)
+			|| (mode.equals("--export") && args.length == 6)
+			|| ((mode.equals("--rebuild-totals") || mode.equals("--check-totals") || mode.equals("--plan-check")
+				|| mode.equals("--snapshot"))
+				&& args.length == 4);
+		if (args.length < 3 || !validMode) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + MechanicShop.class.getName () +
+		            " <dbname> <port> <user> [--load <dir> | --batch <file> | --serve <port> | --export <report> <file> | --memory <dir> | --snapshot | --rebuild-totals | --check-totals | --plan-check]");
+			return;
+		}//end if
+		
+		MechanicShop esql = null;
+		int status = 0;
+		
+		try{
+			System.out.println("(1)");
+			
+			try {
+				Class.forName("org.postgresql.Driver");
+			}catch(Exception e){
+
+				System.out.println("Where is your PostgreSQL JDBC Driver? " + "Include in your library path!");
+				e.printStackTrace();
+				return;
+			}
+			
+			System.out.println("(2)");
+			String dbname = args[0];
+			String dbport = args[1];
+			String user = args[2];
+			
+			if ("--memory".equals(mode)){
+				// runs the menu on the data files of <dir> held in memory, without a database
+				MemoryBackend memory = MemoryBackend.fromCsv(new File(modeArg));
+				System.out.println("Loaded " + memory.stats());
+				esql = new MechanicShop (memory);
+			}else{
+				esql = new MechanicShop (dbname, dbport, user, "");
+			}
+
+			if ("--snapshot".equals(mode)){
+				// runs the menu on a copy of the tables held in memory; changes are not written back
+				MemoryBackend memory = MemoryBackend.snapshot(esql);
+				System.out.println("Copied " + memory.stats() + " (changes stay in memory)");
+				esql.setBackend(memory);
+			}
+			if ("--load".equals(mode)){
+				// streams the data files of <dir> into the (empty) tables and exits
+				new BulkLoader(esql, new File(modeArg)).load();
+				return;
+			}
+			if ("--batch".equals(mode)){
+				// runs the operations listed in <file> instead of the menu
+				new BatchRunner(esql, Integer.getInteger("mechanicshop.batchCommitEvery", 500)).run(new File(modeArg));
+				return;
+			}
+			if ("--serve".equals(mode)){
+				// answers the shop operations over HTTP until the process is stopped
+				ShopServer server = new ShopServer(esql, Integer.parseInt(modeArg),
+					Integer.getInteger("mechanicshop.serveThreads", 64));
+				CountDownLatch stopped = new CountDownLatch(1);
+				Thread main = Thread.currentThread();
+				Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+					server.stop();
+					stopped.countDown();
+					// lets main write the metrics and disconnect before the JVM halts
+					try{
+						main.join(10000);
+					}catch (InterruptedException e){
+						// exiting anyway
+					}
+				}));
+				server.start();
+				System.out.println("Serving on http://localhost:" + modeArg + "/ (Ctrl-C to stop)");
+				stopped.await();
+				return;
+			}
+			if ("--export".equals(mode)){
+				// writes a report to <file>, as CSV when it ends in .csv and in the binary row format otherwise
+				new ReportExporter(esql, Integer.getInteger("mechanicshop.exportFetchSize", 10000),
+					Integer.getInteger("mechanicshop.exportBufferBytes", 1 << 20))
+					.export(modeArg, Integer.getInteger("mechanicshop.exportK", 10), new File(args[5]));
+				return;
+			}
+			if ("--rebuild-totals".equals(mode)){
+				// recomputes the maintained bill totals from the closed requests
+				int customers = esql.getBillTotals().rebuild();
+				System.out.println("Rebuilt bill totals of " + customers + " customers");
+				return;
+			}
+			if ("--check-totals".equals(mode)){
+				// compares the maintained bill totals with the full aggregation
+				int mismatches = esql.getBillTotals().check();
+				System.out.println(mismatches == 0 ? "Bill totals are consistent"
+					: mismatches + " customers have a wrong bill total");
+				return;
+			}
+			if ("--plan-check".equals(mode)){
+				// fails when a menu query scans a large table sequentially
+				int failures = new PlanChecker(esql, Long.getLong("mechanicshop.planCheckMinRows", 10000L)).run();
+				System.out.println(failures == 0 ? "All plans use indexes"
+					: failures + " sequential scans of large tables");
+				status = failures == 0 ? 0 : 1;
+				return;
+			}
+			
+			boolean keepon = true;
+			while(keepon){
+				System.out.println("MAIN MENU");
+				System.out.println("---------");
+				System.out.println("1. AddCustomer");
+				System.out.println("2. AddMechanic");
+				System.out.println("3. AddCar");
+				System.out.println("4. InsertServiceRequest");
+				System.out.println("5. CloseServiceRequest");
+				System.out.println("6. ListCustomersWithBillLessThan100");
+				System.out.println("7. ListCustomersWithMoreThan20Cars");
+				System.out.println("8. ListCarsBefore1995With50000Milles");
+				System.out.println("9. ListKCarsWithTheMostServices");
+				System.out.println("10. ListCustomersInDescendingOrderOfTheirTotalBill");
+				System.out.println("11. ViewMetrics");
+				System.out.println("12. < EXIT");
+				
+				/*
+				 * FOLLOW THE SPECIFICATION IN THE PROJECT DESCRIPTION
+				 */
+				int choice = readChoice();
+				long rowsBefore = esql.getMetrics().rowsSoFar();
+				operationFailed = false;
+				workNanos = 0;
+				workStart = 0;
+				boolean failed = true;
+				try{
+					switch (choice){
+						case 1: AddCustomer(esql); break;
+						case 2: AddMechanic(esql); break;
+						case 3: AddCar(esql); break;
+						case 4: InsertServiceRequest(esql); break;
+						case 5: CloseServiceRequest(esql); break;
+						case 6: ListCustomersWithBillLessThan100(esql); break;
+						case 7: ListCustomersWithMoreThan20Cars(esql); break;
+						case 8: ListCarsBefore1995With50000Milles(esql); break;
+						case 9: ListKCarsWithTheMostServices(esql); break;
+						case 10: ListCustomersInDescendingOrderOfTheirTotalBill(esql); break;
+						case 11: ViewMetrics(esql); break;
+						case 12: keepon = false; break;
+					}
+					failed = operationFailed;
+				}finally{
+					// an exception out of the operation counts as a failure too
+					endWork();
+					if (choice >= 1 && choice <= OPERATIONS.length){
+						esql.getMetrics().recordOperation(OPERATIONS[choice - 1], workNanos,
+							esql.getMetrics().rowsSoFar() - rowsBefore, failed);
+					}
+				}
+			}
+		}catch(Exception e){
+			System.err.println (e.getMessage ());
+		}finally{
+			try{
+				if(esql != null) {
+					String metricsFile = System.getProperty("mechanicshop.metricsFile",
+						"mechanicshop-metrics-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".tsv");
+					if (!metricsFile.isEmpty()) {
+						esql.getMetrics().dump(metricsFile);
+						System.out.println("Metrics written to " + metricsFile);
+					}
+					if (esql.getPool() != null) {
+						System.out.println("Connection pool: " + esql.getPool().stats());
+						System.out.println("Statement cache: " + esql.getPool().statementStats());
+					}
+					System.out.print("Disconnecting from database...");
+					esql.cleanup ();
+					System.out.println("Done\n\nBye !");
+				}//end if				
+			}catch(Exception e){
+				// ignored.
+			}
+			if (status != 0){
+				System.exit(status);
+			}
+		}
+	}
+
+	public static int readChoice() {
+		int input;
+		// returns only if a correct value is given.
+		do {
+			System.out.print("Please make your choice: ");
+			try { // read the integer, parse it and break.
+				input = Integer.parseInt(in.readLine());
+				break;
+			}catch (Exception e) {
+				System.out.println("Your input is invalid!");
+				continue;
+			}//end try
+		}while (true);
+		return input;
+
+
+	}//end readChoice
+	
+	public static void AddCustomer(MechanicShop esql){//1  Ted
+		try {
+			int c_id;
+			String tfN;
+			String tlN;
+			String tpN;
+			String ta;
+		
+	
+					Scanner fnO = new Scanner(System.in);
+					System.out.println("Enter customer's first name: ");
+					tfN = ShopService.requireText("First name", fnO.nextLine(), 32);
+		
+					Scanner lnO = new Scanner(System.in);
+					System.out.println("Enter customer's last name: ");
+					tlN = ShopService.requireText("Last name", lnO.nextLine(), 32);
+				
+			
+					Scanner pnO = new Scanner(System.in);
+					System.out.println("Enter customer's phone number: ");
+					tpN = ShopService.requireText("Phone number", pnO.nextLine(), 10);
+	
+
+			Scanner aO = new Scanner(System.in);
+			System.out.println("Enter customer's address: ");
+			ta = aO.nextLine();
+
+			startWork();
+			c_id = esql.getBackend().addCustomer(tfN, tlN, tpN, ta);
+		}
+		catch(Exception exc) {
+			failed(exc);
+		}
+
+	}
+	
+	public static void AddMechanic(MechanicShop esql){//2 Lindsey
+			String mechFirstName;
+			String mechLastName;
+			int mechID = 0;
+			int mechExp; 
+
+			// Reading in input using Scanner
+			Scanner scnr = new Scanner(System.in);
+
+			while(true){
+				try{
+					System.out.print("Enter the mechanic first name: ");
+					mechFirstName = ShopService.requireText("First name", scnr.nextLine(), 32);
+					break;
+				}
+				catch(Exception ex){
+					System.out.println(ex.getMessage());
+					System.out.println("Please try again.");
+				}
+			}
+
+			while(true){
+				try{
+					System.out.print("Enter the mechanic last name: ");
+					mechLastName = ShopService.requireText("Last name", scnr.nextLine(), 32);
+					break;
+				}
+				catch(Exception ex){
+					System.out.println(ex.getMessage());
+					System.out.println("Please try again.");
+				}
+
+			}
+
+			while(true){
+				try{
+					System.out.print("Enter the mechanic's years of experience: ");
+					mechExp = scnr.nextInt(); 
+					if(mechExp < 0){
+						throw new Exception("Years of experience cannot be a negative number.");
+					}
+					break;
+				}
+				catch(Exception ex){
+					System.out.println(ex.getMessage());
+					System.out.println("Please try again.");
+				}
+			}
+			// Putting values into database: 
+			startWork();
+			try{
+				System.out.println("\nAdding new mechanic to database:");
+				mechID = esql.getBackend().addMechanic(mechFirstName, mechLastName, mechExp);
+				// This will output the newly entered data:
+				esql.printRows(new String[]{ "id", "fname", "lname", "experience" },
+					Collections.singletonList(new String[]{ Integer.toString(mechID), mechFirstName, mechLastName,
+						Integer.toString(mechExp) }));
+				System.out.println("Done adding mechanic. Returning to MAIN MENU...\n");
+				
+			}
+			catch (Exception e){
+				failed(e);
+			}
+
+	}
+	
+	public static void AddCar(MechanicShop esql){//3 Lindsey
+		String carVin;
+		String carMake;
+		String carModel;
+		int carYear; 
+		
+		// Reading in input using Scanner
+		Scanner scnr = new Scanner(System.in);
+
+		while(true){
+			try{
+				System.out.print("Enter the car vin: ");
+				carVin = scnr.next();
+				if(carVin.length() == 0 || carVin.length() > 16){
+					throw new Exception("Invalid VIN, can't be null and must be less than 16 characters.");
+				}
+				
+				System.out.print("Enter the car make: ");
+				carMake = ShopService.requireText("Make", scnr.next(), 32);
+				
+				System.out.print("Enter the car model: ");
+				carModel = ShopService.requireText("Model", scnr.next(), 32);
+				
+				System.out.print("Enter the car year: ");
+				carYear = scnr.nextInt();
+				if(carYear < 1900 || carYear > 2020){
+					throw new Exception("Invalid input. Must be a valid year.");
+				}
+				
+				// input values into db
+				startWork();
+				System.out.println("\nAdding new car to database:");
+				esql.getBackend().addCar(carVin, carMake, carModel, carYear);
+
+				//show the values that were stored
+				esql.printRows(new String[]{ "vin", "make", "model", "year" },
+					Collections.singletonList(new String[]{ carVin, carMake, carModel, Integer.toString(carYear) }));
+				System.out.println("Done adding car. Returning to MAIN MENU...\n");
+				// an earlier attempt may have failed; the operation did not
+				operationFailed = false;
+				break;
+			}
+			catch(Exception e){
+				endWork();
+				operationFailed = true;
+				System.out.println(e.getMessage());
+			}
+		}		
+	}
+	
+	public static void InsertServiceRequest(MechanicShop esql){//4 Lindsey
+		String userInput;
+		Scanner scnr = new Scanner(System.in);
+		// keeps the customer's cars once fetched, so the rest of the intake needs no lookups
+		ServiceIntakeSession session = new ServiceIntakeSession(esql);
+
+		// ask for user to input the last name, read in input
+		System.out.print("Enter in the last name (or its beginning): ");
+		userInput = scnr.next();
+		boolean keepAsking = true;
+
+		// looks the name up in the in-memory index, ignoring case
+		List<String[]> matches = new ArrayList<String[]>();
+		startWork();
+		try{
+			matches = session.findCustomers(userInput);
+		}
+		catch (Exception e){
+			failed(e);
+		}
+
+		if(!matches.isEmpty()){ // record exists in table
+			// output all clients that match user's input
+			esql.printRows(NAME_COLUMNS, matches);
+			if (matches.size() == NAME_MATCHES){
+				System.out.println("(first " + NAME_MATCHES + " matches shown, type more of the name to narrow them down)");
+			}
+			endWork();
+
+			//check if selection is one of the matches shown
+			while(true){
+				System.out.print("\n Enter in the id of customer you would like to select: ");
+				if(session.selectCustomer(scnr.nextInt())){
+					break;
+				}
+				System.out.println("Invalid customer id. Please try again.");
+			}
+
+			// the customer's cars, fetched once with their make, model and year
+			QueryResult cars;
+			startWork();
+			try{
+				cars = session.cars();
+			}
+			catch (Exception e){
+				failed(e);
+				return;
+			}
+			if(cars.isEmpty()){
+				System.out.println("Car doesn't exist.");
+				return;
+			}
+			endWork();
+			while(true){
+				esql.printResult(cars);
+				System.out.print("\nEnter in the ownership id of the car you would like to add the service request to: ");
+				int ownID = scnr.nextInt();
+				try{
+					if(!session.selectCar(ownID)){// invalid car selection
+						System.out.println("Invalid car selection. Try again.\n");
+						continue;
+					}
+					// Initiate the service request here
+					System.out.println("Initiating service request...");
+
+				// getting odometer
+					System.out.print("Enter odometer reading: ");
+					int odo = scnr.nextInt();
+					if(odo <= 0){
+						throw new Exception("Odometer can't be null.");
+					}
+				// getting complaint
+					System.out.print("Enter complaint: ");
+					scnr.nextLine();
+					String comp = scnr.nextLine();
+					if(comp.length() >= 10000){
+						throw new Exception("Too long.");
+					}
+
+					startWork();
+					int setRid = session.submit(odo, comp);
+					System.out.println("\nCreated Service Request:");
+					esql.printRows(new String[]{ "rid", "customer_id", "car_vin", "date", "odometer", "complain" },
+						Collections.singletonList(new String[]{ Integer.toString(setRid), Integer.toString(session.getCustomerId()),
+							session.getVin(), LocalDate.now().toString(), Integer.toString(odo), comp }));
+					System.out.println("Done making service request (" + session.roundTrips() + " database round trips).\n");
+					operationFailed = false;
+					break;
+				}
+				catch(Exception e){
+					endWork();
+					failed(e);
+				}
+			}
+		}
+		else{ // record does not exist, option to add customer
+			endWork();
+			char userChoice;
+			System.out.println("Customer does not exist in database.");
+			
+			while(keepAsking){
+				System.out.println("Would you like to add this customer to the database? \n 1. Yes \n 2. No");
+				userChoice = scnr.next().charAt(0);
+				if(userChoice == '1'){ // go to AddCustomer function
+					AddCustomer(esql);
+					break;
+				}
+				else if(userChoice == '2'){ // Exit back to Main Menu
+					System.out.println("Stopped initiating service request... Returning to MAIN MENU.");
+					break;
+				}
+				else{
+					System.out.println("Invalid choice. Please try again.");
+					keepAsking = true;
+				}
+			}				
+		}		
+	}
+	
+	public static void CloseServiceRequest(MechanicShop esql) throws Exception{//5 Ted
+		try {
+			int rN;
+			int mechID;
+			int billCost;
+			String comments;
+
+			Scanner tRN = new Scanner(System.in);
+			System.out.println("Enter service request number: ");
+			rN = tRN.nextInt();
+
+			Scanner tmechID = new Scanner(System.in);
+			System.out.println("Enter mechanic's ID: ");
+			mechID = tmechID.nextInt();
+
+			Scanner tcomments = new Scanner(System.in);
+			System.out.println("Enter any comments regarding the service request for repairs: ");
+			comments = tcomments.nextLine();
+
+			Scanner tbillCost = new Scanner(System.in);
+			System.out.println("Enter cost to put on the customer's bill: ");
+			billCost = tRN.nextInt();
+
+			startWork();
+			esql.getBackend().closeServiceRequest(rN, mechID, comments, billCost);
+		}
+		catch(IllegalArgumentException exc) {
+			operationFailed = true;
+			System.out.println(exc.getMessage() + "\n");
+		}
+		catch(Exception exc) {
+			failed(exc);
+		}
+	}
+	
+	public static void ListCustomersWithBillLessThan100(MechanicShop esql){//6 Ted
+		browse(esql, new KeysetPager(esql.getBackend(), KeysetPager.BILL_LESS_THAN_100, REPORT_PAGE_SIZE));
+	}
+	
+	public static void ListCustomersWithMoreThan20Cars(MechanicShop esql){//7 Ted
+		startWork();
+		try {
+			int nRows;
+			nRows = esql.printResult(esql.getBackend().customersWithMoreThan20Cars());
+		}
+		catch(Exception exc){
+			failed(exc);
+		}
+	}
+	
+	public static void ListCarsBefore1995With50000Milles(MechanicShop esql){//8 Ted
+		browse(esql, new KeysetPager(esql.getBackend(), KeysetPager.CARS_BEFORE_1995, REPORT_PAGE_SIZE));
+	}
+
+	/**
+	 * Shows a report one page at a time and lets the user move forward and
+	 * back or change the page size until they quit.
+	 */
+	static void browse(MechanicShop esql, KeysetPager pager){
+		startWork();
+		try {
+			if (!pager.next()){
+				System.out.println("No rows.");
+				return;
+			}
+			while (true){
+				esql.printResult(pager.getPage());
+				endWork();
+				System.out.print("-- page " + pager.getPageNumber() + " (" + pager.getPageSize()
+					+ " rows per page) n: next, p: previous, s <rows>: page size, q: quit -- ");
+				String answer = in.readLine();
+				answer = answer == null ? "q" : answer.trim().toLowerCase();
+				startWork();
+				if (answer.startsWith("q")){
+					break;
+				}else if (answer.startsWith("p")){
+					if (!pager.previous()) System.out.println("This is the first page.");
+				}else if (answer.startsWith("s")){
+					try{
+						pager.setPageSize(Integer.parseInt(answer.substring(1).trim()));
+						pager.reload();
+					}catch (NumberFormatException e){
+						System.out.println("Page size must be a number, e.g. s 100");
+					}catch (IllegalArgumentException e){
+						System.out.println(e.getMessage());
+					}
+				}else{
+					if (!pager.next()) System.out.println("This is the last page.");
+				}
+			}
+		}
+		catch(Exception exc) {
+			failed(exc);
+		}
+	}
+	
+	public static void ListKCarsWithTheMostServices(MechanicShop esql){//9 Lindsey
+		int k;
+		Scanner scnr = new Scanner(System.in);
+
+		System.out.print("Enter K number of cars: ");
+		k = scnr.nextInt();
+		startWork();
+
+		// the database backend answers from the in-memory ranking; REPORT_K_MOST_SERVICED is the equivalent query
+		try{
+			esql.printRows(TopCarTracker.COLUMNS, esql.getBackend().mostServicedCars(k));
+		}
+		catch (Exception e){
+			failed(e);
+		}
+	}
+	
+	public static void ListCustomersInDescendingOrderOfTheirTotalBill(MechanicShop esql){// 10 Lindsey
+		startWork();
+		try{
+			esql.printResult(esql.getBackend().customersByTotalBill());
+		}
+		catch (Exception e){
+			failed(e);
+		}
+	}
+
+	/**
+	 * Starts timing the work of a menu operation, once its input is read.
+	 */
+	static void startWork(){
+		if (workStart == 0){
+			workStart = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Stops timing before the operation waits for input again.
+	 */
+	static void endWork(){
+		if (workStart != 0){
+			workNanos += System.nanoTime() - workStart;
+			workStart = 0;
+		}
+	}
+
+	/**
+	 * Prints why a menu operation failed and marks it failed in its metrics.
+	 */
+	static void failed(Exception e){
+		operationFailed = true;
+		System.err.println(e.getMessage());
+	}
+
+	public static void ViewMetrics(MechanicShop esql){//11
+		PrintWriter out = new PrintWriter (new BufferedWriter (new OutputStreamWriter (System.out)));
+		if (esql.getPool() != null){
+			out.println("Connection pool: " + esql.getPool().stats());
+			out.println("Statement cache: " + esql.getPool().statementStats());
+			out.println("Report cache: " + esql.getReportCache().stats());
+			out.println("Top cars: " + esql.getTopCars().stats());
+		}
+		if (esql.getWriter() != null){
+			out.println("Group commit: " + esql.getWriter().stats());
+		}
+		if (esql.getSlowQueries() != null){
+			out.println("Slow queries: " + esql.getSlowQueries().stats());
+		}
+		if (esql.getBackend() instanceof MemoryBackend){
+			out.println("In memory: " + ((MemoryBackend) esql.getBackend()).stats());
+		}
+		out.println();
+		esql.getMetrics().print(out);
+		out.flush();
+	}
 }
\ No newline at end of file
@@ -0,0 +1,743 @@
+/*
+ * In-memory shop data
+ * ===================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This class answers the shop operations from tables held in memory, for
+ * demos and tests without a database and as a baseline for the reports.
+ * The six tables are stored column by column in the columns QueryResult
+ * uses, so repeated strings such as Car.make are dictionary encoded.
+ * Primary keys are hash maps from key to row, and foreign keys are stored
+ * as the row number of the referenced row, resolved through those maps
+ * when a row is added; a join is then an array lookup and an aggregation
+ * is an array indexed by row.  Dates are kept as days since 1970-01-01.
+ *
+ * The same checks as ShopService are applied and the same messages are
+ * reported; a duplicate key is an SQLException with SQLState 23505 and a
+ * missing referenced row one with 23503, as the database would raise.
+ * Nothing is written back: the data lives as long as the object.  All
+ * methods may be called from several threads; writes exclude each other
+ * and the readers.
+ *
+ */
+
+public class MemoryBackend implements ShopBackend{
+	//column numbers of the tables
+	static final int C_ID = 0, C_FNAME = 1, C_LNAME = 2, C_PHONE = 3, C_ADDRESS = 4;
+	static final int M_ID = 0, M_FNAME = 1, M_LNAME = 2, M_EXPERIENCE = 3;
+	static final int CAR_VIN = 0, CAR_MAKE = 1, CAR_MODEL = 2, CAR_YEAR = 3;
+	static final int O_ID = 0, O_CUSTOMER = 1, O_CAR = 2;
+	static final int S_RID = 0, S_CUSTOMER = 1, S_CAR = 2, S_DATE = 3, S_ODOMETER = 4, S_COMPLAIN = 5;
+	static final int A_WID = 0, A_REQUEST = 1, A_MECHANIC = 2, A_DATE = 3, A_COMMENT = 4, A_BILL = 5;
+
+	/**
+	 * The rows of one table.  Columns only grow; rows are never updated or
+	 * removed.
+	 */
+	static final class Table {
+		final String name;
+		final QueryResult.Column[] columns;
+		int rows = 0;
+
+		Table(String name, int... types){
+			this.name = name;
+			this.columns = new QueryResult.Column[types.length];
+			for (int i = 0; i < types.length; ++i){
+				this.columns[i] = QueryResult.Builder.column(types[i]);
+			}
+		}
+
+		/**
+		 * @return the number of the new row
+		 */
+		int add(Object... values){
+			for (int i = 0; i < this.columns.length; ++i){
+				this.columns[i].add(values[i], this.rows);
+			}
+			return this.rows++;
+		}
+
+		int getInt(int row, int column){
+			return (int) this.columns[column].getLong(row);
+		}
+
+		String getString(int row, int column){
+			return this.columns[column].getString(row);
+		}
+
+		long bytes(){
+			long bytes = 0;
+			for (QueryResult.Column c : this.columns){
+				bytes += c.bytes() + c.nulls.size() / 8;
+			}
+			return bytes;
+		}
+	}
+
+	/**
+	 * The rows of a paged report in key order, valid until the next write.
+	 */
+	static final class Keyed {
+		final long version;
+		final int[] keys;
+		final int[] rows;
+
+		Keyed(long version, int[] keys, int[] rows){
+			this.version = version;
+			this.keys = keys;
+			this.rows = rows;
+		}
+	}
+
+	private final ReentrantReadWriteLock _lock = new ReentrantReadWriteLock();
+	private final Table _customers = new Table("Customer", Types.INTEGER, Types.CHAR, Types.CHAR, Types.CHAR, Types.CHAR);
+	private final Table _mechanics = new Table("Mechanic", Types.INTEGER, Types.CHAR, Types.CHAR, Types.INTEGER);
+	private final Table _cars = new Table("Car", Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.INTEGER);
+	private final Table _owns = new Table("Owns", Types.INTEGER, Types.INTEGER, Types.INTEGER);
+	private final Table _requests = new Table("Service_Request",
+		Types.INTEGER, Types.INTEGER, Types.INTEGER, Types.INTEGER, Types.INTEGER, Types.VARCHAR);
+	private final Table _closed = new Table("Closed_Request",
+		Types.INTEGER, Types.INTEGER, Types.INTEGER, Types.INTEGER, Types.VARCHAR, Types.INTEGER);
+	//primary keys
+	private final HashMap<Integer, Integer> _customerRows = new HashMap<Integer, Integer>();
+	private final HashMap<Integer, Integer> _mechanicRows = new HashMap<Integer, Integer>();
+	private final HashMap<String, Integer> _carRows = new HashMap<String, Integer>();
+	private final HashMap<Integer, Integer> _ownsRows = new HashMap<Integer, Integer>();
+	private final HashMap<Integer, Integer> _requestRows = new HashMap<Integer, Integer>();
+	private final HashMap<Integer, Integer> _closedRows = new HashMap<Integer, Integer>();
+	//Owns rows by customer row, and the Service_Request rows that are closed
+	private final HashMap<Integer, List<Integer>> _ownsOfCustomer = new HashMap<Integer, List<Integer>>();
+	private final HashSet<Integer> _closedRequests = new HashSet<Integer>();
+	//customers by last name; only searched, never filled from a database
+	private final CustomerNameIndex _names = new CustomerNameIndex(null);
+	//the next keys handed out, one past the largest stored
+	private int _nextCustomerId = 0;
+	private int _nextMechanicId = 0;
+	private int _nextRid = 0;
+	private int _nextWid = 0;
+	//counts the writes, so the paged reports know when to sort again
+	private volatile long _version = 0;
+	private final ConcurrentHashMap<KeysetPager.Report, Keyed> _keyed = new ConcurrentHashMap<KeysetPager.Report, Keyed>();
+
+	/**
+	 * Creates empty tables.
+	 */
+	public MemoryBackend(){
+	}
+
+	/**
+	 * Reads the shop data files (customer.csv, car.csv, ...) of a directory,
+	 * in the layout BulkLoader reads.
+	 *
+	 * @param dir the directory holding the files
+	 * @return the loaded tables
+	 * @throws java.io.IOException when a file could not be read
+	 * @throws java.sql.SQLException when the files break a key
+	 */
+	public static MemoryBackend fromCsv(File dir) throws IOException, SQLException {
+		MemoryBackend m = new MemoryBackend();
+		MappedCsvParser csv = new MappedCsvParser();
+		m._lock.writeLock().lock();
+		try{
+			// the files are parsed in parallel and the rows added in file order
+			csv.parse(new File(dir, "customer.csv"), 5,
+				() -> MappedCsvParser.values(Types.INTEGER, Types.CHAR, Types.CHAR, Types.CHAR, Types.CHAR), rows -> {
+					for (Object[] v : rows){
+						m.insertCustomer((Integer) v[0], (String) v[1], (String) v[2], (String) v[3], (String) v[4]);
+					}
+				});
+			csv.parse(new File(dir, "mechanic.csv"), 4,
+				() -> MappedCsvParser.values(Types.INTEGER, Types.CHAR, Types.CHAR, Types.INTEGER), rows -> {
+					for (Object[] v : rows){
+						m.insertMechanic((Integer) v[0], (String) v[1], (String) v[2], (Integer) v[3]);
+					}
+				});
+			csv.parse(new File(dir, "car.csv"), 4,
+				() -> MappedCsvParser.values(Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.INTEGER), rows -> {
+					for (Object[] v : rows){
+						m.insertCar((String) v[0], (String) v[1], (String) v[2], (Integer) v[3]);
+					}
+				});
+			csv.parse(new File(dir, "owns.csv"), 3,
+				() -> MappedCsvParser.values(Types.INTEGER, Types.INTEGER, Types.VARCHAR), rows -> {
+					for (Object[] v : rows){
+						m.insertOwns((Integer) v[0], (Integer) v[1], (String) v[2]);
+					}
+				});
+			csv.parse(new File(dir, "service_request.csv"), 6, () -> MappedCsvParser.values(
+				Types.INTEGER, Types.INTEGER, Types.VARCHAR, Types.DATE, Types.INTEGER, Types.VARCHAR), rows -> {
+					for (Object[] v : rows){
+						m.insertRequest((Integer) v[0], (Integer) v[1], (String) v[2], (Long) v[3], (Integer) v[4], (String) v[5]);
+					}
+				});
+			csv.parse(new File(dir, "closed_request.csv"), 6, () -> MappedCsvParser.values(
+				Types.INTEGER, Types.INTEGER, Types.INTEGER, Types.DATE, Types.VARCHAR, Types.INTEGER), rows -> {
+					for (Object[] v : rows){
+						m.insertClosed((Integer) v[0], (Integer) v[1], (Integer) v[2], (Long) v[3], (String) v[4], (Integer) v[5]);
+					}
+				});
+			m.indexNames();
+		}finally{
+			m._lock.writeLock().unlock();
+		}
+		return m;
+	}
+
+	/**
+	 * Copies the shop tables out of the database.  CHAR values are stored
+	 * without their padding.
+	 *
+	 * @param esql the shop whose database is read
+	 * @return the copied tables
+	 * @throws java.sql.SQLException when a table could not be read
+	 */
+	public static MemoryBackend snapshot(MechanicShop esql) throws SQLException {
+		MemoryBackend m = new MemoryBackend();
+		m._lock.writeLock().lock();
+		try{
+			QueryResult r = esql.executeQueryAndReturnResult("SELECT id, fname, lname, phone, address FROM Customer");
+			for (int i = 0; i < r.getRowCount(); ++i){
+				m.insertCustomer(r.getInt(i, 0), trim(r.getString(i, 1)), trim(r.getString(i, 2)),
+					trim(r.getString(i, 3)), trim(r.getString(i, 4)));
+			}
+			r = esql.executeQueryAndReturnResult("SELECT id, fname, lname, experience FROM Mechanic");
+			for (int i = 0; i < r.getRowCount(); ++i){
+				m.insertMechanic(r.getInt(i, 0), trim(r.getString(i, 1)), trim(r.getString(i, 2)), r.getInt(i, 3));
+			}
+			r = esql.executeQueryAndReturnResult("SELECT vin, make, model, year FROM Car");
+			for (int i = 0; i < r.getRowCount(); ++i){
+				m.insertCar(r.getString(i, 0), r.getString(i, 1), r.getString(i, 2), r.getInt(i, 3));
+			}
+			r = esql.executeQueryAndReturnResult("SELECT ownership_id, customer_id, car_vin FROM Owns");
+			for (int i = 0; i < r.getRowCount(); ++i){
+				m.insertOwns(r.getInt(i, 0), r.getInt(i, 1), r.getString(i, 2));
+			}
+			r = esql.executeQueryAndReturnResult("SELECT rid, customer_id, car_vin, date, odometer, complain FROM Service_Request");
+			for (int i = 0; i < r.getRowCount(); ++i){
+				m.insertRequest(r.getInt(i, 0), r.getInt(i, 1), r.getString(i, 2),
+					LocalDate.parse(r.getString(i, 3)).toEpochDay(), r.getInt(i, 4), r.getString(i, 5));
+			}
+			r = esql.executeQueryAndReturnResult("SELECT wid, rid, mid, date, comment, bill FROM Closed_Request");
+			for (int i = 0; i < r.getRowCount(); ++i){
+				m.insertClosed(r.getInt(i, 0), r.getInt(i, 1), r.getInt(i, 2),
+					LocalDate.parse(r.getString(i, 3)).toEpochDay(), r.getString(i, 4), r.getInt(i, 5));
+			}
+			m.indexNames();
+		}finally{
+			m._lock.writeLock().unlock();
+		}
+		return m;
+	}
+
+	private static String trim(String value){
+		return value == null ? null : value.trim();
+	}
+
+	private void indexNames(){
+		QueryResult.Builder names = new QueryResult.Builder(new String[]{ "id", "fname", "lname" },
+			Types.INTEGER, Types.CHAR, Types.CHAR);
+		for (int row = 0; row < this._customers.rows; ++row){
+			names.addRow(this._customers.getInt(row, C_ID), this._customers.getString(row, C_FNAME),
+				this._customers.getString(row, C_LNAME));
+		}
+		this._names.load(names.build());
+	}
+
+	private static SQLException duplicate(String table, String column, Object key){
+		return new SQLException("duplicate key value violates unique constraint \"" + table.toLowerCase() + "_pkey\""
+			+ " Detail: Key (" + column + ")=(" + key + ") already exists.", "23505");
+	}
+
+	private static SQLException missing(String table, String column, Object key){
+		return new SQLException("insert or update on table \"" + table.toLowerCase() + "\" violates foreign key constraint"
+			+ " Detail: Key (" + column + ")=(" + key + ") is not present.", "23503");
+	}
+
+	/*
+	 * The inserts below keep the keys and the references; the caller holds
+	 * the write lock.
+	 */
+
+	private int insertCustomer(int id, String fname, String lname, String phone, String address) throws SQLException {
+		if (this._customerRows.containsKey(id)){
+			throw duplicate(this._customers.name, "id", id);
+		}
+		int row = this._customers.add(id, fname, lname, phone, address);
+		this._customerRows.put(id, row);
+		this._nextCustomerId = Math.max(this._nextCustomerId, id + 1);
+		++this._version;
+		return row;
+	}
+
+	private int insertMechanic(int id, String fname, String lname, int experience) throws SQLException {
+		if (this._mechanicRows.containsKey(id)){
+			throw duplicate(this._mechanics.name, "id", id);
+		}
+		int row = this._mechanics.add(id, fname, lname, experience);
+		this._mechanicRows.put(id, row);
+		this._nextMechanicId = Math.max(this._nextMechanicId, id + 1);
+		++this._version;
+		return row;
+	}
+
+	private int insertCar(String vin, String make, String model, int year) throws SQLException {
+		if (this._carRows.containsKey(vin)){
+			throw duplicate(this._cars.name, "vin", vin);
+		}
+		int row = this._cars.add(vin, make, model, year);
+		this._carRows.put(vin, row);
+		++this._version;
+		return row;
+	}
+
+	private int insertOwns(int id, int customerId, String vin) throws SQLException {
+		if (this._ownsRows.containsKey(id)){
+			throw duplicate(this._owns.name, "ownership_id", id);
+		}
+		int customer = reference(this._customerRows, customerId, this._owns.name, "customer_id");
+		int car = reference(this._carRows, vin, this._owns.name, "car_vin");
+		int row = this._owns.add(id, customer, car);
+		this._ownsRows.put(id, row);
+		this._ownsOfCustomer.computeIfAbsent(customer, c -> new ArrayList<Integer>()).add(row);
+		++this._version;
+		return row;
+	}
+
+	private int insertRequest(int rid, int customerId, String vin, long date, int odometer, String complain)
+		throws SQLException {
+		if (this._requestRows.containsKey(rid)){
+			throw duplicate(this._requests.name, "rid", rid);
+		}
+		int customer = reference(this._customerRows, customerId, this._requests.name, "customer_id");
+		int car = reference(this._carRows, vin, this._requests.name, "car_vin");
+		int row = this._requests.add(rid, customer, car, (int) date, odometer, complain);
+		this._requestRows.put(rid, row);
+		this._nextRid = Math.max(this._nextRid, rid + 1);
+		++this._version;
+		return row;
+	}
+
+	private int insertClosed(int wid, int rid, int mid, long date, String comment, int bill) throws SQLException {
+		if (this._closedRows.containsKey(wid)){
+			throw duplicate(this._closed.name, "wid", wid);
+		}
+		int request = reference(this._requestRows, rid, this._closed.name, "rid");
+		int mechanic = reference(this._mechanicRows, mid, this._closed.name, "mid");
+		int row = this._closed.add(wid, request, mechanic, (int) date, comment, bill);
+		this._closedRows.put(wid, row);
+		this._closedRequests.add(request);
+		this._nextWid = Math.max(this._nextWid, wid + 1);
+		++this._version;
+		return row;
+	}
+
+	private static <K> int reference(HashMap<K, Integer> rows, K key, String table, String column) throws SQLException {
+		Integer row = rows.get(key);
+		if (row == null){
+			throw missing(table, column, key);
+		}
+		return row;
+	}
+
+	public int addCustomer(String fname, String lname, String phone, String address) throws SQLException {
+		ShopService.checkCustomer(fname, lname, phone);
+		this._lock.writeLock().lock();
+		try{
+			int id = this._nextCustomerId;
+			insertCustomer(id, fname, lname, phone, address == null ? "" : address);
+			this._names.add(id, fname, lname);
+			return id;
+		}finally{
+			this._lock.writeLock().unlock();
+		}
+	}
+
+	public int addMechanic(String fname, String lname, int experience) throws SQLException {
+		ShopService.checkMechanic(fname, lname, experience);
+		this._lock.writeLock().lock();
+		try{
+			int id = this._nextMechanicId;
+			insertMechanic(id, fname, lname, experience);
+			return id;
+		}finally{
+			this._lock.writeLock().unlock();
+		}
+	}
+
+	public void addCar(String vin, String make, String model, int year) throws SQLException {
+		ShopService.checkCar(vin, make, model, year);
+		this._lock.writeLock().lock();
+		try{
+			insertCar(vin, make, model, year);
+		}finally{
+			this._lock.writeLock().unlock();
+		}
+	}
+
+	public List<String[]> findCustomers(String prefix){
+		ShopService.requireText("Last name", prefix, 32);
+		return this._names.search(prefix, MechanicShop.NAME_MATCHES);
+	}
+
+	public QueryResult carsOf(int customerId){
+		QueryResult.Builder result = new QueryResult.Builder(new String[]{ "ownership_id", "vin", "make", "model", "year" },
+			Types.INTEGER, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.INTEGER);
+		this._lock.readLock().lock();
+		try{
+			Integer customer = this._customerRows.get(customerId);
+			List<Integer> owned = customer == null ? null : this._ownsOfCustomer.get(customer);
+			if (owned == null){
+				return result.build();
+			}
+			Integer[] rows = owned.toArray(new Integer[owned.size()]);
+			Arrays.sort(rows, (a, b) -> Integer.compare(this._owns.getInt(a, O_ID), this._owns.getInt(b, O_ID)));
+			for (int row : rows){
+				int car = this._owns.getInt(row, O_CAR);
+				result.addRow(this._owns.getInt(row, O_ID), this._cars.getString(car, CAR_VIN),
+					this._cars.getString(car, CAR_MAKE), this._cars.getString(car, CAR_MODEL),
+					this._cars.getInt(car, CAR_YEAR));
+			}
+			return result.build();
+		}finally{
+			this._lock.readLock().unlock();
+		}
+	}
+
+	public int insertServiceRequest(int customerId, String vin, int odometer, String complain) throws SQLException {
+		ShopService.checkServiceRequest(odometer, complain);
+		this._lock.writeLock().lock();
+		try{
+			Integer customer = this._customerRows.get(customerId);
+			Integer car = this._carRows.get(vin);
+			if (customer == null || car == null || !owns(customer, car)){
+				throw new IllegalArgumentException(ShopService.NOT_OWNED);
+			}
+			int rid = this._nextRid;
+			insertRequest(rid, customerId, vin, LocalDate.now().toEpochDay(), odometer, complain);
+			return rid;
+		}finally{
+			this._lock.writeLock().unlock();
+		}
+	}
+
+	private boolean owns(int customer, int car){
+		List<Integer> owned = this._ownsOfCustomer.get(customer);
+		if (owned != null){
+			for (int row : owned){
+				if (this._owns.getInt(row, O_CAR) == car){
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Applies the checks of close_service_request in the same order.
+	 */
+	public int closeServiceRequest(int rid, int mid, String comment, int bill) throws SQLException {
+		if (bill <= 0){
+			throw new IllegalArgumentException(ShopService.CLOSE_MESSAGES[ShopService.INVALID_BILL]);
+		}
+		this._lock.writeLock().lock();
+		try{
+			long today = LocalDate.now().toEpochDay();
+			Integer request = this._requestRows.get(rid);
+			int status = ShopService.CLOSED;
+			if (!this._mechanicRows.containsKey(mid)){
+				status = ShopService.NO_MECHANIC;
+			}else if (request == null){
+				status = ShopService.NO_REQUEST;
+			}else if (this._requests.getInt(request, S_DATE) > today){
+				status = ShopService.FUTURE_REQUEST;
+			}else if (this._closedRequests.contains(request)){
+				status = ShopService.ALREADY_CLOSED;
+			}
+			if (status != ShopService.CLOSED){
+				throw new IllegalArgumentException(ShopService.CLOSE_MESSAGES[status]);
+			}
+			int wid = this._nextWid;
+			insertClosed(wid, rid, mid, today, comment, bill);
+			return wid;
+		}finally{
+			this._lock.writeLock().unlock();
+		}
+	}
+
+	public QueryResult customersWithBillLessThan100(){
+		QueryResult.Builder result = new QueryResult.Builder(new String[]{ "fname", "lname", "bill", "comment", "date" },
+			Types.CHAR, Types.CHAR, Types.INTEGER, Types.VARCHAR, Types.DATE);
+		this._lock.readLock().lock();
+		try{
+			for (int row = 0; row < this._closed.rows; ++row){
+				if (this._closed.getInt(row, A_BILL) < 100){
+					int request = this._closed.getInt(row, A_REQUEST);
+					int customer = this._requests.getInt(request, S_CUSTOMER);
+					result.addRow(this._customers.getString(customer, C_FNAME), this._customers.getString(customer, C_LNAME),
+						this._closed.getInt(row, A_BILL), this._closed.getString(row, A_COMMENT),
+						LocalDate.ofEpochDay(this._requests.getInt(request, S_DATE)).toString());
+				}
+			}
+			return result.build();
+		}finally{
+			this._lock.readLock().unlock();
+		}
+	}
+
+	public QueryResult customersWithMoreThan20Cars(){
+		QueryResult.Builder result = new QueryResult.Builder(new String[]{ "fname", "lname", "numcars" },
+			Types.CHAR, Types.CHAR, Types.BIGINT);
+		this._lock.readLock().lock();
+		try{
+			int[] cars = new int[this._customers.rows];
+			for (int row = 0; row < this._owns.rows; ++row){
+				++cars[this._owns.getInt(row, O_CUSTOMER)];
+			}
+			for (int customer = 0; customer < cars.length; ++customer){
+				if (cars[customer] > 20){
+					result.addRow(this._customers.getString(customer, C_FNAME), this._customers.getString(customer, C_LNAME),
+						(long) cars[customer]);
+				}
+			}
+			return result.build();
+		}finally{
+			this._lock.readLock().unlock();
+		}
+	}
+
+	public QueryResult carsBefore1995With50000Miles(){
+		QueryResult.Builder result = new QueryResult.Builder(new String[]{ "make", "model", "year", "odometer" },
+			Types.VARCHAR, Types.VARCHAR, Types.INTEGER, Types.INTEGER);
+		this._lock.readLock().lock();
+		try{
+			boolean[] old = oldCars();
+			for (int row = 0; row < this._requests.rows; ++row){
+				int car = this._requests.getInt(row, S_CAR);
+				if (old[car] && this._requests.getInt(row, S_ODOMETER) < 50000){
+					result.addRow(this._cars.getString(car, CAR_MAKE), this._cars.getString(car, CAR_MODEL),
+						this._cars.getInt(car, CAR_YEAR), this._requests.getInt(row, S_ODOMETER));
+				}
+			}
+			return result.build();
+		}finally{
+			this._lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return for every Car row, whether the car is from before 1995
+	 */
+	private boolean[] oldCars(){
+		boolean[] old = new boolean[this._cars.rows];
+		for (int car = 0; car < old.length; ++car){
+			old[car] = this._cars.getInt(car, CAR_YEAR) < 1995;
+		}
+		return old;
+	}
+
+	/**
+	 * Ties are broken by the order the cars were added.
+	 */
+	public List<String[]> mostServicedCars(int k){
+		ShopService.checkTopK(k);
+		this._lock.readLock().lock();
+		try{
+			int[] requests = new int[this._cars.rows];
+			for (int row = 0; row < this._requests.rows; ++row){
+				++requests[this._requests.getInt(row, S_CAR)];
+			}
+			//the k best so far, worst on top
+			PriorityQueue<Integer> best = new PriorityQueue<Integer>((a, b) ->
+				requests[a] != requests[b] ? Integer.compare(requests[a], requests[b]) : Integer.compare(b, a));
+			for (int car = 0; car < requests.length && k > 0; ++car){
+				if (requests[car] == 0){
+					continue;
+				}
+				if (best.size() < k){
+					best.add(car);
+				}else if (requests[car] > requests[best.peek()]){
+					best.poll();
+					best.add(car);
+				}
+			}
+			List<String[]> top = new ArrayList<String[]>(best.size());
+			while (!best.isEmpty()){
+				int car = best.poll();
+				top.add(new String[]{ this._cars.getString(car, CAR_MAKE), this._cars.getString(car, CAR_MODEL),
+					Integer.toString(requests[car]) });
+			}
+			Collections.reverse(top);
+			return top;
+		}finally{
+			this._lock.readLock().unlock();
+		}
+	}
+
+	public QueryResult customersByTotalBill(){
+		QueryResult.Builder result = new QueryResult.Builder(new String[]{ "fname", "lname", "total_bill" },
+			Types.CHAR, Types.CHAR, Types.BIGINT);
+		this._lock.readLock().lock();
+		try{
+			long[] totals = new long[this._customers.rows];
+			boolean[] billed = new boolean[totals.length];
+			int count = 0;
+			for (int row = 0; row < this._closed.rows; ++row){
+				int customer = this._requests.getInt(this._closed.getInt(row, A_REQUEST), S_CUSTOMER);
+				totals[customer] += this._closed.getInt(row, A_BILL);
+				if (!billed[customer]){
+					billed[customer] = true;
+					++count;
+				}
+			}
+			Integer[] order = new Integer[count];
+			for (int customer = 0, i = 0; customer < totals.length; ++customer){
+				if (billed[customer]) order[i++] = customer;
+			}
+			Arrays.sort(order, (a, b) -> Long.compare(totals[b], totals[a]));
+			for (int customer : order){
+				result.addRow(this._customers.getString(customer, C_FNAME), this._customers.getString(customer, C_LNAME),
+					totals[customer]);
+			}
+			return result.build();
+		}finally{
+			this._lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * The qualifying rows are sorted by key once per version of the data and
+	 * a page is found by binary search.
+	 */
+	public QueryResult page(KeysetPager.Report report, int key, boolean forward, int limit){
+		this._lock.readLock().lock();
+		try{
+			Keyed keyed = keyed(report);
+			int at = lowerBound(keyed.keys, forward ? (long) key + 1 : key);
+			int from = forward ? at : Math.max(0, at - limit);
+			int to = forward ? (int) Math.min(keyed.keys.length, (long) at + limit) : at;
+			if (report == KeysetPager.BILL_LESS_THAN_100){
+				QueryResult.Builder result = new QueryResult.Builder(
+					new String[]{ "wid", "fname", "lname", "bill", "comment", "date" },
+					Types.INTEGER, Types.CHAR, Types.CHAR, Types.INTEGER, Types.VARCHAR, Types.DATE);
+				for (int i = from; i < to; ++i){
+					int row = keyed.rows[i];
+					int request = this._closed.getInt(row, A_REQUEST);
+					int customer = this._requests.getInt(request, S_CUSTOMER);
+					result.addRow(keyed.keys[i], this._customers.getString(customer, C_FNAME),
+						this._customers.getString(customer, C_LNAME), this._closed.getInt(row, A_BILL),
+						this._closed.getString(row, A_COMMENT),
+						LocalDate.ofEpochDay(this._requests.getInt(request, S_DATE)).toString());
+				}
+				return result.build();
+			}
+			QueryResult.Builder result = new QueryResult.Builder(new String[]{ "rid", "make", "model", "year", "odometer" },
+				Types.INTEGER, Types.VARCHAR, Types.VARCHAR, Types.INTEGER, Types.INTEGER);
+			for (int i = from; i < to; ++i){
+				int row = keyed.rows[i];
+				int car = this._requests.getInt(row, S_CAR);
+				result.addRow(keyed.keys[i], this._cars.getString(car, CAR_MAKE), this._cars.getString(car, CAR_MODEL),
+					this._cars.getInt(car, CAR_YEAR), this._requests.getInt(row, S_ODOMETER));
+			}
+			return result.build();
+		}finally{
+			this._lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the index of the first key that is not less than key
+	 */
+	private static int lowerBound(int[] keys, long key){
+		int lo = 0, hi = keys.length;
+		while (lo < hi){
+			int mid = (lo + hi) >>> 1;
+			if (keys[mid] < key) lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * Called with the read lock held, so the version cannot change; two
+	 * readers may sort the same version, which is harmless.
+	 */
+	private Keyed keyed(KeysetPager.Report report){
+		long version = this._version;
+		Keyed keyed = this._keyed.get(report);
+		if (keyed != null && keyed.version == version){
+			return keyed;
+		}
+		Table table;
+		int keyColumn;
+		List<Integer> rows = new ArrayList<Integer>();
+		if (report == KeysetPager.BILL_LESS_THAN_100){
+			table = this._closed;
+			keyColumn = A_WID;
+			for (int row = 0; row < table.rows; ++row){
+				if (table.getInt(row, A_BILL) < 100) rows.add(row);
+			}
+		}else if (report == KeysetPager.CARS_BEFORE_1995){
+			table = this._requests;
+			keyColumn = S_RID;
+			boolean[] old = oldCars();
+			for (int row = 0; row < table.rows; ++row){
+				if (old[table.getInt(row, S_CAR)] && table.getInt(row, S_ODOMETER) < 50000) rows.add(row);
+			}
+		}else{
+			throw new IllegalArgumentException("report cannot be paged");
+		}
+		Integer[] order = rows.toArray(new Integer[rows.size()]);
+		Arrays.sort(order, (a, b) -> Integer.compare(table.getInt(a, keyColumn), table.getInt(b, keyColumn)));
+		int[] keys = new int[order.length];
+		int[] sorted = new int[order.length];
+		for (int i = 0; i < order.length; ++i){
+			sorted[i] = order[i];
+			keys[i] = table.getInt(order[i], keyColumn);
+		}
+		keyed = new Keyed(version, keys, sorted);
+		this._keyed.put(report, keyed);
+		return keyed;
+	}
+
+	/**
+	 * @return the rows per table and an estimate of the heap they take
+	 */
+	public String stats(){
+		this._lock.readLock().lock();
+		try{
+			long bytes = 0;
+			StringBuilder sb = new StringBuilder();
+			for (Table t : new Table[]{ this._customers, this._mechanics, this._cars, this._owns, this._requests, this._closed }){
+				sb.append(t.name).append('=').append(t.rows).append(' ');
+				bytes += t.bytes();
+			}
+			return sb.append("columns=").append(bytes >> 10).append("KB").toString();
+		}finally{
+			this._lock.readLock().unlock();
+		}
+	}
+}//end MemoryBackend
@@ -0,0 +1,160 @@
+/*
+ * Operation and statement metrics
+ * ===============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class collects a latency histogram, a row count and an error count
+ * for every menu operation and for every SQL statement text that MechanicShop
+ * runs.  Entries are created the first time a name is seen; after that a
+ * recording is a map lookup plus atomic increments and allocates nothing.
+ *
+ */
+
+public class Metrics{
+	public static final String OPERATION = "op";
+	public static final String STATEMENT = "sql";
+
+	/**
+	 * Counters of one operation or statement.
+	 */
+	public static final class Entry {
+		final String kind;
+		final String name;
+		final LatencyHistogram latency = new LatencyHistogram();
+		final AtomicLong rows = new AtomicLong();
+		final AtomicLong errors = new AtomicLong();
+
+		Entry(String kind, String name){
+			this.kind = kind;
+			this.name = name;
+		}
+	}
+
+	private final ConcurrentHashMap<String, Entry> _operations = new ConcurrentHashMap<String, Entry>();
+	private final ConcurrentHashMap<String, Entry> _statements = new ConcurrentHashMap<String, Entry>();
+
+	//rows, statement time and statements of the current thread, used to attribute them to the running operation
+	private static final ThreadLocal<long[]> TOTALS = ThreadLocal.withInitial(() -> new long[3]);
+
+	private static Entry entry(ConcurrentHashMap<String, Entry> map, String kind, String name){
+		Entry e = map.get(name);
+		if (e == null){
+			e = map.computeIfAbsent(name, n -> new Entry(kind, n));
+		}
+		return e;
+	}
+
+	/**
+	 * Records one execution of a SQL statement.
+	 *
+	 * @param sql the statement text
+	 * @param nanos the time it took
+	 * @param rows the rows it returned or changed
+	 * @param failed true if it threw
+	 */
+	public void recordStatement(String sql, long nanos, long rows, boolean failed){
+		Entry e = entry(this._statements, STATEMENT, sql);
+		e.latency.record(nanos);
+		e.rows.addAndGet(rows);
+		if (failed) e.errors.incrementAndGet();
+		long[] totals = TOTALS.get();
+		totals[0] += rows;
+		totals[1] += nanos;
+		++totals[2];
+	}
+
+	/**
+	 * @return the number of rows the statements of this thread returned so far;
+	 * take the difference around an operation to get its rows
+	 */
+	public long rowsSoFar(){
+		return TOTALS.get()[0];
+	}
+
+	/**
+	 * @return the time the statements of this thread took so far, in nanoseconds
+	 */
+	public long statementNanosSoFar(){
+		return TOTALS.get()[1];
+	}
+
+	/**
+	 * @return the number of statements this thread sent so far, i.e. its
+	 * round trips to the database
+	 */
+	public long statementsSoFar(){
+		return TOTALS.get()[2];
+	}
+
+	/**
+	 * Records one execution of a menu operation.  The time is the wall time
+	 * of its work, SQL or not, without prompts and typing.
+	 *
+	 * @param name the operation name
+	 * @param nanos the time it took
+	 * @param rows the rows its statements returned or changed
+	 * @param failed true if it ended with an error
+	 */
+	public void recordOperation(String name, long nanos, long rows, boolean failed){
+		Entry e = entry(this._operations, OPERATION, name);
+		e.latency.record(nanos);
+		e.rows.addAndGet(rows);
+		if (failed) e.errors.incrementAndGet();
+	}
+
+	/**
+	 * @return all entries, operations first
+	 */
+	public List<Entry> entries(){
+		List<Entry> all = new ArrayList<Entry>(this._operations.values());
+		all.sort((a, b) -> a.name.compareTo(b.name));
+		List<Entry> statements = new ArrayList<Entry>(this._statements.values());
+		statements.sort((a, b) -> Long.compare(b.latency.getCount(), a.latency.getCount()));
+		all.addAll(statements);
+		return all;
+	}
+
+	/**
+	 * Writes one tab separated line per entry, with a header.  Times are in
+	 * microseconds.
+	 */
+	public void print(PrintWriter out){
+		out.println("kind\tcount\tp50_us\tp99_us\tp999_us\tmax_us\tmean_us\trows\terrors\tname");
+		for (Entry e : entries()){
+			LatencyHistogram h = e.latency;
+			out.println(String.format("%s\t%d\t%.1f\t%.1f\t%.1f\t%.1f\t%.1f\t%d\t%d\t%s",
+				e.kind, h.getCount(), h.percentile(0.50) / 1e3, h.percentile(0.99) / 1e3,
+				h.percentile(0.999) / 1e3, h.getMax() / 1e3, h.getMean() / 1e3,
+				e.rows.get(), e.errors.get(), e.name.replace('\n', ' ').replace('\t', ' ')));
+		}
+	}
+
+	/**
+	 * Writes the metrics to a file.
+	 *
+	 * @param file the file name
+	 * @throws java.io.IOException when the file could not be written
+	 */
+	public void dump(String file) throws IOException {
+		try (PrintWriter out = new PrintWriter(new FileWriter(file))){
+			print(out);
+		}
+	}
+}//end Metrics
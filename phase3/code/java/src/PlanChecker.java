@@ -0,0 +1,143 @@
+/*
+ * Query plan check
+ * ================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class runs EXPLAIN on the statements of the ten menu operations and
+ * reports every sequential scan of a table larger than a threshold.  Such a
+ * scan usually means an index is missing or is not used, and it makes the
+ * operation slower as the data grows.  The reports that aggregate whole
+ * tables list the tables they are expected to scan.
+ *
+ */
+
+public class PlanChecker{
+	static final Pattern SEQ_SCAN = Pattern.compile("Seq Scan on (\\w+)");
+
+	/**
+	 * A statement of a menu operation with sample parameters.
+	 */
+	static final class Check {
+		final String operation;
+		final String sql;
+		final Object[] params;
+		//tables the statement reads completely by design
+		final List<String> scans;
+
+		Check(String operation, String[] scans, String sql, Object... params){
+			this.operation = operation;
+			this.sql = sql;
+			this.params = params;
+			this.scans = Arrays.asList(scans);
+		}
+	}
+
+	static final String[] NONE = {};
+
+	static final Check[] CHECKS = {
+		new Check("AddCustomer", NONE, MechanicShop.INSERT_CUSTOMER, 0, "f", "l", "p", "a"),
+		new Check("AddMechanic", NONE, MechanicShop.INSERT_MECHANIC, 0, "f", "l", 1),
+		new Check("AddCar", NONE, MechanicShop.INSERT_CAR, "v", "m", "m", 2000),
+		new Check("InsertServiceRequest", NONE, "SELECT id, fname, lname FROM CUSTOMER WHERE lname = ?", "Smith"),
+		new Check("InsertServiceRequest", NONE, ServiceIntakeSession.CARS_OF_CUSTOMER, 0),
+		new Check("InsertServiceRequest", NONE, MechanicShop.INSERT_OWNED_SERVICE_REQUEST, 0, 1, "c", 0, "v"),
+		// the lookups inside close_service_request, whose plans EXPLAIN of the call does not show
+		new Check("CloseServiceRequest", NONE, "SELECT 1 FROM Mechanic M WHERE M.id = ? FOR KEY SHARE", 0),
+		new Check("CloseServiceRequest", NONE, "SELECT S.date FROM Service_Request S WHERE S.rid = ? FOR UPDATE", 0),
+		new Check("CloseServiceRequest", NONE, "SELECT 1 FROM Closed_Request C WHERE C.rid = ?", 0),
+		new Check("CloseServiceRequest", NONE, MechanicShop.INSERT_CLOSED_REQUEST, 0, 0, 0, "c", 1),
+		new Check("ListCustomersWithBillLessThan100", NONE, MechanicShop.REPORT_BILL_LESS_THAN_100),
+		new Check("ListCustomersWithBillLessThan100", NONE, KeysetPager.BILL_LESS_THAN_100.forward, 0, 50),
+		new Check("ListCustomersWithBillLessThan100", NONE, KeysetPager.BILL_LESS_THAN_100.backward, 1000, 50),
+		new Check("ListCustomersWithMoreThan20Cars", new String[]{ "owns", "customer" }, MechanicShop.REPORT_MORE_THAN_20_CARS),
+		new Check("ListCarsBefore1995With50000Milles", NONE, MechanicShop.REPORT_CARS_BEFORE_1995),
+		new Check("ListCarsBefore1995With50000Milles", NONE, KeysetPager.CARS_BEFORE_1995.forward, 0, 50),
+		new Check("ListCarsBefore1995With50000Milles", NONE, KeysetPager.CARS_BEFORE_1995.backward, 1000, 50),
+		new Check("ListKCarsWithTheMostServices", new String[]{ "car", "service_request" }, MechanicShop.REPORT_K_MOST_SERVICED, 10),
+		new Check("ListCustomersInDescendingOrderOfTheirTotalBill", new String[]{ "customer" }, MechanicShop.REPORT_TOTAL_BILL)
+	};
+
+	private final MechanicShop _esql;
+	private final long _minRows;
+
+	/**
+	 * @param esql the shop whose database is checked
+	 * @param minRows the estimated row count from which a sequential scan is reported
+	 */
+	public PlanChecker(MechanicShop esql, long minRows){
+		this._esql = esql;
+		this._minRows = minRows;
+	}
+
+	/**
+	 * Explains every statement and prints its verdict.
+	 *
+	 * @return the number of unexpected sequential scans of large tables
+	 * @throws java.sql.SQLException when a statement could not be explained
+	 */
+	public int run() throws SQLException {
+		int failures = 0;
+		for (Check check : CHECKS){
+			List<String> plan = explain(check);
+			List<String> bad = new ArrayList<String>();
+			for (String line : plan){
+				Matcher m = SEQ_SCAN.matcher(line);
+				while (m.find()){
+					String table = m.group(1).toLowerCase(Locale.ROOT);
+					if (!check.scans.contains(table) && rows(table) >= this._minRows){
+						bad.add(table);
+					}
+				}
+			}
+			System.out.println((bad.isEmpty() ? "OK   " : "FAIL ") + check.operation + ": " + check.sql);
+			if (!bad.isEmpty()){
+				System.out.println("     sequential scan of " + bad);
+				for (String line : plan){
+					System.out.println("     " + line);
+				}
+				failures += bad.size();
+			}
+		}
+		return failures;
+	}
+
+	private List<String> explain(Check check) throws SQLException {
+		List<String> plan = new ArrayList<String>();
+		PooledConnection pc = this._esql.borrow();
+		try (ResultSet rs = MechanicShop.prepare(pc, "EXPLAIN " + check.sql, check.params).executeQuery()){
+			while (rs.next()){
+				plan.add(rs.getString(1));
+			}
+		}finally{
+			pc.close();
+		}
+		return plan;
+	}
+
+	/**
+	 * @return the planner's estimate of the rows in the table
+	 */
+	private long rows(String table) throws SQLException {
+		QueryResult rows = this._esql.executeQueryAndReturnResult(
+			"SELECT reltuples::bigint FROM pg_class WHERE relkind = 'r' AND relname = ?", table);
+		return rows.isEmpty() ? 0 : rows.getLong(0, 0);
+	}
+}//end PlanChecker
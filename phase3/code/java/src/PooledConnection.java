@@ -0,0 +1,74 @@
+/*
+ * Pooled connection handle
+ * ========================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+
+/**
+ * This class is a physical connection on loan from a ConnectionPool together
+ * with the prepared statements cached on it.  Closing the handle returns the
+ * connection to the pool; the physical connection stays open.
+ *
+ */
+
+public class PooledConnection implements AutoCloseable{
+	private final ConnectionPool _pool;
+	private final Connection _connection;
+	private final StatementCache _statements;
+
+	//bookkeeping maintained by the pool
+	long lastReleased;
+	long borrowedAt;
+	Throwable borrowSite;
+	boolean leakReported;
+
+	PooledConnection(ConnectionPool pool, Connection connection, int statementCacheSize){
+		this._pool = pool;
+		this._connection = connection;
+		this._statements = new StatementCache(connection, statementCacheSize);
+		this.lastReleased = System.nanoTime();
+	}
+
+	/**
+	 * @return the physical connection; do not close it
+	 */
+	public Connection connection(){
+		return this._connection;
+	}
+
+	/**
+	 * @return the prepared statements cached on this connection
+	 */
+	public StatementCache statements(){
+		return this._statements;
+	}
+
+	/**
+	 * Returns the connection to the pool it was borrowed from.
+	 */
+	@Override
+	public void close(){
+		this._pool.release(this);
+	}
+
+	/**
+	 * Closes the cached statements and the physical connection.
+	 */
+	void destroy(){
+		this._statements.close();
+		try{
+			this._connection.close();
+		}catch (Exception e){
+			// ignored.
+		}
+	}
+}//end PooledConnection
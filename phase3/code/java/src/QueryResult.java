@@ -0,0 +1,460 @@
+/*
+ * Columnar query result
+ * =====================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * This class holds the rows of a query column by column.  Integer, bigint
+ * and floating point columns are kept in primitive arrays; other columns are
+ * kept as strings, dictionary encoded while few distinct values repeat, as
+ * for Car.make or Car.model.  Values are read with typed accessors by row
+ * and column index or column name, so callers do not parse strings.
+ *
+ */
+
+public class QueryResult{
+	private final String[] _names;
+	private final Column[] _columns;
+	private final int _rows;
+
+	private QueryResult(String[] names, Column[] columns, int rows){
+		this._names = names;
+		this._columns = columns;
+		this._rows = rows;
+	}
+
+	/**
+	 * Reads all rows of the result set and closes it.
+	 *
+	 * @param rs an open result set
+	 * @return the rows of the result set
+	 * @throws java.sql.SQLException when the rows could not be read
+	 */
+	public static QueryResult from(ResultSet rs) throws SQLException {
+		try{
+			Builder builder = new Builder(rs.getMetaData());
+			while (rs.next()){
+				builder.addRow(rs);
+			}
+			return builder.build();
+		}finally{
+			rs.close();
+		}
+	}
+
+	public int getRowCount(){
+		return this._rows;
+	}
+
+	public int getColumnCount(){
+		return this._columns.length;
+	}
+
+	public String getColumnName(int column){
+		return this._names[column];
+	}
+
+	/**
+	 * @return true when the column holds numbers, false when it holds strings
+	 */
+	public boolean isNumeric(int column){
+		return !(this._columns[column] instanceof StringColumn);
+	}
+
+	public boolean isEmpty(){
+		return this._rows == 0;
+	}
+
+	/**
+	 * @return the index of the column, ignoring case
+	 * @throws java.lang.IllegalArgumentException when there is no such column
+	 */
+	public int columnIndex(String name){
+		for (int i = 0; i < this._names.length; ++i){
+			if (this._names[i].equalsIgnoreCase(name)){
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("no column '" + name + "'");
+	}
+
+	public boolean isNull(int row, int column){
+		return this._columns[column].nulls.get(check(row));
+	}
+
+	/**
+	 * @return the value as an int, 0 for NULL
+	 * @throws java.lang.NumberFormatException when a string column holds no number
+	 */
+	public int getInt(int row, int column){
+		return (int) this._columns[column].getLong(check(row));
+	}
+
+	public long getLong(int row, int column){
+		return this._columns[column].getLong(check(row));
+	}
+
+	public double getDouble(int row, int column){
+		return this._columns[column].getDouble(check(row));
+	}
+
+	/**
+	 * @return the value as the driver would print it, null for NULL
+	 */
+	public String getString(int row, int column){
+		return this._columns[column].getString(check(row));
+	}
+
+	public int getInt(int row, String column){
+		return getInt(row, columnIndex(column));
+	}
+
+	public long getLong(int row, String column){
+		return getLong(row, columnIndex(column));
+	}
+
+	public double getDouble(int row, String column){
+		return getDouble(row, columnIndex(column));
+	}
+
+	public String getString(int row, String column){
+		return getString(row, columnIndex(column));
+	}
+
+	private int check(int row){
+		if (row < 0 || row >= this._rows){
+			throw new IndexOutOfBoundsException("row " + row + " of " + this._rows);
+		}
+		return row;
+	}
+
+	/**
+	 * @return an estimate of the heap the values take, in bytes
+	 */
+	public long estimatedBytes(){
+		long bytes = 16 + 8L * this._columns.length;
+		for (Column c : this._columns){
+			bytes += 48 + c.bytes() + c.nulls.size() / 8;
+		}
+		return bytes;
+	}
+
+	/**
+	 * @return the values of one row as strings, e.g. for printing
+	 */
+	public String[] getRow(int row){
+		String[] values = new String[this._columns.length];
+		for (int i = 0; i < values.length; ++i){
+			values[i] = getString(row, i);
+		}
+		return values;
+	}
+
+	/**
+	 * The values of one column and which of them are NULL.
+	 */
+	static abstract class Column {
+		final BitSet nulls = new BitSet();
+
+		abstract void add(ResultSet rs, int column, int row) throws SQLException;
+		abstract void add(Object value, int row);
+		abstract void trim(int rows);
+		abstract long bytes();
+		abstract long getLong(int row);
+		abstract double getDouble(int row);
+		abstract String getString(int row);
+	}
+
+	static final class IntColumn extends Column {
+		int[] values = new int[16];
+
+		void add(ResultSet rs, int column, int row) throws SQLException {
+			if (row == this.values.length) this.values = Arrays.copyOf(this.values, row * 2);
+			this.values[row] = rs.getInt(column);
+			if (rs.wasNull()) this.nulls.set(row);
+		}
+
+		void add(Object value, int row){
+			if (row == this.values.length) this.values = Arrays.copyOf(this.values, row * 2);
+			if (value == null) this.nulls.set(row);
+			else this.values[row] = ((Number) value).intValue();
+		}
+
+		void trim(int rows){
+			this.values = Arrays.copyOf(this.values, rows);
+		}
+
+		long bytes(){
+			return 4L * this.values.length;
+		}
+
+		long getLong(int row){
+			return this.values[row];
+		}
+
+		double getDouble(int row){
+			return this.values[row];
+		}
+
+		String getString(int row){
+			return this.nulls.get(row) ? null : Integer.toString(this.values[row]);
+		}
+	}
+
+	static final class LongColumn extends Column {
+		long[] values = new long[16];
+
+		void add(ResultSet rs, int column, int row) throws SQLException {
+			if (row == this.values.length) this.values = Arrays.copyOf(this.values, row * 2);
+			this.values[row] = rs.getLong(column);
+			if (rs.wasNull()) this.nulls.set(row);
+		}
+
+		void add(Object value, int row){
+			if (row == this.values.length) this.values = Arrays.copyOf(this.values, row * 2);
+			if (value == null) this.nulls.set(row);
+			else this.values[row] = ((Number) value).longValue();
+		}
+
+		void trim(int rows){
+			this.values = Arrays.copyOf(this.values, rows);
+		}
+
+		long bytes(){
+			return 8L * this.values.length;
+		}
+
+		long getLong(int row){
+			return this.values[row];
+		}
+
+		double getDouble(int row){
+			return this.values[row];
+		}
+
+		String getString(int row){
+			return this.nulls.get(row) ? null : Long.toString(this.values[row]);
+		}
+	}
+
+	static final class DoubleColumn extends Column {
+		double[] values = new double[16];
+
+		void add(ResultSet rs, int column, int row) throws SQLException {
+			if (row == this.values.length) this.values = Arrays.copyOf(this.values, row * 2);
+			this.values[row] = rs.getDouble(column);
+			if (rs.wasNull()) this.nulls.set(row);
+		}
+
+		void add(Object value, int row){
+			if (row == this.values.length) this.values = Arrays.copyOf(this.values, row * 2);
+			if (value == null) this.nulls.set(row);
+			else this.values[row] = ((Number) value).doubleValue();
+		}
+
+		void trim(int rows){
+			this.values = Arrays.copyOf(this.values, rows);
+		}
+
+		long bytes(){
+			return 8L * this.values.length;
+		}
+
+		long getLong(int row){
+			return (long) this.values[row];
+		}
+
+		double getDouble(int row){
+			return this.values[row];
+		}
+
+		String getString(int row){
+			return this.nulls.get(row) ? null : Double.toString(this.values[row]);
+		}
+	}
+
+	/**
+	 * Strings as codes into a dictionary of distinct values.  When more than
+	 * half of the values turn out to be distinct the dictionary saves
+	 * nothing, so the column switches to plain strings.
+	 */
+	static final class StringColumn extends Column {
+		//rows read before deciding whether the dictionary pays off
+		static final int SAMPLE = 256;
+
+		int[] codes = new int[16];
+		String[] dictionary = new String[16];
+		int distinct = 0;
+		HashMap<String, Integer> lookup = new HashMap<String, Integer>();
+		//set instead of codes once the column is not dictionary encoded
+		String[] plain = null;
+
+		void add(ResultSet rs, int column, int row) throws SQLException {
+			add(rs.getString(column), row);
+		}
+
+		void add(Object value, int row){
+			add(value == null ? null : value.toString(), row);
+		}
+
+		void add(String value, int row){
+			if (value == null) this.nulls.set(row);
+			if (this.plain != null){
+				if (row == this.plain.length) this.plain = Arrays.copyOf(this.plain, row * 2);
+				this.plain[row] = value;
+				return;
+			}
+			if (row == this.codes.length) this.codes = Arrays.copyOf(this.codes, row * 2);
+			Integer code = this.lookup.get(value);
+			if (code == null){
+				if (this.distinct == this.dictionary.length){
+					this.dictionary = Arrays.copyOf(this.dictionary, this.distinct * 2);
+				}
+				code = this.distinct;
+				this.dictionary[this.distinct++] = value;
+				this.lookup.put(value, code);
+			}
+			this.codes[row] = code;
+			if (row + 1 == SAMPLE && this.distinct * 2 > SAMPLE){
+				this.plain = new String[this.codes.length];
+				for (int i = 0; i <= row; ++i){
+					this.plain[i] = this.dictionary[this.codes[i]];
+				}
+				this.codes = null;
+				this.dictionary = null;
+				this.lookup = null;
+			}
+		}
+
+		void trim(int rows){
+			if (this.plain != null){
+				this.plain = Arrays.copyOf(this.plain, rows);
+			}else{
+				this.codes = Arrays.copyOf(this.codes, rows);
+				this.dictionary = Arrays.copyOf(this.dictionary, this.distinct);
+				this.lookup = null;
+			}
+		}
+
+		long bytes(){
+			long bytes = 0;
+			String[] strings = this.plain != null ? this.plain : this.dictionary;
+			for (String v : strings){
+				bytes += 8 + (v == null ? 0 : 40 + 2L * v.length());
+			}
+			return this.plain != null ? bytes : bytes + 4L * this.codes.length;
+		}
+
+		long getLong(int row){
+			String value = getString(row);
+			return value == null ? 0 : Long.parseLong(value.trim());
+		}
+
+		double getDouble(int row){
+			String value = getString(row);
+			return value == null ? 0 : Double.parseDouble(value.trim());
+		}
+
+		String getString(int row){
+			return this.plain != null ? this.plain[row] : this.dictionary[this.codes[row]];
+		}
+	}
+
+	/**
+	 * Collects rows into columns typed after the result set metadata.
+	 */
+	public static final class Builder {
+		private final String[] _names;
+		private final Column[] _columns;
+		private int _rows = 0;
+
+		public Builder(ResultSetMetaData meta) throws SQLException {
+			int count = meta.getColumnCount();
+			this._names = new String[count];
+			this._columns = new Column[count];
+			for (int i = 0; i < count; ++i){
+				this._names[i] = meta.getColumnName(i + 1).toLowerCase(Locale.ROOT);
+				this._columns[i] = column(meta.getColumnType(i + 1));
+			}
+		}
+
+		/**
+		 * For rows computed without a result set.
+		 *
+		 * @param names the column names
+		 * @param types the java.sql.Types of the columns
+		 */
+		public Builder(String[] names, int... types){
+			this._names = names;
+			this._columns = new Column[names.length];
+			for (int i = 0; i < names.length; ++i){
+				this._columns[i] = column(types[i]);
+			}
+		}
+
+		/**
+		 * NUMERIC stays a string so its exact digits are kept.
+		 */
+		static Column column(int type){
+			switch (type){
+				case Types.INTEGER:
+				case Types.SMALLINT:
+				case Types.TINYINT:
+					return new IntColumn();
+				case Types.BIGINT:
+					return new LongColumn();
+				case Types.DOUBLE:
+				case Types.FLOAT:
+				case Types.REAL:
+					return new DoubleColumn();
+				default:
+					return new StringColumn();
+			}
+		}
+
+		/**
+		 * Copies the current row of the result set.
+		 */
+		public void addRow(ResultSet rs) throws SQLException {
+			for (int i = 0; i < this._columns.length; ++i){
+				this._columns[i].add(rs, i + 1, this._rows);
+			}
+			++this._rows;
+		}
+
+		/**
+		 * Adds a row of values: Numbers for numeric columns, anything else
+		 * is stored as its toString().
+		 */
+		public void addRow(Object... values){
+			for (int i = 0; i < this._columns.length; ++i){
+				this._columns[i].add(values[i], this._rows);
+			}
+			++this._rows;
+		}
+
+		public QueryResult build(){
+			for (Column c : this._columns){
+				c.trim(this._rows);
+			}
+			return new QueryResult(this._names, this._columns, this._rows);
+		}
+	}
+}//end QueryResult
@@ -0,0 +1,370 @@
+/*
+ * Report result cache
+ * ===================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class keeps the rows of recently printed reports, keyed by the query
+ * text and its parameters.  Every entry remembers the tables its query reads;
+ * a write to one of those tables drops the entry, while writes to other
+ * tables leave it alone.  A statement whose effect cannot be told from its
+ * text, for instance one calling a function of the shop or reading a table
+ * the cache does not know, drops every entry.  The cache is bounded by an estimate of the memory
+ * held by the rows and evicts the least recently used entries first.  Writes
+ * made by other processes are not seen, so entries also expire after a time
+ * to live.
+ *
+ */
+
+public class ReportCache{
+	//estimated heap cost of an array slot, a String object and an array header
+	static final int SLOT_BYTES = 8;
+	static final int STRING_BYTES = 40;
+	static final int ARRAY_BYTES = 16;
+
+	//first word of a statement and the table it writes
+	static final Pattern WRITE = Pattern.compile(
+		"^\\s*(?:INSERT\\s+INTO|UPDATE|DELETE\\s+FROM|COPY)\\s+([A-Za-z_][A-Za-z_0-9]*)",
+		Pattern.CASE_INSENSITIVE);
+	static final Pattern READ_ONLY = Pattern.compile("^\\s*(?:SELECT|SHOW)\\b", Pattern.CASE_INSENSITIVE);
+	//SELECT ... INTO creates a table
+	static final Pattern SELECT_INTO = Pattern.compile("\\bINTO\\b", Pattern.CASE_INSENSITIVE);
+	//string literals, dropped before the text is looked at
+	static final Pattern LITERAL = Pattern.compile("'(?:[^']|'')*'");
+	//quoted names and comments can hide what a statement touches
+	static final Pattern OPAQUE = Pattern.compile("\"|--|/\\*");
+	//a name followed by a parenthesis: a function call, a table and its columns or a keyword
+	static final Pattern CALL = Pattern.compile("([A-Za-z_][A-Za-z_0-9]*)\\s*\\(");
+	//the tables after FROM or USING, with their aliases, and after JOIN
+	static final Pattern TABLE_LIST = Pattern.compile(
+		"\\b(?:FROM|USING)\\s+(?!STDIN\\b)([A-Za-z_]\\w*(?:\\s+(?:AS\\s+)?[A-Za-z_]\\w*)?" +
+		"(?:\\s*,\\s*[A-Za-z_]\\w*(?:\\s+(?:AS\\s+)?[A-Za-z_]\\w*)?)*)|\\bJOIN\\s+([A-Za-z_]\\w*)",
+		Pattern.CASE_INSENSITIVE);
+	//the tables reports read; anything else may be a view calling any function
+	static final Set<String> KNOWN_TABLES = new HashSet<String>(Arrays.asList(
+		"customer", "mechanic", "car", "owns", "service_request", "closed_request",
+		BillTotals.TABLE, "schema_version"));
+	//keywords and built in functions that may stand before a parenthesis and change nothing
+	static final Set<String> KNOWN_CALLS = new HashSet<String>(Arrays.asList(
+		"select", "from", "where", "and", "or", "not", "in", "any", "all", "exists", "values", "on",
+		"using", "as", "over", "filter", "array", "row", "cast", "count", "sum", "min", "max", "avg",
+		"coalesce", "nullif", "greatest", "least", "lower", "upper", "trim", "length", "substring",
+		"round", "abs", "extract", "date_part", "date_trunc", "now", "to_char", "concat"));
+	//marker for statements whose effect on tables is unknown, e.g. DDL or TRUNCATE
+	static final String[] ALL_TABLES = { "*" };
+	static final String[] NO_TABLES = {};
+
+	/**
+	 * The column names and rows of one report, or its result when it was
+	 * read with executeCachedQuery.
+	 */
+	public static final class Entry {
+		final String key;
+		final String[] tables;
+		final long created = System.nanoTime();
+		String[] columns = NO_TABLES;
+		final List<String[]> rows = new ArrayList<String[]>();
+		QueryResult result = null;
+		long bytes = ARRAY_BYTES;
+		//sum of the table versions when collecting started
+		long version;
+		//set when the rows are incomplete and must not be cached
+		boolean abandoned = false;
+
+		Entry(String key, String[] tables){
+			this.key = key;
+			this.tables = tables;
+		}
+
+		public String[] columns(){
+			return this.columns;
+		}
+
+		public List<String[]> rows(){
+			return this.rows;
+		}
+
+		public QueryResult result(){
+			return this.result;
+		}
+	}
+
+	private final long _maxBytes;
+	private final long _maxEntryBytes;
+	private final long _ttlNs;
+	private final LinkedHashMap<String, Entry> _entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private long _bytes = 0;
+	//bumped on every write so a query that overlapped a write is not cached
+	private final ConcurrentHashMap<String, AtomicLong> _versions = new ConcurrentHashMap<String, AtomicLong>();
+	private final AtomicLong _allVersion = new AtomicLong();
+	private final ConcurrentHashMap<String, String[]> _written = new ConcurrentHashMap<String, String[]>();
+	private long _hits = 0;
+	private long _misses = 0;
+	private long _invalidations = 0;
+	private long _evictions = 0;
+
+	/**
+	 * @param maxBytes the memory budget for all cached rows
+	 * @param ttlMs how long an entry may be served, 0 for no limit
+	 */
+	public ReportCache(long maxBytes, long ttlMs){
+		this._maxBytes = maxBytes;
+		this._maxEntryBytes = maxBytes / 4;
+		this._ttlNs = ttlMs * 1000000L;
+	}
+
+	/**
+	 * @return the cache key of a query and its parameters
+	 */
+	public static String key(String sql, Object[] params){
+		return params.length == 0 ? sql : sql + '\u0000' + Arrays.deepToString(params);
+	}
+
+	/**
+	 * @return the cache key of a query whose whole result is cached, distinct
+	 * from the key of the same query printed row by row
+	 */
+	public static String resultKey(String sql, Object[] params){
+		return '\u0001' + key(sql, params);
+	}
+
+	/**
+	 * @return the cached report, or null on a miss or when it expired
+	 */
+	public synchronized Entry get(String key){
+		Entry e = this._entries.get(key);
+		if (e != null && this._ttlNs > 0 && System.nanoTime() - e.created > this._ttlNs){
+			remove(key);
+			e = null;
+		}
+		if (e == null){
+			++this._misses;
+		}else{
+			++this._hits;
+		}
+		return e;
+	}
+
+	/**
+	 * Starts collecting the rows of a report.  The versions of its tables are
+	 * taken now and compared again when the entry is stored.
+	 *
+	 * @param key the cache key
+	 * @param tables the tables the query reads
+	 * @return an empty entry to add rows to
+	 */
+	public Entry begin(String key, String[] tables){
+		Entry e = new Entry(key, tables);
+		e.version = version(tables);
+		return e;
+	}
+
+	/**
+	 * Adds a row to an entry being collected.  Gives up on the entry when it
+	 * would use more than a quarter of the budget.
+	 */
+	public void add(Entry e, String[] row){
+		if (e.abandoned){
+			return;
+		}
+		long bytes = ARRAY_BYTES + SLOT_BYTES * (row.length + 1);
+		for (String v : row){
+			if (v != null) bytes += STRING_BYTES + 2L * v.length();
+		}
+		e.bytes += bytes;
+		if (e.bytes > this._maxEntryBytes){
+			e.abandoned = true;
+			e.rows.clear();
+			return;
+		}
+		e.rows.add(row);
+	}
+
+	/**
+	 * Stores a completely collected entry unless one of its tables was
+	 * written while it was being collected.
+	 */
+	public synchronized void put(Entry e){
+		if (e.abandoned || version(e.tables) != e.version){
+			return;
+		}
+		remove(e.key);
+		this._entries.put(e.key, e);
+		this._bytes += e.bytes;
+		Iterator<Map.Entry<String, Entry>> it = this._entries.entrySet().iterator();
+		while (this._bytes > this._maxBytes && it.hasNext()){
+			Entry eldest = it.next().getValue();
+			it.remove();
+			this._bytes -= eldest.bytes;
+			++this._evictions;
+		}
+	}
+
+	/**
+	 * Stores a result read in one piece, under the same rules as put(Entry).
+	 */
+	public void put(Entry e, QueryResult result){
+		e.result = result;
+		e.bytes += result.estimatedBytes();
+		if (e.bytes > this._maxEntryBytes){
+			return;
+		}
+		put(e);
+	}
+
+	/**
+	 * @return the sum of the versions of the tables, including the global version
+	 */
+	private long version(String[] tables){
+		long v = this._allVersion.get();
+		for (String t : tables){
+			AtomicLong tv = this._versions.get(t);
+			if (tv != null) v += tv.get();
+		}
+		return v;
+	}
+
+	private void remove(String key){
+		Entry old = this._entries.remove(key);
+		if (old != null){
+			this._bytes -= old.bytes;
+		}
+	}
+
+	/**
+	 * Drops every report that reads the table.
+	 *
+	 * @param table the table name, in any case
+	 */
+	public void invalidate(String table){
+		String t = table.toLowerCase(Locale.ROOT);
+		if (t.equals("*")){
+			invalidateAll();
+			return;
+		}
+		this._versions.computeIfAbsent(t, k -> new AtomicLong()).incrementAndGet();
+		synchronized (this){
+			Iterator<Entry> it = this._entries.values().iterator();
+			while (it.hasNext()){
+				Entry e = it.next();
+				if (Arrays.asList(e.tables).contains(t)){
+					it.remove();
+					this._bytes -= e.bytes;
+					++this._invalidations;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Drops every report.
+	 */
+	public void invalidateAll(){
+		this._allVersion.incrementAndGet();
+		synchronized (this){
+			this._invalidations += this._entries.size();
+			this._entries.clear();
+			this._bytes = 0;
+		}
+	}
+
+	/**
+	 * Drops the reports that read a table written by the statement.
+	 *
+	 * @param sql a statement that was just executed
+	 */
+	public void invalidateFor(String sql){
+		for (String t : tablesWritten(sql)){
+			invalidate(t);
+		}
+	}
+
+	/**
+	 * @return the tables a statement may change: none for a SELECT or SHOW,
+	 * the target table for INSERT/UPDATE/DELETE/COPY, and ALL_TABLES for
+	 * anything else or when the statement calls a function or reads a table
+	 * not known to be free of side effects
+	 */
+	public String[] tablesWritten(String sql){
+		String[] tables = this._written.get(sql);
+		if (tables == null){
+			tables = classify(LITERAL.matcher(sql).replaceAll("''"));
+			this._written.put(sql, tables);
+		}
+		return tables;
+	}
+
+	/**
+	 * @param sql a statement with its string literals emptied
+	 */
+	static String[] classify(String sql){
+		if (OPAQUE.matcher(sql).find() || !onlyKnown(sql)){
+			return ALL_TABLES;
+		}
+		Matcher m = WRITE.matcher(sql);
+		if (m.find()){
+			String table = m.group(1).toLowerCase(Locale.ROOT);
+			return KNOWN_TABLES.contains(table) ? new String[]{ table } : ALL_TABLES;
+		}
+		if (READ_ONLY.matcher(sql).find() && !SELECT_INTO.matcher(sql).find()){
+			return NO_TABLES;
+		}
+		return ALL_TABLES;
+	}
+
+	/**
+	 * @return true when every call in the statement is a known keyword or
+	 * built in function and every table it names is a known table
+	 */
+	static boolean onlyKnown(String sql){
+		Matcher m = CALL.matcher(sql);
+		while (m.find()){
+			String name = m.group(1).toLowerCase(Locale.ROOT);
+			if (!KNOWN_CALLS.contains(name) && !KNOWN_TABLES.contains(name)){
+				return false;
+			}
+		}
+		m = TABLE_LIST.matcher(sql);
+		while (m.find()){
+			String list = m.group(1) != null ? m.group(1) : m.group(2);
+			for (String item : list.split(",")){
+				String table = item.trim().split("\\s+")[0].toLowerCase(Locale.ROOT);
+				if (!KNOWN_TABLES.contains(table)){
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return a one line summary of the cache counters
+	 */
+	public synchronized String stats(){
+		return String.format("reports=%d bytes=%d/%d hits=%d misses=%d invalidations=%d evictions=%d",
+			this._entries.size(), this._bytes, this._maxBytes, this._hits, this._misses,
+			this._invalidations, this._evictions);
+	}
+}//end ReportCache
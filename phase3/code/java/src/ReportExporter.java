@@ -0,0 +1,359 @@
+/*
+ * Report export
+ * =============
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * This class writes a report to a file straight from a server-side cursor.
+ * Values are encoded into one direct buffer that is written to a
+ * FileChannel whenever it fills, so memory stays the same however many rows
+ * the report has, and no row is assembled as a String.  Integer columns are
+ * read as numbers and their digits written directly.
+ *
+ * Two formats are written.  CSV follows RFC 4180 with a header line.  The
+ * binary format is meant to be memory-mapped by other tools; all numbers are
+ * big-endian:
+ *
+ *   header  "MSRB", int16 version (1), int16 column count, and per column
+ *           int8 type (1 = int64, 2 = UTF-8 text), int16 name length, name
+ *   row     int32 length of the rest of the row, then per value int32
+ *           length (-1 for NULL) followed by the value: 8 bytes for int64,
+ *           the UTF-8 bytes for text
+ *   end     int32 -1, int64 row count
+ *
+ * Every row carries its length, so a reader can skip rows without decoding
+ * them.
+ *
+ */
+
+public class ReportExporter{
+	public enum Format { CSV, BINARY }
+
+	static final byte[] MAGIC = { 'M', 'S', 'R', 'B' };
+	static final short VERSION = 1;
+	static final byte INT64 = 1;
+	static final byte TEXT = 2;
+
+	//the reports by the names the HTTP service uses
+	static final String[] NAMES = { "bill-less-than-100", "more-than-20-cars", "cars-before-1995", "most-serviced-cars", "total-bill" };
+	static final String[] QUERIES = { MechanicShop.REPORT_BILL_LESS_THAN_100, MechanicShop.REPORT_MORE_THAN_20_CARS,
+		MechanicShop.REPORT_CARS_BEFORE_1995, MechanicShop.REPORT_K_MOST_SERVICED, MechanicShop.REPORT_TOTAL_BILL };
+
+	private final MechanicShop _esql;
+	private final int _fetchSize;
+	private ByteBuffer _buffer;
+	private FileChannel _channel;
+	//position in the buffer where the row being written starts
+	private int _rowStart;
+	private long _written;
+
+	/**
+	 * @param esql the shop whose database is read
+	 * @param fetchSize rows fetched per round trip from the cursor
+	 * @param bufferSize bytes buffered before they are written to the file
+	 */
+	public ReportExporter(MechanicShop esql, int fetchSize, int bufferSize){
+		this._esql = esql;
+		this._fetchSize = Math.max(1, fetchSize);
+		this._buffer = ByteBuffer.allocateDirect(Math.max(64, bufferSize));
+	}
+
+	/**
+	 * @return the format for the file name: CSV for .csv, BINARY otherwise
+	 */
+	public static Format formatOf(File file){
+		return file.getName().toLowerCase().endsWith(".csv") ? Format.CSV : Format.BINARY;
+	}
+
+	/**
+	 * Exports one of the five reports and prints the throughput.
+	 *
+	 * @param report the report name, e.g. "total-bill"
+	 * @param k the number of cars of most-serviced-cars, unused otherwise
+	 * @param file the file to write, replaced if it exists
+	 * @return the number of rows written
+	 * @throws java.lang.IllegalArgumentException when there is no such report
+	 */
+	public long export(String report, int k, File file) throws SQLException, IOException {
+		for (int i = 0; i < NAMES.length; ++i){
+			if (NAMES[i].equals(report)){
+				Format format = formatOf(file);
+				long start = System.nanoTime();
+				Object[] params = QUERIES[i].indexOf('?') >= 0 ? new Object[]{ k } : new Object[0];
+				long rows = export(QUERIES[i], params, file, format);
+				double seconds = (System.nanoTime() - start) / 1e9;
+				System.out.println(String.format("Exported %d rows of %s to %s as %s: %.1f MB in %.2f s, %.1f MB/s, %.0f rows/s",
+					rows, report, file, format, this._written / 1e6, seconds, this._written / 1e6 / seconds, rows / seconds));
+				return rows;
+			}
+		}
+		throw new IllegalArgumentException("no report '" + report + "', use one of " + String.join(", ", NAMES));
+	}
+
+	/**
+	 * Exports the rows of a query.
+	 *
+	 * @return the number of rows written
+	 */
+	public long export(String query, Object[] params, File file, Format format) throws SQLException, IOException {
+		long start = System.nanoTime();
+		long rows = 0;
+		boolean failed = true;
+		this._written = 0;
+		PooledConnection pc = this._esql.borrow();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+			this._channel = channel;
+			this._buffer.clear();
+			this._rowStart = 0;
+			// the driver only uses a cursor when auto-commit is off
+			pc.connection().setAutoCommit(false);
+			PreparedStatement stmt = MechanicShop.prepare(pc, query, params);
+			stmt.setFetchSize(this._fetchSize);
+			try (ResultSet rs = stmt.executeQuery()){
+				ResultSetMetaData meta = rs.getMetaData();
+				boolean[] integer = new boolean[meta.getColumnCount()];
+				for (int i = 0; i < integer.length; ++i){
+					int type = meta.getColumnType(i + 1);
+					integer[i] = type == Types.INTEGER || type == Types.BIGINT || type == Types.SMALLINT;
+				}
+				if (format == Format.CSV){
+					csvHeader(meta);
+					while (rs.next()){
+						csvRow(rs, integer);
+						++rows;
+					}
+				}else{
+					binaryHeader(meta, integer);
+					while (rs.next()){
+						binaryRow(rs, integer);
+						++rows;
+					}
+					ensure(12);
+					this._buffer.putInt(-1).putLong(rows);
+				}
+			}
+			pc.connection().commit();
+			drain(this._buffer.position());
+			failed = false;
+			return rows;
+		}finally{
+			this._channel = null;
+			// returning the connection restores auto-commit
+			pc.close();
+			this._esql.recordStatement(query, params, System.nanoTime() - start, rows, failed);
+		}
+	}
+
+	private void csvHeader(ResultSetMetaData meta) throws SQLException, IOException {
+		for (int i = 1; i <= meta.getColumnCount(); ++i){
+			if (i > 1) put((byte) ',');
+			csvText(meta.getColumnName(i));
+		}
+		put((byte) '\r');
+		put((byte) '\n');
+	}
+
+	private void csvRow(ResultSet rs, boolean[] integer) throws SQLException, IOException {
+		this._rowStart = this._buffer.position();
+		for (int i = 0; i < integer.length; ++i){
+			if (i > 0) put((byte) ',');
+			if (integer[i]){
+				long value = rs.getLong(i + 1);
+				if (!rs.wasNull()) digits(value);
+			}else{
+				String value = rs.getString(i + 1);
+				if (value != null) csvText(value);
+			}
+		}
+		put((byte) '\r');
+		put((byte) '\n');
+	}
+
+	/**
+	 * Writes a CSV field, quoted only when it contains a separator, a quote
+	 * or a line break.
+	 */
+	private void csvText(String value) throws IOException {
+		boolean quote = false;
+		for (int i = 0; i < value.length() && !quote; ++i){
+			char ch = value.charAt(i);
+			quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+		}
+		if (!quote){
+			utf8(value);
+			return;
+		}
+		put((byte) '"');
+		int from = 0;
+		for (int i = 0; i < value.length(); ++i){
+			if (value.charAt(i) == '"'){
+				utf8(value, from, i + 1);
+				put((byte) '"');
+				from = i + 1;
+			}
+		}
+		utf8(value, from, value.length());
+		put((byte) '"');
+	}
+
+	private void binaryHeader(ResultSetMetaData meta, boolean[] integer) throws SQLException, IOException {
+		ensure(8);
+		this._buffer.put(MAGIC).putShort(VERSION).putShort((short) integer.length);
+		for (int i = 0; i < integer.length; ++i){
+			byte[] name = meta.getColumnName(i + 1).getBytes(StandardCharsets.UTF_8);
+			ensure(3 + name.length);
+			this._buffer.put(integer[i] ? INT64 : TEXT).putShort((short) name.length).put(name);
+		}
+	}
+
+	private void binaryRow(ResultSet rs, boolean[] integer) throws SQLException, IOException {
+		this._rowStart = this._buffer.position();
+		ensure(4);
+		this._buffer.putInt(0);
+		for (int i = 0; i < integer.length; ++i){
+			if (integer[i]){
+				long value = rs.getLong(i + 1);
+				ensure(12);
+				if (rs.wasNull()){
+					this._buffer.putInt(-1);
+				}else{
+					this._buffer.putInt(8).putLong(value);
+				}
+			}else{
+				String value = rs.getString(i + 1);
+				ensure(4);
+				if (value == null){
+					this._buffer.putInt(-1);
+					continue;
+				}
+				int at = this._buffer.position();
+				this._buffer.putInt(0);
+				int offset = at - this._rowStart;
+				utf8(value);
+				// the row may have been moved to the front of the buffer meanwhile
+				at = this._rowStart + offset;
+				this._buffer.putInt(at, this._buffer.position() - at - 4);
+			}
+		}
+		this._buffer.putInt(this._rowStart, this._buffer.position() - this._rowStart - 4);
+	}
+
+	private void digits(long value) throws IOException {
+		ensure(20);
+		if (value == Long.MIN_VALUE){
+			utf8(Long.toString(value));
+			return;
+		}
+		if (value < 0){
+			this._buffer.put((byte) '-');
+			value = -value;
+		}
+		int length = 1;
+		for (long rest = value; rest >= 10; rest /= 10){
+			++length;
+		}
+		int end = this._buffer.position() + length;
+		for (int p = end - 1; p >= end - length; --p){
+			this._buffer.put(p, (byte) ('0' + value % 10));
+			value /= 10;
+		}
+		this._buffer.position(end);
+	}
+
+	private void utf8(String value) throws IOException {
+		utf8(value, 0, value.length());
+	}
+
+	/**
+	 * Encodes chars [from, to) of the value as UTF-8 into the buffer.
+	 */
+	private void utf8(String value, int from, int to) throws IOException {
+		for (int i = from; i < to; ++i){
+			char ch = value.charAt(i);
+			if (ch < 0x80){
+				if (!this._buffer.hasRemaining()) ensure(1);
+				this._buffer.put((byte) ch);
+				continue;
+			}
+			ensure(4);
+			int cp = ch;
+			if (Character.isHighSurrogate(ch) && i + 1 < to && Character.isLowSurrogate(value.charAt(i + 1))){
+				cp = Character.toCodePoint(ch, value.charAt(++i));
+			}else if (Character.isSurrogate(ch)){
+				cp = '?';
+			}
+			if (cp < 0x800){
+				this._buffer.put((byte) (0xC0 | (cp >> 6)));
+			}else if (cp < 0x10000){
+				this._buffer.put((byte) (0xE0 | (cp >> 12)));
+				this._buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+			}else{
+				this._buffer.put((byte) (0xF0 | (cp >> 18)));
+				this._buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+				this._buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+			}
+			if (cp >= 0x80) this._buffer.put((byte) (0x80 | (cp & 0x3F)));
+		}
+	}
+
+	private void put(byte b) throws IOException {
+		if (!this._buffer.hasRemaining()) ensure(1);
+		this._buffer.put(b);
+	}
+
+	/**
+	 * Makes room for n more bytes.  Completed rows are written to the file
+	 * and the row being written is moved to the front of the buffer, so its
+	 * length can still be filled in; a row larger than the buffer grows it.
+	 */
+	private void ensure(int n) throws IOException {
+		if (this._buffer.remaining() >= n){
+			return;
+		}
+		int partial = this._buffer.position() - this._rowStart;
+		drain(this._rowStart);
+		if (this._buffer.capacity() - partial < n){
+			ByteBuffer bigger = ByteBuffer.allocateDirect(Math.max(this._buffer.capacity() * 2, partial + n));
+			this._buffer.flip();
+			bigger.put(this._buffer);
+			this._buffer = bigger;
+		}
+	}
+
+	/**
+	 * Writes the first n bytes of the buffer to the file and keeps the rest,
+	 * moved to the front.
+	 */
+	private void drain(int n) throws IOException {
+		int end = this._buffer.position();
+		this._buffer.position(0).limit(n);
+		while (this._buffer.hasRemaining()){
+			this._channel.write(this._buffer);
+		}
+		this._written += n;
+		this._buffer.limit(end).position(n);
+		this._buffer.compact();
+		this._rowStart = 0;
+	}
+}//end ReportExporter
@@ -0,0 +1,176 @@
+/*
+ * Schema migrations
+ * =================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * This class brings the schema created by create.sql up to the version the
+ * application expects.  Every step has a version number; the table
+ * schema_version records the steps already applied, so each runs exactly
+ * once per database.  A step runs in its own transaction under an advisory
+ * lock, so terminals started at the same time do not apply it twice and a
+ * failed step leaves nothing behind.
+ *
+ */
+
+public class SchemaMigrator{
+	//key of the advisory lock held while a step is applied
+	static final long LOCK_KEY = 1662020L;
+
+	/**
+	 * One versioned change of the schema.
+	 */
+	static abstract class Step {
+		final int version;
+		final String description;
+
+		Step(int version, String description){
+			this.version = version;
+			this.description = description;
+		}
+
+		abstract void apply(PooledConnection pc, Statement stmt) throws SQLException;
+	}
+
+	/**
+	 * A step that runs a fixed list of statements.
+	 */
+	static final class Statements extends Step {
+		final String[] sql;
+
+		Statements(int version, String description, String... sql){
+			super(version, description);
+			this.sql = sql;
+		}
+
+		void apply(PooledConnection pc, Statement stmt) throws SQLException {
+			for (String s : this.sql){
+				stmt.execute(s);
+			}
+		}
+	}
+
+	//the steps in version order; append new ones, never change applied ones
+	static final Step[] STEPS = {
+		new Step(1, "maintained per-customer bill totals"){
+			void apply(PooledConnection pc, Statement stmt) throws SQLException {
+				for (String s : BillTotals.SCHEMA){
+					stmt.execute(s);
+				}
+				BillTotals.fill(pc);
+			}
+		},
+		new Statements(2, "indexes on the join and filter columns of the menu queries",
+			// InsertServiceRequest looks customers up by last name
+			"CREATE INDEX IF NOT EXISTS customer_lname_idx ON Customer (lname)",
+			// cars of a customer, and the per-customer car count of report 7, read only the index
+			"CREATE INDEX IF NOT EXISTS owns_customer_id_idx ON Owns (customer_id, car_vin)",
+			"CREATE INDEX IF NOT EXISTS service_request_customer_id_idx ON Service_Request (customer_id, rid)",
+			"CREATE INDEX IF NOT EXISTS service_request_car_vin_idx ON Service_Request (car_vin)",
+			// report 8: only low mileage requests of old cars are of interest
+			"CREATE INDEX IF NOT EXISTS service_request_low_odometer_idx ON Service_Request (car_vin, odometer) WHERE odometer < 50000",
+			"CREATE INDEX IF NOT EXISTS car_year_idx ON Car (year, vin)",
+			"CREATE INDEX IF NOT EXISTS closed_request_rid_idx ON Closed_Request (rid)",
+			// report 6: the few cheap closed requests, with the columns it prints
+			"CREATE INDEX IF NOT EXISTS closed_request_bill_lt_100_idx ON Closed_Request (rid, bill) WHERE bill < 100",
+			"ANALYZE Customer",
+			"ANALYZE Owns",
+			"ANALYZE Car",
+			"ANALYZE Service_Request",
+			"ANALYZE Closed_Request"),
+		new Statements(3, "server-side close of service requests",
+			ShopService.CREATE_CLOSE_FUNCTION,
+			ShopService.CREATE_CLOSE_ALL_FUNCTION),
+		new Statements(4, "indexes for paging reports 6 and 8 in key order",
+			"CREATE INDEX IF NOT EXISTS closed_request_bill_lt_100_wid_idx ON Closed_Request (wid, rid, bill) WHERE bill < 100",
+			"CREATE INDEX IF NOT EXISTS service_request_low_odometer_rid_idx ON Service_Request (rid, car_vin, odometer) WHERE odometer < 50000")
+	};
+
+	private final MechanicShop _esql;
+
+	/**
+	 * @param esql the shop whose database is migrated
+	 */
+	public SchemaMigrator(MechanicShop esql){
+		this._esql = esql;
+	}
+
+	/**
+	 * @return the version of the newest step
+	 */
+	public static int latestVersion(){
+		return STEPS[STEPS.length - 1].version;
+	}
+
+	/**
+	 * @return the version recorded in the database, 0 before the first step
+	 * @throws java.sql.SQLException when the version could not be read
+	 */
+	public int currentVersion() throws SQLException {
+		if (this._esql.executeQuery("SELECT 1 FROM pg_class WHERE relkind = 'r' AND relname = 'schema_version'") == 0){
+			return 0;
+		}
+		return this._esql.executeQueryAndReturnResult(
+			"SELECT COALESCE(MAX(version), 0) FROM schema_version").getInt(0, 0);
+	}
+
+	/**
+	 * Applies the steps the database has not seen yet.  The common case, an
+	 * up to date database, costs two queries.
+	 *
+	 * @return the number of steps applied
+	 * @throws java.sql.SQLException when a step failed; it is rolled back
+	 */
+	public int migrate() throws SQLException {
+		if (currentVersion() >= latestVersion()){
+			return 0;
+		}
+		int applied = 0;
+		PooledConnection pc = this._esql.borrow();
+		try (Statement stmt = pc.connection().createStatement()){
+			pc.connection().setAutoCommit(false);
+			// two terminals starting at once would race on creating the table
+			stmt.execute("SELECT pg_advisory_xact_lock(" + LOCK_KEY + ")");
+			stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+				" version INTEGER NOT NULL, description TEXT NOT NULL," +
+				" applied_at TIMESTAMP NOT NULL DEFAULT now(), PRIMARY KEY (version))");
+			pc.connection().commit();
+			for (Step step : STEPS){
+				stmt.execute("SELECT pg_advisory_xact_lock(" + LOCK_KEY + ")");
+				// another terminal may have applied it while this one waited
+				boolean done;
+				try (ResultSet rs = MechanicShop.prepare(pc,
+						"SELECT 1 FROM schema_version WHERE version = ?", step.version).executeQuery()){
+					done = rs.next();
+				}
+				if (done){
+					pc.connection().rollback();
+					continue;
+				}
+				System.out.println("Applying schema version " + step.version + ": " + step.description);
+				step.apply(pc, stmt);
+				MechanicShop.prepare(pc, "INSERT INTO schema_version (version, description) VALUES (?, ?)",
+					step.version, step.description).executeUpdate();
+				pc.connection().commit();
+				++applied;
+			}
+		}finally{
+			// returning the connection rolls back a failed step
+			pc.close();
+		}
+		this._esql.getReportCache().invalidateAll();
+		return applied;
+	}
+}//end SchemaMigrator
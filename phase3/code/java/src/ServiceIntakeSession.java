@@ -0,0 +1,147 @@
+/*
+ * Service request intake
+ * ======================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class holds what one InsertServiceRequest interaction has looked up,
+ * so every fact is fetched once.  The customer is picked from the name index,
+ * the customer's cars come with one joined query, and the chosen car and its
+ * VIN are resolved from those rows in memory.  Opening the request is a
+ * single insert that checks the ownership itself.  With the name in the
+ * index the whole intake is two round trips; roundTrips() counts them.
+ *
+ * A session belongs to one thread and one customer at a time.
+ *
+ */
+
+public class ServiceIntakeSession{
+	//the cars of one customer with what the menu shows about them
+	static final String CARS_OF_CUSTOMER =
+		"SELECT O.ownership_id, C.vin, C.make, C.model, C.year FROM Owns O JOIN Car C ON C.vin = O.car_vin "
+		+ "WHERE O.customer_id = ? ORDER BY O.ownership_id";
+
+	private final MechanicShop _esql;
+	private final ShopBackend _backend;
+	//statements this thread had sent when the session began
+	private final long _statementsBefore;
+	private List<String[]> _customers = new ArrayList<String[]>();
+	private int _customerId = -1;
+	private QueryResult _cars = null;
+	private String _vin = null;
+
+	/**
+	 * @param esql the shop whose database and indexes are used
+	 */
+	public ServiceIntakeSession(MechanicShop esql){
+		this._esql = esql;
+		this._backend = esql.getBackend();
+		this._statementsBefore = esql.getMetrics().statementsSoFar();
+	}
+
+	/**
+	 * @param prefix the beginning of the last name
+	 * @return id, first name and last name of the matching customers
+	 * @throws java.sql.SQLException when the database had to be searched and failed
+	 */
+	public List<String[]> findCustomers(String prefix) throws SQLException {
+		this._customers = this._backend.findCustomers(prefix);
+		return this._customers;
+	}
+
+	/**
+	 * Picks one of the customers the last search found.
+	 *
+	 * @return false when the id was not among them
+	 */
+	public boolean selectCustomer(int id){
+		String key = Integer.toString(id);
+		for (String[] customer : this._customers){
+			if (customer[0].equals(key)){
+				if (id != this._customerId){
+					this._customerId = id;
+					this._cars = null;
+					this._vin = null;
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return ownership id, VIN, make, model and year of the cars of the
+	 * selected customer, queried the first time only
+	 * @throws java.sql.SQLException when the cars could not be read
+	 */
+	public QueryResult cars() throws SQLException {
+		if (this._customerId < 0){
+			throw new IllegalStateException("no customer selected");
+		}
+		if (this._cars == null){
+			this._cars = this._backend.carsOf(this._customerId);
+		}
+		return this._cars;
+	}
+
+	/**
+	 * Picks one of the cars of the customer by its ownership id.
+	 *
+	 * @return false when the customer has no such ownership
+	 * @throws java.sql.SQLException when the cars could not be read
+	 */
+	public boolean selectCar(int ownershipId) throws SQLException {
+		QueryResult cars = cars();
+		for (int i = 0; i < cars.getRowCount(); ++i){
+			if (cars.getInt(i, 0) == ownershipId){
+				this._vin = cars.getString(i, 1).trim();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public int getCustomerId(){
+		return this._customerId;
+	}
+
+	/**
+	 * @return the VIN of the selected car, null before one is selected
+	 */
+	public String getVin(){
+		return this._vin;
+	}
+
+	/**
+	 * Opens a service request for the selected customer and car.
+	 *
+	 * @return the id of the new request
+	 * @throws java.sql.SQLException when the request could not be stored
+	 */
+	public int submit(int odometer, String complain) throws SQLException {
+		if (this._vin == null){
+			throw new IllegalStateException("no car selected");
+		}
+		return this._backend.insertServiceRequest(this._customerId, this._vin, odometer, complain);
+	}
+
+	/**
+	 * @return the statements sent since the session began, including the
+	 * occasional one that reserves a block of request ids
+	 */
+	public long roundTrips(){
+		return this._esql.getMetrics().statementsSoFar() - this._statementsBefore;
+	}
+}//end ServiceIntakeSession
@@ -0,0 +1,87 @@
+/*
+ * Shop backend
+ * ============
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * This interface is what the menu, the intake session and the HTTP service
+ * need from the shop data: the ten operations and the paged reports.
+ * ShopService answers them from the database; MemoryBackend answers them
+ * from tables held in memory.  Invalid input is reported with an
+ * IllegalArgumentException whose message is meant for the user; failures of
+ * the store itself are SQLExceptions.
+ *
+ */
+
+public interface ShopBackend{
+	/**
+	 * @return the id of the new customer
+	 */
+	int addCustomer(String fname, String lname, String phone, String address) throws SQLException;
+
+	/**
+	 * @return the id of the new mechanic
+	 */
+	int addMechanic(String fname, String lname, int experience) throws SQLException;
+
+	void addCar(String vin, String make, String model, int year) throws SQLException;
+
+	/**
+	 * @return id, first name and last name of the customers whose last name starts with prefix
+	 */
+	List<String[]> findCustomers(String prefix) throws SQLException;
+
+	/**
+	 * @return ownership id, VIN, make, model and year of the cars of the customer
+	 */
+	QueryResult carsOf(int customerId) throws SQLException;
+
+	/**
+	 * Opens a service request, dated today, for a car the customer owns.
+	 *
+	 * @return the id of the new request
+	 */
+	int insertServiceRequest(int customerId, String vin, int odometer, String complain) throws SQLException;
+
+	/**
+	 * Closes a service request that is not dated in the future and not closed yet.
+	 *
+	 * @return the id of the new closed request
+	 */
+	int closeServiceRequest(int rid, int mid, String comment, int bill) throws SQLException;
+
+	QueryResult customersWithBillLessThan100() throws SQLException;
+
+	QueryResult customersWithMoreThan20Cars() throws SQLException;
+
+	QueryResult carsBefore1995With50000Miles() throws SQLException;
+
+	/**
+	 * @return make, model and number of requests of the k most serviced cars
+	 */
+	List<String[]> mostServicedCars(int k) throws SQLException;
+
+	QueryResult customersByTotalBill() throws SQLException;
+
+	/**
+	 * One page of a report in the order of its key, the first column.
+	 *
+	 * @param report KeysetPager.BILL_LESS_THAN_100 or KeysetPager.CARS_BEFORE_1995
+	 * @param key the key to seek from, exclusive
+	 * @param forward true for the rows after the key, false for the rows before it
+	 * @param limit the maximum number of rows
+	 * @return the rows, in ascending key order either way
+	 */
+	QueryResult page(KeysetPager.Report report, int key, boolean forward, int limit) throws SQLException;
+}//end ShopBackend
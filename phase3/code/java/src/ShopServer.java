@@ -0,0 +1,310 @@
+/*
+ * HTTP service
+ * ============
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class serves the shop operations over HTTP with the JDK's built-in
+ * server, so several desks and a dashboard can use the same data at once.
+ * Input comes as query or form parameters and every answer is JSON.  Each
+ * request runs on its own thread: a virtual thread when the JVM has them,
+ * otherwise a thread of a fixed pool.  Either way the connection pool bounds
+ * how many requests reach the database at the same time.
+ *
+ *   POST /customers            fname, lname, phone, address  -> {"id":n}
+ *   GET  /customers            lname (a prefix)              -> rows
+ *   POST /mechanics            fname, lname, experience      -> {"id":n}
+ *   POST /cars                 vin, make, model, year        -> {}
+ *   POST /service-requests     customer_id, vin, odometer, complain -> {"rid":n}
+ *   POST /closed-requests      rid, mid, comment, bill       -> {"wid":n}
+ *   GET  /reports/bill-less-than-100
+ *   GET  /reports/more-than-20-cars
+ *   GET  /reports/cars-before-1995
+ *   GET  /reports/most-serviced-cars   k
+ *   GET  /reports/total-bill
+ *
+ * Invalid input answers 400 and a constraint violation, such as a car whose
+ * VIN exists already, answers 409; other database errors answer 500.
+ *
+ */
+
+public class ShopServer{
+	private final MechanicShop _esql;
+	private final ShopBackend _backend;
+	private final HttpServer _server;
+	private final ExecutorService _executor;
+
+	/**
+	 * A request handler that returns the JSON body of a 200 answer.
+	 */
+	interface Handler {
+		String handle(Map<String, String> params) throws SQLException;
+	}
+
+	/**
+	 * @param esql the shop to serve
+	 * @param port the TCP port to listen on
+	 * @param threads the number of request threads when virtual threads are not available
+	 * @throws java.io.IOException when the port could not be bound
+	 */
+	public ShopServer(MechanicShop esql, int port, int threads) throws IOException {
+		this._esql = esql;
+		this._backend = esql.getBackend();
+		this._server = HttpServer.create(new InetSocketAddress(port), 128);
+		this._executor = requestExecutor(threads);
+		this._server.setExecutor(this._executor);
+
+		route("POST", "/customers", "AddCustomer", p -> "{\"id\":" + this._backend.addCustomer(
+			p.get("fname"), p.get("lname"), p.get("phone"), p.get("address")) + "}");
+		route("GET", "/customers", "FindCustomers", p -> rows(MechanicShop.NAME_COLUMNS,
+			new boolean[]{ true, false, false }, this._backend.findCustomers(p.get("lname"))));
+		route("POST", "/mechanics", "AddMechanic", p -> "{\"id\":" + this._backend.addMechanic(
+			p.get("fname"), p.get("lname"), toInt(p, "experience")) + "}");
+		route("POST", "/cars", "AddCar", p -> {
+			this._backend.addCar(p.get("vin"), p.get("make"), p.get("model"), toInt(p, "year"));
+			return "{}";
+		});
+		route("POST", "/service-requests", "InsertServiceRequest", p -> "{\"rid\":" + this._backend.insertServiceRequest(
+			toInt(p, "customer_id"), p.get("vin"), toInt(p, "odometer"), p.get("complain")) + "}");
+		route("POST", "/closed-requests", "CloseServiceRequest", p -> "{\"wid\":" + this._backend.closeServiceRequest(
+			toInt(p, "rid"), toInt(p, "mid"), p.get("comment"), toInt(p, "bill")) + "}");
+		route("GET", "/reports/bill-less-than-100", "ListCustomersWithBillLessThan100",
+			p -> rows(this._backend.customersWithBillLessThan100()));
+		route("GET", "/reports/more-than-20-cars", "ListCustomersWithMoreThan20Cars",
+			p -> rows(this._backend.customersWithMoreThan20Cars()));
+		route("GET", "/reports/cars-before-1995", "ListCarsBefore1995With50000Milles",
+			p -> rows(this._backend.carsBefore1995With50000Miles()));
+		route("GET", "/reports/most-serviced-cars", "ListKCarsWithTheMostServices",
+			p -> rows(TopCarTracker.COLUMNS, new boolean[]{ false, false, true }, this._backend.mostServicedCars(toInt(p, "k"))));
+		route("GET", "/reports/total-bill", "ListCustomersInDescendingOrderOfTheirTotalBill",
+			p -> rows(this._backend.customersByTotalBill()));
+	}
+
+	/**
+	 * Uses Executors.newVirtualThreadPerTaskExecutor when the JVM provides
+	 * it; looked up by reflection so the code also compiles for older JDKs.
+	 */
+	static ExecutorService requestExecutor(int threads){
+		try{
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}catch (ReflectiveOperationException e){
+			AtomicInteger count = new AtomicInteger();
+			return Executors.newFixedThreadPool(threads, r -> {
+				Thread t = new Thread(r, "http-" + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			});
+		}
+	}
+
+	public void start(){
+		this._server.start();
+	}
+
+	/**
+	 * Stops accepting requests and waits up to a few seconds for the running ones.
+	 */
+	public void stop(){
+		this._server.stop(1);
+		this._executor.shutdown();
+		try{
+			this._executor.awaitTermination(5, TimeUnit.SECONDS);
+		}catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void route(String method, String path, String operation, Handler handler){
+		this._server.createContext(path, exchange -> {
+			long start = System.nanoTime();
+			boolean failed = true;
+			int status;
+			String body;
+			try{
+				if (!exchange.getRequestURI().getPath().equals(path)){
+					status = 404;
+					body = error("no such resource");
+				}else if (!exchange.getRequestMethod().equals(method)){
+					exchange.getResponseHeaders().set("Allow", method);
+					status = 405;
+					body = error("use " + method);
+				}else{
+					body = handler.handle(params(exchange));
+					status = 200;
+					failed = false;
+				}
+			}catch (IllegalArgumentException e){
+				status = 400;
+				body = error(e.getMessage());
+			}catch (SQLException e){
+				// class 23: the request conflicts with the stored data, e.g. a duplicate key
+				String state = e.getSQLState();
+				status = state != null && state.startsWith("23") ? 409 : 500;
+				body = error(e.getMessage());
+			}catch (RuntimeException e){
+				status = 500;
+				body = error(String.valueOf(e));
+			}
+			byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+			exchange.sendResponseHeaders(status, bytes.length);
+			try (OutputStream out = exchange.getResponseBody()){
+				out.write(bytes);
+			}
+			this._esql.getMetrics().recordOperation("http " + operation, System.nanoTime() - start, 0, failed);
+		});
+	}
+
+	/**
+	 * @return the query parameters and, for a form post, the form fields
+	 */
+	static Map<String, String> params(HttpExchange exchange) throws IOException {
+		Map<String, String> params = new HashMap<String, String>();
+		parse(exchange.getRequestURI().getRawQuery(), params);
+		String type = exchange.getRequestHeaders().getFirst("Content-Type");
+		if (type != null && type.startsWith("application/x-www-form-urlencoded")){
+			try (InputStream in = exchange.getRequestBody()){
+				ByteArrayOutputStream body = new ByteArrayOutputStream();
+				byte[] buffer = new byte[4096];
+				int n;
+				while ((n = in.read(buffer)) > 0){
+					body.write(buffer, 0, n);
+				}
+				parse(new String(body.toByteArray(), StandardCharsets.UTF_8), params);
+			}
+		}
+		return params;
+	}
+
+	private static void parse(String query, Map<String, String> params){
+		if (query == null || query.isEmpty()){
+			return;
+		}
+		for (String pair : query.split("&")){
+			int eq = pair.indexOf('=');
+			String key = eq < 0 ? pair : pair.substring(0, eq);
+			String value = eq < 0 ? "" : pair.substring(eq + 1);
+			params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+		}
+	}
+
+	static int toInt(Map<String, String> params, String name){
+		String value = params.get(name);
+		if (value == null){
+			throw new IllegalArgumentException("missing parameter " + name);
+		}
+		try{
+			return Integer.parseInt(value.trim());
+		}catch (NumberFormatException e){
+			throw new IllegalArgumentException(name + " must be a whole number");
+		}
+	}
+
+	/**
+	 * @return {"columns":[...],"rows":[[...],...]} with the numeric columns unquoted
+	 */
+	static String rows(QueryResult result){
+		StringBuilder json = new StringBuilder("{\"columns\":[");
+		for (int c = 0; c < result.getColumnCount(); ++c){
+			if (c > 0) json.append(',');
+			quote(json, result.getColumnName(c));
+		}
+		json.append("],\"rows\":[");
+		for (int r = 0; r < result.getRowCount(); ++r){
+			json.append(r > 0 ? ",[" : "[");
+			for (int c = 0; c < result.getColumnCount(); ++c){
+				if (c > 0) json.append(',');
+				value(json, result.getString(r, c), result.isNumeric(c));
+			}
+			json.append(']');
+		}
+		return json.append("]}").toString();
+	}
+
+	/**
+	 * @param numeric the columns written as JSON numbers
+	 */
+	static String rows(String[] columns, boolean[] numeric, List<String[]> rows){
+		StringBuilder json = new StringBuilder("{\"columns\":[");
+		for (int c = 0; c < columns.length; ++c){
+			if (c > 0) json.append(',');
+			quote(json, columns[c]);
+		}
+		json.append("],\"rows\":[");
+		for (int r = 0; r < rows.size(); ++r){
+			json.append(r > 0 ? ",[" : "[");
+			String[] row = rows.get(r);
+			for (int c = 0; c < row.length; ++c){
+				if (c > 0) json.append(',');
+				value(json, row[c], numeric[c]);
+			}
+			json.append(']');
+		}
+		return json.append("]}").toString();
+	}
+
+	private static void value(StringBuilder json, String value, boolean numeric){
+		if (value == null){
+			json.append("null");
+		}else if (numeric){
+			json.append(value);
+		}else{
+			// CHAR columns come padded with blanks
+			quote(json, value.trim());
+		}
+	}
+
+	static String error(String message){
+		StringBuilder json = new StringBuilder("{\"error\":");
+		quote(json, message == null ? "" : message);
+		return json.append('}').toString();
+	}
+
+	static void quote(StringBuilder json, String value){
+		json.append('"');
+		for (int i = 0; i < value.length(); ++i){
+			char ch = value.charAt(i);
+			switch (ch){
+				case '"': json.append("\\\""); break;
+				case '\\': json.append("\\\\"); break;
+				case '\n': json.append("\\n"); break;
+				case '\r': json.append("\\r"); break;
+				case '\t': json.append("\\t"); break;
+				default:
+					if (ch < 0x20){
+						json.append(String.format("\\u%04x", (int) ch));
+					}else{
+						json.append(ch);
+					}
+			}
+		}
+		json.append('"');
+	}
+}//end ShopServer
@@ -0,0 +1,381 @@
+/*
+ * Shop operations
+ * ===============
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * This class holds the ten shop operations without any console input or
+ * output, so the menu and the HTTP service run the same checks and
+ * statements.  It is the database backend; the checks of the input are
+ * static so MemoryBackend runs them too.  Invalid input is reported with an
+ * IllegalArgumentException whose message is meant for the user; database
+ * failures are passed on as SQLException.  All methods may be called from
+ * several threads.  With mechanicshop.groupCommit set the inserts go through
+ * the GroupCommitWriter, and the Async variants return before the commit.
+ *
+ */
+
+public class ShopService implements ShopBackend{
+	//status codes of close_service_request, indexes into CLOSE_MESSAGES
+	public static final int CLOSED = 0;
+	public static final int NO_MECHANIC = 1;
+	public static final int NO_REQUEST = 2;
+	public static final int FUTURE_REQUEST = 3;
+	public static final int ALREADY_CLOSED = 4;
+	public static final int INVALID_BILL = 5;
+
+	static final String[] CLOSE_MESSAGES = {
+		"Closed.",
+		"Invalid mechanic ID. Does not exist.",
+		"Invalid service request ID. Does not exist.",
+		"Invalid or out of date request date.",
+		"Service request is already closed.",
+		"Bill must be a positive amount." };
+
+	//a service request for a car the customer does not own
+	static final String NOT_OWNED = "Invalid car selection. The customer does not own this car.";
+
+	//validates and closes one request; the request row stays locked until
+	//the transaction ends, so two closes of the same request cannot both pass
+	static final String CREATE_CLOSE_FUNCTION =
+		"CREATE OR REPLACE FUNCTION close_service_request(p_wid INTEGER, p_rid INTEGER, p_mid INTEGER, p_comment TEXT, p_bill INTEGER)\n" +
+		" RETURNS INTEGER AS\n" +
+		" $BODY$\n" +
+		" DECLARE\n" +
+		"   request_date DATE;\n" +
+		" BEGIN\n" +
+		"   IF p_bill IS NULL OR p_bill <= 0 THEN\n" +
+		"     RETURN " + INVALID_BILL + ";\n" +
+		"   END IF;\n" +
+		"   PERFORM 1 FROM Mechanic M WHERE M.id = p_mid FOR KEY SHARE;\n" +
+		"   IF NOT FOUND THEN\n" +
+		"     RETURN " + NO_MECHANIC + ";\n" +
+		"   END IF;\n" +
+		"   SELECT S.date INTO request_date FROM Service_Request S WHERE S.rid = p_rid FOR UPDATE;\n" +
+		"   IF NOT FOUND THEN\n" +
+		"     RETURN " + NO_REQUEST + ";\n" +
+		"   END IF;\n" +
+		"   IF request_date > CURRENT_DATE THEN\n" +
+		"     RETURN " + FUTURE_REQUEST + ";\n" +
+		"   END IF;\n" +
+		"   PERFORM 1 FROM Closed_Request C WHERE C.rid = p_rid;\n" +
+		"   IF FOUND THEN\n" +
+		"     RETURN " + ALREADY_CLOSED + ";\n" +
+		"   END IF;\n" +
+		"   INSERT INTO Closed_Request(wid, rid, mid, date, comment, bill)\n" +
+		"     VALUES (p_wid, p_rid, p_mid, CURRENT_DATE, p_comment, p_bill);\n" +
+		"   RETURN " + CLOSED + ";\n" +
+		" END;\n" +
+		" $BODY$\n" +
+		" LANGUAGE plpgsql VOLATILE";
+
+	//closes the requests given as parallel arrays, returning the status of each
+	static final String CREATE_CLOSE_ALL_FUNCTION =
+		"CREATE OR REPLACE FUNCTION close_service_requests(p_wids INTEGER[], p_rids INTEGER[], p_mids INTEGER[], p_comments TEXT[], p_bills INTEGER[])\n" +
+		" RETURNS INTEGER[] AS\n" +
+		" $BODY$\n" +
+		" DECLARE\n" +
+		"   statuses INTEGER[] := '{}';\n" +
+		" BEGIN\n" +
+		"   FOR i IN 1 .. COALESCE(array_length(p_rids, 1), 0) LOOP\n" +
+		"     statuses := statuses || close_service_request(p_wids[i], p_rids[i], p_mids[i], p_comments[i], p_bills[i]);\n" +
+		"   END LOOP;\n" +
+		"   RETURN statuses;\n" +
+		" END;\n" +
+		" $BODY$\n" +
+		" LANGUAGE plpgsql VOLATILE";
+
+	static final String CLOSE_SERVICE_REQUEST = "SELECT close_service_request(?, ?, ?, ?, ?)";
+	static final String CLOSE_SERVICE_REQUESTS = "SELECT close_service_requests(?, ?, ?, ?, ?)";
+
+	private final MechanicShop _esql;
+
+	/**
+	 * @param esql the shop whose database and in-memory indexes are used
+	 */
+	public ShopService(MechanicShop esql){
+		this._esql = esql;
+	}
+
+	/**
+	 * Checks a required text field.
+	 *
+	 * @param field the name of the field used in the message, e.g. "First name"
+	 * @param value the value entered
+	 * @param max the maximum length
+	 * @return the value
+	 * @throws java.lang.IllegalArgumentException when the value is empty or too long
+	 */
+	public static String requireText(String field, String value, int max){
+		if (value == null || value.length() <= 0){
+			throw new IllegalArgumentException(field + " cannot be null.");
+		}
+		if (value.length() > max){
+			throw new IllegalArgumentException(field + " cannot exceed " + max + " characters.");
+		}
+		return value;
+	}
+
+	/**
+	 * The checks of the menu operations, before anything is stored.
+	 *
+	 * @throws java.lang.IllegalArgumentException when a value is not accepted
+	 */
+	public static void checkCustomer(String fname, String lname, String phone){
+		requireText("First name", fname, 32);
+		requireText("Last name", lname, 32);
+		requireText("Phone number", phone, 10);
+	}
+
+	public static void checkMechanic(String fname, String lname, int experience){
+		requireText("First name", fname, 32);
+		requireText("Last name", lname, 32);
+		if (experience < 0){
+			throw new IllegalArgumentException("Years of experience cannot be a negative number.");
+		}
+	}
+
+	public static void checkCar(String vin, String make, String model, int year){
+		if (vin == null || vin.length() == 0 || vin.length() > 16){
+			throw new IllegalArgumentException("Invalid VIN, can't be null and must be less than 16 characters.");
+		}
+		requireText("Make", make, 32);
+		requireText("Model", model, 32);
+		if (year < 1900 || year > 2020){
+			throw new IllegalArgumentException("Invalid input. Must be a valid year.");
+		}
+	}
+
+	public static void checkServiceRequest(int odometer, String complain){
+		if (odometer <= 0){
+			throw new IllegalArgumentException("Odometer can't be null.");
+		}
+		if (complain != null && complain.length() >= 10000){
+			throw new IllegalArgumentException("Too long.");
+		}
+	}
+
+	public static void checkTopK(int k){
+		if (k < 0){
+			throw new IllegalArgumentException("K cannot be negative.");
+		}
+	}
+
+	/**
+	 * @return the id of the new customer
+	 */
+	public int addCustomer(String fname, String lname, String phone, String address) throws SQLException {
+		return await(addCustomerAsync(fname, lname, phone, address));
+	}
+
+	/**
+	 * Like addCustomer, without waiting for the commit when group commit is on.
+	 *
+	 * @return the id of the new customer, once it is committed
+	 * @throws java.lang.IllegalArgumentException when the input is not accepted
+	 */
+	public CompletableFuture<Integer> addCustomerAsync(String fname, String lname, String phone, String address)
+		throws SQLException {
+		checkCustomer(fname, lname, phone);
+		int id = this._esql.getCustomerIds().nextId();
+		return write(MechanicShop.INSERT_CUSTOMER, id, fname, lname, phone, address == null ? "" : address).thenApply(n -> {
+			this._esql.getCustomerNames().add(id, fname, lname);
+			return id;
+		});
+	}
+
+	/**
+	 * @return the id of the new mechanic
+	 */
+	public int addMechanic(String fname, String lname, int experience) throws SQLException {
+		return await(addMechanicAsync(fname, lname, experience));
+	}
+
+	public CompletableFuture<Integer> addMechanicAsync(String fname, String lname, int experience) throws SQLException {
+		checkMechanic(fname, lname, experience);
+		int id = this._esql.getMechanicIds().nextId();
+		return write(MechanicShop.INSERT_MECHANIC, id, fname, lname, experience).thenApply(n -> id);
+	}
+
+	public void addCar(String vin, String make, String model, int year) throws SQLException {
+		await(addCarAsync(vin, make, model, year));
+	}
+
+	public CompletableFuture<Void> addCarAsync(String vin, String make, String model, int year) throws SQLException {
+		checkCar(vin, make, model, year);
+		return write(MechanicShop.INSERT_CAR, vin, make, model, year).thenAccept(n ->
+			this._esql.getTopCars().carAdded(vin, make, model));
+	}
+
+	/**
+	 * Opens a service request, dated today, for a car the customer owns.  The
+	 * ownership is checked by the insert itself, so this is one round trip.
+	 *
+	 * @return the id of the new request
+	 */
+	public int insertServiceRequest(int customerId, String vin, int odometer, String complain) throws SQLException {
+		return await(insertServiceRequestAsync(customerId, vin, odometer, complain));
+	}
+
+	/**
+	 * @return the id of the new request, once it is committed; fails with an
+	 * IllegalArgumentException when the customer does not own the car
+	 */
+	public CompletableFuture<Integer> insertServiceRequestAsync(int customerId, String vin, int odometer, String complain)
+		throws SQLException {
+		checkServiceRequest(odometer, complain);
+		int rid = this._esql.getRequestIds().nextId();
+		CompletableFuture<Integer> written = write(MechanicShop.INSERT_OWNED_SERVICE_REQUEST, rid, odometer, complain, customerId, vin);
+		Function<Integer, Integer> counted = n -> {
+			if (n == 0){
+				throw new IllegalArgumentException(NOT_OWNED);
+			}
+			try{
+				this._esql.getTopCars().requestAdded(vin, rid);
+			}catch (SQLException e){
+				throw new CompletionException(e);
+			}
+			return rid;
+		};
+		// a car the ranking has not seen is read from the database: off the writer thread with
+		// group commit, on the caller in auto-commit so its statement metrics count the read
+		return this._esql.getWriter() == null ? written.thenApply(counted) : written.thenApplyAsync(counted);
+	}
+
+	/**
+	 * Sends an insert through the group commit writer, or runs it in
+	 * auto-commit when there is none.
+	 */
+	private CompletableFuture<Integer> write(String sql, Object... params) throws SQLException {
+		GroupCommitWriter writer = this._esql.getWriter();
+		if (writer != null){
+			return writer.submit(sql, params);
+		}
+		return CompletableFuture.completedFuture(this._esql.executeUpdate(sql, params));
+	}
+
+	/**
+	 * Waits for a write and throws what it failed with.
+	 */
+	static <T> T await(CompletableFuture<T> future) throws SQLException {
+		try{
+			return future.join();
+		}catch (CompletionException e){
+			Throwable cause = e.getCause();
+			if (cause instanceof SQLException) throw (SQLException) cause;
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			throw new SQLException(cause);
+		}
+	}
+
+	/**
+	 * Closes a service request that is not dated in the future and not
+	 * closed yet.  Validation and insert are one call of close_service_request,
+	 * so they take one round trip and no other close can come in between.
+	 *
+	 * @return the id of the new closed request
+	 */
+	public int closeServiceRequest(int rid, int mid, String comment, int bill) throws SQLException {
+		if (bill <= 0){
+			throw new IllegalArgumentException(CLOSE_MESSAGES[INVALID_BILL]);
+		}
+		int wid = this._esql.getClosedRequestIds().nextId();
+		int status = this._esql.executeQueryAndReturnResult(CLOSE_SERVICE_REQUEST, wid, rid, mid, comment, bill).getInt(0, 0);
+		if (status != CLOSED){
+			throw new IllegalArgumentException(CLOSE_MESSAGES[status]);
+		}
+		this._esql.getReportCache().invalidate("closed_request");
+		return wid;
+	}
+
+	/**
+	 * Closes many service requests with one call of close_service_requests,
+	 * in the transaction of the connection.  Requests that cannot be closed
+	 * are skipped and reported by their status.
+	 *
+	 * @param pc the connection to use
+	 * @param wids the id of each new closed request
+	 * @return the status of each request, CLOSED or the reason it was skipped
+	 * @throws java.sql.SQLException when the call failed; nothing was closed
+	 */
+	public static int[] closeServiceRequests(PooledConnection pc, int[] wids, int[] rids, int[] mids, String[] comments, int[] bills)
+		throws SQLException {
+		Connection c = pc.connection();
+		try (ResultSet rs = MechanicShop.prepare(pc, CLOSE_SERVICE_REQUESTS,
+				c.createArrayOf("integer", boxed(wids)), c.createArrayOf("integer", boxed(rids)),
+				c.createArrayOf("integer", boxed(mids)), c.createArrayOf("text", comments),
+				c.createArrayOf("integer", boxed(bills))).executeQuery()){
+			rs.next();
+			Integer[] codes = (Integer[]) rs.getArray(1).getArray();
+			int[] statuses = new int[codes.length];
+			for (int i = 0; i < codes.length; ++i){
+				statuses[i] = codes[i];
+			}
+			return statuses;
+		}
+	}
+
+	private static Integer[] boxed(int[] values){
+		Integer[] boxed = new Integer[values.length];
+		for (int i = 0; i < values.length; ++i){
+			boxed[i] = values[i];
+		}
+		return boxed;
+	}
+
+	/**
+	 * @return id, first name and last name of the customers whose last name starts with prefix
+	 */
+	public List<String[]> findCustomers(String prefix) throws SQLException {
+		requireText("Last name", prefix, 32);
+		return this._esql.getCustomerNames().find(prefix, MechanicShop.NAME_MATCHES);
+	}
+
+	public QueryResult carsOf(int customerId) throws SQLException {
+		return this._esql.executeQueryAndReturnResult(ServiceIntakeSession.CARS_OF_CUSTOMER, customerId);
+	}
+
+	public QueryResult customersWithBillLessThan100() throws SQLException {
+		return this._esql.executeCachedQuery(MechanicShop.REPORT_BILL_LESS_THAN_100_TABLES, MechanicShop.REPORT_BILL_LESS_THAN_100);
+	}
+
+	public QueryResult customersWithMoreThan20Cars() throws SQLException {
+		return this._esql.executeCachedQuery(MechanicShop.REPORT_MORE_THAN_20_CARS_TABLES, MechanicShop.REPORT_MORE_THAN_20_CARS);
+	}
+
+	public QueryResult carsBefore1995With50000Miles() throws SQLException {
+		return this._esql.executeCachedQuery(MechanicShop.REPORT_CARS_BEFORE_1995_TABLES, MechanicShop.REPORT_CARS_BEFORE_1995);
+	}
+
+	/**
+	 * @return make, model and number of requests of the k most serviced cars
+	 */
+	public List<String[]> mostServicedCars(int k){
+		checkTopK(k);
+		return this._esql.getTopCars().top(k);
+	}
+
+	public QueryResult customersByTotalBill() throws SQLException {
+		return this._esql.executeCachedQuery(MechanicShop.REPORT_TOTAL_BILL_TABLES, MechanicShop.REPORT_TOTAL_BILL);
+	}
+
+	public QueryResult page(KeysetPager.Report report, int key, boolean forward, int limit) throws SQLException {
+		return this._esql.executeQueryAndReturnResult(forward ? report.forward : report.backward, key, limit);
+	}
+}//end ShopService
@@ -0,0 +1,345 @@
+/*
+ * Slow query log
+ * ==============
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * This class logs the statements that take longer than a threshold to a
+ * file, with their parameters, duration and row count.  The file is rotated
+ * when it grows past maxBytes: the current file becomes file.1, file.1
+ * becomes file.2 and so on, and the oldest is dropped.
+ *
+ * The first time a statement shape (its text with the literals taken out)
+ * is slow, its plan is captured and written to the log below it.  The
+ * capture runs on a thread of its own, on its own connection outside the
+ * pool, so the session that ran the statement never waits for it and never
+ * runs short of connections.  Only a plain SELECT is run again, with
+ * EXPLAIN (ANALYZE, BUFFERS) in a read-only transaction; writes, locking
+ * reads and calls of functions that write get a plain EXPLAIN, which plans
+ * without running.  A re-run write would fail on the id its original
+ * already committed, draw sequence values for good and hold row locks the
+ * user's sessions wait for.  The capture transaction gives up on any lock
+ * after LOCK_TIMEOUT_MS and is always rolled back.  Captures that find the
+ * queue full are dropped and counted.
+ *
+ */
+
+public class SlowQueryLog{
+	//the statements EXPLAIN can run; others are logged without a plan
+	static final Pattern EXPLAINABLE = Pattern.compile("^\\s*(SELECT|INSERT|UPDATE|DELETE|WITH|VALUES)\\b",
+		Pattern.CASE_INSENSITIVE);
+	//a SELECT that may be run again under EXPLAIN ANALYZE, unless it locks rows or calls a writing function
+	static final Pattern PLAIN_SELECT = Pattern.compile("^\\s*SELECT\\b", Pattern.CASE_INSENSITIVE);
+	static final Pattern WRITES = Pattern.compile(
+		"\\bFOR\\s+(UPDATE|SHARE|NO\\s+KEY\\s+UPDATE|KEY\\s+SHARE)\\b|\\b(nextval|setval|close_service_request|pg_advisory\\w*)\\s*\\(",
+		Pattern.CASE_INSENSITIVE);
+	//longest a capture waits for a lock before it gives up
+	static final long LOCK_TIMEOUT_MS = 100;
+	//SQLSTATE of a write attempted in a read-only transaction
+	static final String READ_ONLY_TRANSACTION = "25006";
+	static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+	static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+	static final Pattern SPACE = Pattern.compile("\\s+");
+	//most shapes remembered, so a stream of distinct spliced texts cannot grow the set forever
+	static final int MAX_SHAPES = 10000;
+	//longest parameter value written to the log
+	static final int MAX_PARAM = 200;
+
+	private final String _url;
+	private final Properties _props;
+	private final long _thresholdNanos;
+	private final File _file;
+	private final long _maxBytes;
+	private final int _files;
+	private final int _explainTimeoutSeconds;
+	private final Set<String> _explained = ConcurrentHashMap.newKeySet();
+	private final ThreadPoolExecutor _explainer;
+	//used by the explain thread only
+	private Connection _conn = null;
+	//guarded by this
+	private OutputStream _out = null;
+	private long _bytes = 0;
+	private long _logged = 0;
+	private long _plans = 0;
+	private long _dropped = 0;
+	private long _planFailures = 0;
+
+	/**
+	 * @param url the JDBC URL of the database, for the plan connection
+	 * @param props the connection properties
+	 * @param thresholdMs the duration from which a statement is logged
+	 * @param file the log file
+	 * @param maxBytes the size at which the log is rotated
+	 * @param files the number of rotated files kept besides the current one
+	 * @param explain true to capture the plan of each slow statement shape
+	 * @param explainTimeoutMs how long a plan capture may run
+	 */
+	public SlowQueryLog(String url, Properties props, long thresholdMs, File file, long maxBytes, int files,
+		boolean explain, long explainTimeoutMs){
+		this._url = url;
+		this._props = props;
+		this._thresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, thresholdMs));
+		this._file = file;
+		this._maxBytes = Math.max(1024, maxBytes);
+		this._files = Math.max(0, files);
+		this._explainTimeoutSeconds = (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(explainTimeoutMs));
+		if (explain){
+			this._explainer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(16), r -> {
+				Thread t = new Thread(r, "slow-query-explain");
+				t.setDaemon(true);
+				return t;
+			});
+		}else{
+			this._explainer = null;
+		}
+	}
+
+	/**
+	 * Logs a statement if it took at least the threshold.  Below the
+	 * threshold this is a single comparison.
+	 *
+	 * @param sql the statement text
+	 * @param params the values bound to its placeholders
+	 * @param nanos the time it took
+	 * @param rows the rows it returned or changed
+	 * @param failed true if it threw
+	 */
+	public void record(String sql, Object[] params, long nanos, long rows, boolean failed){
+		if (nanos < this._thresholdNanos){
+			return;
+		}
+		StringBuilder line = new StringBuilder(256);
+		line.append(Instant.now()).append(String.format(Locale.ROOT, " %.3f ms rows=%d", nanos / 1e6, rows));
+		if (failed) line.append(" failed");
+		line.append(" sql=").append(SPACE.matcher(sql).replaceAll(" ").trim());
+		line.append(" params=").append(format(params)).append('\n');
+		write(line.toString(), true);
+
+		if (this._explainer == null || failed || !EXPLAINABLE.matcher(sql).find()) return;
+		String shape = shape(sql);
+		if (this._explained.size() >= MAX_SHAPES || !this._explained.add(shape)) return;
+		Object[] copy = params == null ? new Object[0] : params.clone();
+		try{
+			this._explainer.execute(() -> explain(shape, sql, copy));
+		}catch (RejectedExecutionException e){
+			// seen again later, the shape gets another chance
+			this._explained.remove(shape);
+			synchronized (this){
+				++this._dropped;
+			}
+		}
+	}
+
+	/**
+	 * @return the statement text with its string and number literals
+	 * replaced by ? and its white space collapsed
+	 */
+	static String shape(String sql){
+		String s = STRING_LITERAL.matcher(sql).replaceAll("?");
+		s = NUMBER_LITERAL.matcher(s).replaceAll("?");
+		return SPACE.matcher(s).replaceAll(" ").trim();
+	}
+
+	static String format(Object[] params){
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; params != null && i < params.length; ++i){
+			if (i > 0) sb.append(", ");
+			Object p = params[i];
+			if (p == null){
+				sb.append("NULL");
+			}else if (p instanceof Number || p instanceof Boolean){
+				sb.append(p);
+			}else{
+				String s = p.toString();
+				if (s.length() > MAX_PARAM) s = s.substring(0, MAX_PARAM) + "...";
+				sb.append('\'').append(s.replace("'", "''").replace('\n', ' ').replace('\r', ' ')).append('\'');
+			}
+		}
+		return sb.append(']').toString();
+	}
+
+	/**
+	 * Captures the plan of a statement and writes it to the log.  Runs on
+	 * the explain thread.
+	 */
+	private void explain(String shape, String sql, Object[] params){
+		boolean analyze = PLAIN_SELECT.matcher(sql).find() && !WRITES.matcher(sql).find();
+		List<String> plan;
+		try{
+			if (this._conn == null || !this._conn.isValid(1)){
+				if (this._conn != null) close(this._conn);
+				this._conn = DriverManager.getConnection(this._url, this._props);
+				this._conn.setAutoCommit(false);
+			}
+			try{
+				plan = plan(sql, params, analyze);
+			}catch (SQLException e){
+				// a function the patterns do not know tried to write
+				if (!analyze || !READ_ONLY_TRANSACTION.equals(e.getSQLState())) throw e;
+				analyze = false;
+				plan = plan(sql, params, false);
+			}
+		}catch (SQLException e){
+			synchronized (this){
+				++this._planFailures;
+			}
+			write(Instant.now() + " plan of " + shape + " failed: " + e.getMessage() + "\n", false);
+			return;
+		}
+		StringBuilder sb = new StringBuilder(1024);
+		sb.append(Instant.now()).append(analyze ? " analyzed plan of " : " plan of ").append(shape).append('\n');
+		for (String line : plan){
+			sb.append("    ").append(line).append('\n');
+		}
+		write(sb.toString(), false);
+		synchronized (this){
+			++this._plans;
+		}
+	}
+
+	/**
+	 * Runs EXPLAIN, with ANALYZE in a read-only transaction when analyze is
+	 * set, and rolls the transaction back.
+	 */
+	private List<String> plan(String sql, Object[] params, boolean analyze) throws SQLException {
+		List<String> plan = new ArrayList<String>();
+		try{
+			try (Statement setup = this._conn.createStatement()){
+				if (analyze) setup.execute("SET TRANSACTION READ ONLY");
+				setup.execute("SET LOCAL lock_timeout = " + LOCK_TIMEOUT_MS);
+			}
+			try (PreparedStatement stmt = this._conn.prepareStatement((analyze ? "EXPLAIN (ANALYZE, BUFFERS) " : "EXPLAIN ") + sql)){
+				stmt.setQueryTimeout(this._explainTimeoutSeconds);
+				for (int i = 0; i < params.length; ++i){
+					if (params[i] == null)
+						stmt.setNull(i + 1, Types.NULL);
+					else
+						stmt.setObject(i + 1, params[i]);
+				}
+				try (ResultSet rs = stmt.executeQuery()){
+					while (rs.next()){
+						plan.add(rs.getString(1));
+					}
+				}
+			}
+		}finally{
+			this._conn.rollback();
+		}
+		return plan;
+	}
+
+	/**
+	 * Appends text to the log, rotating it first when it is full.
+	 */
+	private synchronized void write(String text, boolean statement){
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		try{
+			if (this._out != null && this._bytes + bytes.length > this._maxBytes){
+				rotate();
+			}
+			if (this._out == null){
+				this._out = new FileOutputStream(this._file, true);
+				this._bytes = this._file.length();
+			}
+			this._out.write(bytes);
+			this._out.flush();
+			this._bytes += bytes.length;
+			if (statement) ++this._logged;
+		}catch (IOException e){
+			// the log must never fail the statement it describes
+			System.err.println("Slow query log: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Shifts file.n to file.n+1, dropping the oldest, and starts a new file.
+	 */
+	private void rotate() throws IOException {
+		this._out.close();
+		this._out = null;
+		if (this._files == 0){
+			this._file.delete();
+			return;
+		}
+		new File(this._file.getPath() + "." + this._files).delete();
+		for (int i = this._files - 1; i >= 1; --i){
+			File from = new File(this._file.getPath() + "." + i);
+			if (from.exists()) from.renameTo(new File(this._file.getPath() + "." + (i + 1)));
+		}
+		this._file.renameTo(new File(this._file.getPath() + ".1"));
+	}
+
+	private static void close(Connection conn){
+		try{
+			conn.close();
+		}catch (SQLException ignored){
+			// it is dropped either way
+		}
+	}
+
+	/**
+	 * Waits for the queued plan captures, then closes the plan connection
+	 * and the file.
+	 */
+	public void close(){
+		if (this._explainer != null){
+			this._explainer.shutdown();
+			try{
+				this._explainer.awaitTermination(this._explainTimeoutSeconds, TimeUnit.SECONDS);
+			}catch (InterruptedException e){
+				Thread.currentThread().interrupt();
+			}
+			if (this._conn != null) close(this._conn);
+		}
+		synchronized (this){
+			try{
+				if (this._out != null) this._out.close();
+			}catch (IOException ignored){
+				// nothing is lost, every line was flushed
+			}
+			this._out = null;
+		}
+	}
+
+	/**
+	 * @return the statements logged and the plans captured, failed and dropped
+	 */
+	public synchronized String stats(){
+		return String.format(Locale.ROOT, "thresholdMs=%d logged=%d plans=%d planFailures=%d dropped=%d file=%s",
+			TimeUnit.NANOSECONDS.toMillis(this._thresholdNanos), this._logged, this._plans, this._planFailures,
+			this._dropped, this._file);
+	}
+}//end SlowQueryLog
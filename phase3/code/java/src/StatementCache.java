@@ -0,0 +1,116 @@
+/*
+ * Prepared statement cache
+ * ========================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class keeps the PreparedStatements of one connection so that the same
+ * SQL text is parsed and planned once instead of on every call.  The least
+ * recently used statement is closed when the cache is full.  Statements
+ * returned by prepare belong to the cache and must not be closed by callers.
+ *
+ */
+
+public class StatementCache{
+	private final Connection _connection;
+	private final int _capacity;
+	private final LinkedHashMap<String, PreparedStatement> _statements;
+	private long _hits = 0;
+	private long _misses = 0;
+	private long _evictions = 0;
+
+	/**
+	 * @param connection the connection the statements are prepared on
+	 * @param capacity the maximum number of statements kept open
+	 */
+	public StatementCache(Connection connection, int capacity){
+		this._connection = connection;
+		this._capacity = capacity;
+		this._statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true);
+	}
+
+	/**
+	 * Returns the cached statement for the SQL text, preparing it on a miss.
+	 *
+	 * @param sql the SQL text with ? placeholders
+	 * @return an open statement owned by the cache
+	 * @throws java.sql.SQLException when the statement could not be prepared
+	 */
+	public synchronized PreparedStatement prepare(String sql) throws SQLException {
+		PreparedStatement stmt = this._statements.get(sql);
+		if (stmt != null && !stmt.isClosed()){
+			++this._hits;
+			return stmt;
+		}
+		++this._misses;
+		stmt = this._connection.prepareStatement(sql);
+		this._statements.put(sql, stmt);
+		if (this._statements.size() > this._capacity){
+			Iterator<Map.Entry<String, PreparedStatement>> it = this._statements.entrySet().iterator();
+			PreparedStatement eldest = it.next().getValue();
+			it.remove();
+			++this._evictions;
+			try{
+				eldest.close();
+			}catch (SQLException e){
+				// ignored.
+			}
+		}
+		return stmt;
+	}
+
+	public synchronized long getHits(){
+		return this._hits;
+	}
+
+	public synchronized long getMisses(){
+		return this._misses;
+	}
+
+	public synchronized long getEvictions(){
+		return this._evictions;
+	}
+
+	public synchronized int size(){
+		return this._statements.size();
+	}
+
+	/**
+	 * @return a one line summary of the cache counters
+	 */
+	public synchronized String stats(){
+		long lookups = this._hits + this._misses;
+		double ratio = lookups == 0 ? 0.0 : (100.0 * this._hits) / lookups;
+		return String.format("statements=%d/%d hits=%d misses=%d evictions=%d hit-ratio=%.1f%%",
+			this._statements.size(), this._capacity, this._hits, this._misses, this._evictions, ratio);
+	}
+
+	/**
+	 * Closes every cached statement.
+	 */
+	public synchronized void close(){
+		for (PreparedStatement stmt : this._statements.values()){
+			try{
+				stmt.close();
+			}catch (SQLException e){
+				// ignored.
+			}
+		}
+		this._statements.clear();
+	}
+}//end StatementCache
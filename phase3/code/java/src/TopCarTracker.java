@@ -0,0 +1,335 @@
+/*
+ * Most serviced cars tracker
+ * ==========================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class answers "the K cars with the most service requests" from
+ * memory.  It holds the number of requests of every car in a map and the cars
+ * with at least one request in a tree ordered by that number, so the first K
+ * entries of the tree are the answer and no query is needed.  The counts are
+ * loaded once, updated by the shop whenever it adds a car or a service
+ * request, and periodically compared with the database to pick up changes
+ * made by other processes.  A reconciliation reads the counts in one
+ * snapshot and replays onto them exactly the requests of this process that
+ * the snapshot does not contain, so no request is counted twice.
+ *
+ */
+
+public class TopCarTracker{
+	//same columns as MechanicShop.REPORT_K_MOST_SERVICED
+	public static final String[] COLUMNS = { "make", "model", "num_serv_requests" };
+
+	static final String COUNTS =
+		"SELECT C.vin, C.make, C.model, COUNT(S.rid) FROM Car C LEFT JOIN Service_Request S ON S.car_vin = C.vin GROUP BY C.vin";
+	static final String CAR =
+		"SELECT C.vin, C.make, C.model, COUNT(S.rid) FROM Car C LEFT JOIN Service_Request S ON S.car_vin = C.vin WHERE C.vin = ? GROUP BY C.vin";
+	//which of the given requests the reconciliation snapshot contains
+	static final String VISIBLE = "SELECT rid FROM Service_Request WHERE rid = ANY(?)";
+	//rounds of visibility checks before the requests still arriving are replayed unchecked
+	static final int MAX_ROUNDS = 16;
+
+	/**
+	 * A service request counted while a reconciliation runs.
+	 */
+	static final class Request {
+		final String vin;
+		final int rid;
+
+		Request(String vin, int rid){
+			this.vin = vin;
+			this.rid = rid;
+		}
+	}
+
+	/**
+	 * A car and its number of service requests.
+	 */
+	static final class Car {
+		final String vin;
+		final String make;
+		final String model;
+		int count;
+
+		Car(String vin, String make, String model, int count){
+			this.vin = vin;
+			this.make = make;
+			this.model = model;
+			this.count = count;
+		}
+	}
+
+	//most requests first, ties by VIN so every car has a distinct position
+	static final Comparator<Car> RANKING = (a, b) ->
+		a.count != b.count ? Integer.compare(b.count, a.count) : a.vin.compareTo(b.vin);
+
+	private final MechanicShop _esql;
+	private Map<String, Car> _cars = new HashMap<String, Car>();
+	private TreeSet<Car> _ranking = new TreeSet<Car>(RANKING);
+	//requests counted while a reconciliation runs, replayed onto its snapshot unless it has them
+	private List<Request> _pending = null;
+	//held for a whole reconciliation; not this, which requestAdded needs meanwhile
+	private final Object _reconciling = new Object();
+	private ScheduledExecutorService _timer = null;
+	private long _corrections = 0;
+
+	/**
+	 * @param esql the shop used to reach the database
+	 */
+	public TopCarTracker(MechanicShop esql){
+		this._esql = esql;
+	}
+
+	/**
+	 * Loads the counts of all cars and reconciles them every periodMs.
+	 *
+	 * @param periodMs the time between reconciliations, 0 to never reconcile
+	 * @throws java.sql.SQLException when the counts could not be loaded
+	 */
+	public void start(long periodMs) throws SQLException {
+		reconcile();
+		synchronized (this){
+			this._corrections = 0;
+		}
+		if (periodMs > 0){
+			this._timer = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "top-car-reconcile");
+				t.setDaemon(true);
+				return t;
+			});
+			this._timer.scheduleWithFixedDelay(() -> {
+				try{
+					reconcile();
+				}catch (SQLException | RuntimeException e){
+					// an exception escaping the task would cancel every later run
+					System.err.println("Top car reconciliation failed: " + e);
+				}
+			}, periodMs, periodMs, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Stops the periodic reconciliation.
+	 */
+	public void stop(){
+		if (this._timer != null){
+			this._timer.shutdownNow();
+		}
+	}
+
+	/**
+	 * Records a car added by this process; it has no requests yet.
+	 */
+	public synchronized void carAdded(String vin, String make, String model){
+		if (!this._cars.containsKey(vin)){
+			this._cars.put(vin, new Car(vin, make, model, 0));
+		}
+	}
+
+	/**
+	 * Records a committed service request for the car.  A car this process
+	 * has not seen, e.g. one added by another terminal, is loaded first; its
+	 * loaded count already includes the request, so it is not incremented.
+	 *
+	 * @param vin the car of the request
+	 * @param rid the id of the request
+	 * @throws java.sql.SQLException when an unknown car could not be loaded
+	 */
+	public void requestAdded(String vin, int rid) throws SQLException {
+		synchronized (this){
+			if (this._pending != null){
+				this._pending.add(new Request(vin, rid));
+			}
+			Car car = this._cars.get(vin);
+			if (car != null){
+				increment(car);
+				return;
+			}
+		}
+		QueryResult rows = this._esql.executeQueryAndReturnResult(CAR, vin);
+		synchronized (this){
+			Car car = this._cars.get(vin);
+			if (car != null){
+				// loaded meanwhile by another request, whose count may lack this one;
+				// a double count here is fixed by the next reconciliation
+				increment(car);
+			}else if (!rows.isEmpty()){
+				put(this._cars, this._ranking, rows, 0);
+			}
+		}
+	}
+
+	private void increment(Car car){
+		if (car.count > 0){
+			this._ranking.remove(car);
+		}
+		++car.count;
+		this._ranking.add(car);
+	}
+
+	/**
+	 * @param k the number of cars
+	 * @return make, model and number of requests of the k most serviced cars, most first
+	 */
+	public synchronized List<String[]> top(int k){
+		List<String[]> rows = new ArrayList<String[]>(Math.max(0, Math.min(k, this._ranking.size())));
+		Iterator<Car> it = this._ranking.iterator();
+		while (rows.size() < k && it.hasNext()){
+			Car car = it.next();
+			rows.add(new String[]{ car.make, car.model, Integer.toString(car.count) });
+		}
+		return rows;
+	}
+
+	/**
+	 * Reloads the counts from the database and replaces the ones in memory.
+	 * The counts are read in a REPEATABLE READ transaction, so they are one
+	 * snapshot.  Requests recorded while it runs are checked against that
+	 * same snapshot and only the ones it does not contain are counted on top
+	 * of it.  The new counts are swapped in once no recorded request is left
+	 * unchecked; if requests keep arriving for MAX_ROUNDS checks, the rest
+	 * are counted unchecked and may be counted twice until the next
+	 * reconciliation.  Reconciliations started at the same time, e.g. by
+	 * the timer and a bulk load, run one after the other.
+	 *
+	 * @return the number of cars whose count was wrong or missing
+	 * @throws java.sql.SQLException when the counts could not be loaded
+	 */
+	public int reconcile() throws SQLException {
+		synchronized (this._reconciling){
+			return reconcileAlone();
+		}
+	}
+
+	private int reconcileAlone() throws SQLException {
+		synchronized (this){
+			this._pending = new ArrayList<Request>();
+		}
+		Map<String, Car> cars = null;
+		TreeSet<Car> ranking = null;
+		try{
+			PooledConnection pc = this._esql.borrow();
+			Connection c = pc.connection();
+			int isolation = c.getTransactionIsolation();
+			try{
+				c.setAutoCommit(false);
+				c.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+				QueryResult rows = QueryResult.from(MechanicShop.prepare(pc, COUNTS).executeQuery());
+				cars = new HashMap<String, Car>(rows.getRowCount() * 2);
+				ranking = new TreeSet<Car>(RANKING);
+				for (int i = 0; i < rows.getRowCount(); ++i){
+					put(cars, ranking, rows, i);
+				}
+				for (int round = 0; round < MAX_ROUNDS; ++round){
+					List<Request> batch;
+					synchronized (this){
+						if (this._pending.isEmpty()) break;
+						batch = this._pending;
+						this._pending = new ArrayList<Request>();
+					}
+					replay(cars, ranking, batch, visible(c, pc, batch));
+				}
+				c.commit();
+			}finally{
+				// returning the connection restores auto-commit, not the isolation level
+				try{
+					c.rollback();
+					c.setTransactionIsolation(isolation);
+				}catch (SQLException ignored){
+					// a broken connection is discarded when it is returned
+				}
+				pc.close();
+			}
+		}catch (SQLException e){
+			synchronized (this){
+				this._pending = null;
+			}
+			throw e;
+		}
+		synchronized (this){
+			replay(cars, ranking, this._pending, null);
+			this._pending = null;
+			int corrections = 0;
+			for (Car car : cars.values()){
+				Car old = this._cars.get(car.vin);
+				if (old == null || old.count != car.count) ++corrections;
+			}
+			this._corrections += corrections;
+			this._cars = cars;
+			this._ranking = ranking;
+			return corrections;
+		}
+	}
+
+	/**
+	 * @return the ids of the requests that the snapshot of the connection contains
+	 */
+	private static Set<Integer> visible(Connection c, PooledConnection pc, List<Request> batch) throws SQLException {
+		Integer[] rids = new Integer[batch.size()];
+		for (int i = 0; i < rids.length; ++i){
+			rids[i] = batch.get(i).rid;
+		}
+		Set<Integer> visible = new HashSet<Integer>();
+		try (ResultSet rs = MechanicShop.prepare(pc, VISIBLE, c.createArrayOf("integer", rids)).executeQuery()){
+			while (rs.next()){
+				visible.add(rs.getInt(1));
+			}
+		}
+		return visible;
+	}
+
+	/**
+	 * Counts the requests the snapshot does not contain onto its counts; all
+	 * of them when visible is null.
+	 */
+	private static void replay(Map<String, Car> cars, TreeSet<Car> ranking, List<Request> requests, Set<Integer> visible){
+		for (Request r : requests){
+			Car car = cars.get(r.vin);
+			if (car != null && (visible == null || !visible.contains(r.rid))){
+				ranking.remove(car);
+				++car.count;
+				ranking.add(car);
+			}
+		}
+	}
+
+	private static void put(Map<String, Car> cars, TreeSet<Car> ranking, QueryResult rows, int row){
+		Car car = new Car(rows.getString(row, 0), rows.getString(row, 1), rows.getString(row, 2), rows.getInt(row, 3));
+		cars.put(car.vin, car);
+		if (car.count > 0){
+			ranking.add(car);
+		}
+	}
+
+	/**
+	 * @return a one line summary of the tracker
+	 */
+	public synchronized String stats(){
+		return String.format("cars=%d serviced=%d corrections=%d",
+			this._cars.size(), this._ranking.size(), this._corrections);
+	}
+}//end TopCarTracker
@@ -4,6 +4,12 @@ DROP TABLE IF EXISTS Car CASCADE;--OK
 DROP TABLE IF EXISTS Owns CASCADE;--OK
 DROP TABLE IF EXISTS Service_Request CASCADE;--OK
 DROP TABLE IF EXISTS Closed_Request CASCADE;--OK
+DROP TABLE IF EXISTS Customer_Bill_Total CASCADE;--OK
+DROP TABLE IF EXISTS schema_version CASCADE;--OK
+DROP SEQUENCE IF EXISTS customer_id_seq;--OK
+DROP SEQUENCE IF EXISTS mechanic_id_seq;--OK
+DROP SEQUENCE IF EXISTS service_request_rid_seq;--OK
+DROP SEQUENCE IF EXISTS closed_request_wid_seq;--OK
 
 
 -------------